@@ -1,6 +1,7 @@
 plugins {
     id("java")
     id("org.jetbrains.intellij") version "1.17.4"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = providers.gradleProperty("pluginGroup").get()
@@ -17,6 +18,25 @@ intellij {
     plugins.set(listOf("vcs-git", "java"))
 }
 
+// Micro-benchmarks of the parsing and classification hot paths: `./gradlew jmh`.
+// The benchmarks only touch platform-free code, so the IDE jars are needed on the classpath
+// but no running application is.
+configurations {
+    named("jmhCompileOnly") { extendsFrom(configurations.compileOnly.get()) }
+    named("jmhRuntimeOnly") { extendsFrom(configurations.compileOnly.get()) }
+}
+
+jmh {
+    jmhVersion.set("1.37")
+    includeTests.set(false)
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    profilers.set(listOf("gc"))
+    resultFormat.set("JSON")
+    providers.gradleProperty("jmhInclude").orNull?.let { includes.set(listOf(it)) }
+}
+
 tasks {
     withType<JavaCompile> {
         sourceCompatibility = "17"
@@ -24,6 +44,29 @@ tasks {
         options.encoding = "UTF-8"
     }
 
+    test {
+        exclude("**/PushGateBenchmark*")
+    }
+
+    // End-to-end push gate timings on generated projects; appends to the JSONL report.
+    register<Test>("pushGateBenchmark") {
+        description = "Times the push handler and the local server on generated 10/100/1,000-module projects."
+        group = "verification"
+        testClassesDirs = sourceSets.test.get().output.classesDirs
+        classpath = sourceSets.test.get().runtimeClasspath
+        include("**/PushGateBenchmark*")
+        outputs.upToDateWhen { false }
+        maxHeapSize = "4g"
+        mapOf(
+            "pushGate.sizes" to "prepushchecker.benchmark.sizes",
+            "pushGate.fanout" to "prepushchecker.benchmark.fanout",
+            "pushGate.label" to "prepushchecker.benchmark.label",
+            "pushGate.report" to "prepushchecker.benchmark.report"
+        ).forEach { (property, systemProperty) ->
+            providers.gradleProperty(property).orNull?.let { systemProperty(systemProperty, it) }
+        }
+    }
+
     patchPluginXml {
         version.set(providers.gradleProperty("pluginVersion").get())
         sinceBuild.set("233")
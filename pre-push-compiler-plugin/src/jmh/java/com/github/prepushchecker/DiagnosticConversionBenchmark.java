@@ -0,0 +1,60 @@
+package com.github.prepushchecker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The per-message work of {@code PrePushCompilationHandler.formatCompilerMessages}: reading
+ * the position from JPS's {@code "(line, col)"} render prefix, building the interned
+ * diagnostic, and rendering the wire line the local server sends. The VFS and module lookups
+ * around it need a running project and are left to the platform-test benchmarks.
+ */
+@State(Scope.Benchmark)
+public class DiagnosticConversionBenchmark {
+
+    @Param({"1000"})
+    public int messages;
+
+    private String[] prefixes;
+    private String[] paths;
+    private String[] texts;
+
+    @Setup
+    public void setUp() {
+        prefixes = new String[messages];
+        paths = new String[messages];
+        texts = new String[messages];
+        for (int i = 0; i < messages; i++) {
+            prefixes[i] = "(" + (10 + i) + ", " + (1 + i % 80) + ")";
+            // Built per message, as JPS hands them over; interning is part of the cost.
+            paths[i] = "service/impl/src/main/java/com/acme/order/OrderRepository" + (i % 40) + ".java";
+            texts[i] = "cannot find symbol\n  symbol:   method findAllByCustomer" + i + "(long)";
+        }
+    }
+
+    @Benchmark
+    public void convert(Blackhole bh) {
+        for (int i = 0; i < messages; i++) {
+            int[] position = CompilerDiagnostic.parsePosition(prefixes[i]);
+            int line = position != null ? position[0] : 0;
+            int column = position != null ? position[1] : 0;
+            bh.consume(new CompilerDiagnostic(paths[i], line, column, CompilerDiagnostic.Severity.ERROR,
+                "service-impl", texts[i]));
+        }
+    }
+
+    @Benchmark
+    public void convertAndRender(Blackhole bh) {
+        for (int i = 0; i < messages; i++) {
+            int[] position = CompilerDiagnostic.parsePosition(prefixes[i]);
+            int line = position != null ? position[0] : 0;
+            int column = position != null ? position[1] : 0;
+            bh.consume(new CompilerDiagnostic(paths[i], line, column, CompilerDiagnostic.Severity.ERROR,
+                "service-impl", texts[i]).toString());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.prepushchecker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * What the tool window and block dialog do per row: {@link CompilationEntryRenderer#displayText}
+ * on every paint, and {@link CompilerDiagnostic#parse} on every relayed wire line (the job the
+ * renderer's old {@code extractPath} did before diagnostics became structured).
+ */
+@State(Scope.Benchmark)
+public class DiagnosticRenderingBenchmark {
+
+    @Param({"1000"})
+    public int diagnostics;
+
+    private CompilerDiagnostic[] input;
+    private String[] wireLines;
+
+    @Setup
+    public void setUp() {
+        input = syntheticDiagnostics(diagnostics);
+        wireLines = new String[input.length];
+        for (int i = 0; i < input.length; i++) {
+            wireLines[i] = input[i].toString();
+        }
+    }
+
+    @Benchmark
+    public void displayText(Blackhole bh) {
+        for (CompilerDiagnostic diagnostic : input) {
+            bh.consume(CompilationEntryRenderer.displayText(diagnostic));
+        }
+    }
+
+    @Benchmark
+    public void parseWireLine(Blackhole bh) {
+        for (String line : wireLines) {
+            bh.consume(CompilerDiagnostic.parse(line));
+        }
+    }
+
+    /** Mostly positioned errors across a few dozen files, plus whole-file and status entries. */
+    static CompilerDiagnostic[] syntheticDiagnostics(int count) {
+        CompilerDiagnostic[] out = new CompilerDiagnostic[count];
+        for (int i = 0; i < count; i++) {
+            String path = "service/impl/src/main/java/com/acme/order/internal/OrderRepository" + (i % 40) + ".java";
+            if (i % 50 == 0) {
+                out[i] = CompilerDiagnostic.general("Compilation was aborted.");
+            } else if (i % 10 == 0) {
+                out[i] = CompilerDiagnostic.fileProblem(path, "service-impl", "problems reported by IDE");
+            } else {
+                out[i] = new CompilerDiagnostic(path, 10 + i, 1 + i % 80, CompilerDiagnostic.Severity.ERROR,
+                    "service-impl", "cannot find symbol\n  symbol:   method findAllByCustomer" + i + "(long)");
+            }
+        }
+        return out;
+    }
+}
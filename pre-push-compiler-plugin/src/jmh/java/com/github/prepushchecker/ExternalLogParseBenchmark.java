@@ -0,0 +1,106 @@
+package com.github.prepushchecker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ExternalPushErrorLoader#parseErrors} over a hook log of {@link #megabytes} MB, as
+ * written by a failing Gradle or Maven build: mostly task/plugin chatter, with a javac or
+ * kotlinc diagnostic every few dozen lines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExternalLogParseBenchmark {
+
+    private static final String BASE_PATH = "/home/dev/work/acme-shop";
+
+    @Param({"gradle", "maven"})
+    public String tool;
+
+    @Param({"10"})
+    public int megabytes;
+
+    private List<String> lines;
+
+    @Setup
+    public void setUp() {
+        lines = "maven".equals(tool) ? mavenLog(megabytes * 1_000_000L) : gradleLog(megabytes * 1_000_000L);
+    }
+
+    @Benchmark
+    public List<CompilerDiagnostic> parseErrors() {
+        return ExternalPushErrorLoader.parseErrors(BASE_PATH, lines);
+    }
+
+    static List<String> gradleLog(long bytes) {
+        List<String> out = new ArrayList<>();
+        long size = 0;
+        for (int i = 0; size < bytes; i++) {
+            String line;
+            switch (i % 40) {
+                case 0:
+                    line = BASE_PATH + "/service/impl/src/main/java/com/acme/order/OrderService" + (i % 300)
+                        + ".java:" + (i % 900 + 1) + ": error: cannot find symbol";
+                    break;
+                case 1:
+                    line = "e: file://" + BASE_PATH + "/web/src/main/kotlin/com/acme/web/Routes" + (i % 120)
+                        + ".kt:" + (i % 400 + 1) + ":17 Unresolved reference: orderService";
+                    break;
+                case 2:
+                    line = BASE_PATH + "/api/src/main/java/com/acme/api/Dto" + (i % 50) + ".java:"
+                        + (i % 200 + 1) + ":9: warning: [deprecation] getId() in Entity has been deprecated";
+                    break;
+                case 3:
+                    line = "  symbol:   method findAllByCustomer(long)";
+                    break;
+                default:
+                    line = "> Task :module" + (i % 250) + ":compileJava UP-TO-DATE";
+            }
+            out.add(line);
+            size += line.length() + 1;
+        }
+        return out;
+    }
+
+    static List<String> mavenLog(long bytes) {
+        List<String> out = new ArrayList<>();
+        long size = 0;
+        for (int i = 0; size < bytes; i++) {
+            String line;
+            switch (i % 40) {
+                case 0:
+                    line = "[ERROR] " + BASE_PATH + "/service/impl/src/main/java/com/acme/order/OrderService"
+                        + (i % 300) + ".java:[" + (i % 900 + 1) + ",13] cannot find symbol";
+                    break;
+                case 1:
+                    line = BASE_PATH + "/service/impl/src/main/java/com/acme/order/OrderService" + (i % 300)
+                        + ".java:" + (i % 900 + 1) + ": error: incompatible types: String cannot be converted to long";
+                    break;
+                case 2:
+                    line = "[WARNING] " + BASE_PATH + "/api/src/main/java/com/acme/api/Dto" + (i % 50)
+                        + ".java:[" + (i % 200 + 1) + ",9] getId() in Entity has been deprecated";
+                    break;
+                case 3:
+                    line = "[INFO] --- maven-compiler-plugin:3.11.0:compile (default-compile) @ module" + (i % 250) + " ---";
+                    break;
+                default:
+                    line = "[INFO] Downloaded from central: https://repo.maven.apache.org/maven2/org/acme/lib"
+                        + (i % 500) + "/1.0/lib" + (i % 500) + "-1.0.jar (12 kB at 310 kB/s)";
+            }
+            out.add(line);
+            size += line.length() + 1;
+        }
+        return out;
+    }
+}
@@ -0,0 +1,80 @@
+package com.github.prepushchecker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Path classification as run for every changed path of a push. The path set mirrors a
+ * typical net diff: mostly sources, some resources and docs, a few build files, with both
+ * separators and mixed-case extensions.
+ */
+@State(Scope.Benchmark)
+public class PushValidationPathsBenchmark {
+
+    @Param({"1000"})
+    public int paths;
+
+    private String[] input;
+
+    @Setup
+    public void setUp() {
+        input = syntheticPaths(paths, 42);
+    }
+
+    @Benchmark
+    public int isRelevantPath() {
+        int relevant = 0;
+        for (String path : input) {
+            if (PushValidationPaths.isRelevantPath(path)) relevant++;
+        }
+        return relevant;
+    }
+
+    @Benchmark
+    public int isCompilableSource() {
+        int sources = 0;
+        for (String path : input) {
+            if (PushValidationPaths.isCompilableSource(path)) sources++;
+        }
+        return sources;
+    }
+
+    static String[] syntheticPaths(int count, long seed) {
+        Random random = new Random(seed);
+        String[] modules = {"core", "api", "service/impl", "web/frontend", "tools/codegen", "integration-tests"};
+        String[] packages = {"com/acme/order", "com/acme/order/internal", "com/acme/billing/model", "org/example/util"};
+        List<String> out = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String module = modules[random.nextInt(modules.length)];
+            String pkg = packages[random.nextInt(packages.length)];
+            int kind = random.nextInt(100);
+            String path;
+            if (kind < 55) {
+                path = module + "/src/main/java/" + pkg + "/OrderService" + i + ".java";
+            } else if (kind < 70) {
+                path = module + "/src/test/kotlin/" + pkg + "/OrderServiceTest" + i + ".kt";
+            } else if (kind < 75) {
+                path = module + "/src/main/groovy/" + pkg + "/Script" + i + ".GROOVY";
+            } else if (kind < 85) {
+                path = module + "/src/main/resources/" + pkg + "/messages_" + i + ".properties";
+            } else if (kind < 92) {
+                path = module + "/docs/chapter-" + i + ".md";
+            } else if (kind < 96) {
+                path = module + "/build.gradle.kts";
+            } else if (kind < 98) {
+                path = "pom.xml";
+            } else {
+                path = module + "\\src\\main\\java\\" + pkg.replace('/', '\\') + "\\Legacy" + i + ".java";
+            }
+            out.add(path);
+        }
+        return out.toArray(new String[0]);
+    }
+}
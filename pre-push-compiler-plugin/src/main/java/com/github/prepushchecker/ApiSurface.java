@@ -0,0 +1,203 @@
+package com.github.prepushchecker;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiAnnotationMemberValue;
+import com.intellij.psi.PsiAnnotationMethod;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiClassOwner;
+import com.intellij.psi.PsiClassType;
+import com.intellij.psi.PsiEnumConstant;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiMember;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiModifier;
+import com.intellij.psi.PsiParameter;
+import com.intellij.psi.PsiType;
+import com.intellij.psi.PsiWildcardType;
+import com.intellij.psi.impl.source.PsiFileImpl;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The non-private API a source file declares, as comparable signature keys.
+ *
+ * <p>A key covers everything a caller compiles against: owner, name, parameter, return and
+ * field types, thrown types, type-parameter count, the modifiers that change how a member
+ * can be used, the value of a constant field (javac inlines it, e.g. as a switch label) and
+ * the default of an annotation method. A class key also holds what callers of the class as a
+ * whole depend on: its enum constants (exhaustive switches), its {@code sealed} and
+ * {@code permits} clauses (exhaustive pattern switches) and the size of each overload set
+ * (calls may turn ambiguous or resolve to the new overload), so such a change searches the
+ * class itself even though the added members have no references yet.
+ *
+ * <p>Types are keyed by their canonical (qualified) text, so swapping an import from
+ * {@code a.Foo} to {@code b.Foo} changes the key. A detached base-revision text is resolved
+ * in the context of the current file; a type that does not resolve on either side makes the
+ * key {@link #isResolved unresolved}, which never counts as unchanged.
+ *
+ * <p>Must be used under a read action.
+ */
+final class ApiSurface {
+
+    private static final String UNRESOLVED = "?unresolved:";
+    private static final String[] KEY_MODIFIERS = {
+        PsiModifier.PUBLIC, PsiModifier.PROTECTED, PsiModifier.STATIC,
+        PsiModifier.ABSTRACT, PsiModifier.FINAL, PsiModifier.DEFAULT,
+        PsiModifier.SEALED, PsiModifier.NON_SEALED
+    };
+
+    private ApiSurface() {
+    }
+
+    /** Adds every non-private class, method and field reachable from {@code cls}, including itself. */
+    static void collectMembers(@NotNull PsiClass cls, @NotNull List<PsiMember> out) {
+        if (cls.hasModifierProperty(PsiModifier.PRIVATE)) return;
+        out.add(cls);
+        for (PsiMethod method : cls.getMethods()) {
+            if (!method.hasModifierProperty(PsiModifier.PRIVATE)) out.add(method);
+        }
+        for (PsiField field : cls.getFields()) {
+            if (!field.hasModifierProperty(PsiModifier.PRIVATE)) out.add(field);
+        }
+        for (PsiClass inner : cls.getInnerClasses()) {
+            collectMembers(inner, out);
+        }
+    }
+
+    /** Signature key to simple name for every non-private member of {@code classes}. */
+    static @NotNull Map<String, String> of(PsiClass @NotNull [] classes) {
+        List<PsiMember> members = new ArrayList<>();
+        for (PsiClass cls : classes) {
+            collectMembers(cls, members);
+        }
+        Map<String, String> surface = new LinkedHashMap<>(members.size() * 2);
+        for (PsiMember member : members) {
+            String name = member.getName();
+            if (name != null) surface.put(key(member), name);
+        }
+        return surface;
+    }
+
+    /**
+     * API of {@code text} parsed as a detached copy of {@code file}. Returns an empty map for
+     * an empty text (the file is new), or {@code null} if the text yields no classes although
+     * {@code file} currently declares some (the language cannot be analysed detached).
+     */
+    static @Nullable Map<String, String> parse(
+        @NotNull Project project,
+        @NotNull VirtualFile file,
+        @NotNull String text,
+        boolean currentHasClasses
+    ) {
+        if (text.isEmpty()) return Collections.emptyMap();
+        PsiFile parsed = PsiFileFactory.getInstance(project)
+            .createFileFromText(file.getName(), file.getFileType(), text);
+        if (!(parsed instanceof PsiClassOwner)) return null;
+        // Resolves the base text's imports against the project, as if it were the file itself.
+        PsiFile current = PsiManager.getInstance(project).findFile(file);
+        if (current != null && parsed instanceof PsiFileImpl) ((PsiFileImpl) parsed).setOriginalFile(current);
+        PsiClass[] classes = ((PsiClassOwner) parsed).getClasses();
+        if (classes.length == 0 && currentHasClasses) return null;
+        return of(classes);
+    }
+
+    static @NotNull String key(@NotNull PsiMember member) {
+        StringBuilder sb = new StringBuilder(96);
+        PsiClass owner = member.getContainingClass();
+        if (member instanceof PsiClass) {
+            PsiClass cls = (PsiClass) member;
+            sb.append("C ").append(cls.getQualifiedName() != null ? cls.getQualifiedName() : cls.getName());
+            sb.append(cls.isInterface() ? " interface" : "").append(cls.isEnum() ? " enum" : "")
+                .append(cls.isRecord() ? " record" : "").append(cls.isAnnotationType() ? " @interface" : "");
+            sb.append('<').append(cls.getTypeParameters().length).append('>');
+            appendTypes(sb.append(" extends "), cls.getExtendsListTypes());
+            appendTypes(sb.append(" implements "), cls.getImplementsListTypes());
+            appendTypes(sb.append(" permits "), cls.getPermitsListTypes());
+            if (cls.isEnum()) {
+                sb.append(" constants ");
+                for (PsiField field : cls.getFields()) {
+                    if (field instanceof PsiEnumConstant) sb.append(field.getName()).append(',');
+                }
+            }
+            appendOverloads(sb.append(" overloads "), cls);
+        } else if (member instanceof PsiMethod) {
+            PsiMethod method = (PsiMethod) member;
+            sb.append("M ").append(owner != null ? owner.getQualifiedName() : "?").append('#')
+                .append(method.getName()).append('<').append(method.getTypeParameters().length).append(">(");
+            for (PsiParameter parameter : method.getParameterList().getParameters()) {
+                sb.append(text(parameter.getType())).append(',');
+            }
+            sb.append(')').append(text(method.getReturnType()));
+            appendTypes(sb.append(" throws "), method.getThrowsList().getReferencedTypes());
+            if (method instanceof PsiAnnotationMethod) {
+                PsiAnnotationMemberValue value = ((PsiAnnotationMethod) method).getDefaultValue();
+                if (value != null) sb.append(" default ").append(value.getText());
+            }
+        } else if (member instanceof PsiField) {
+            PsiField field = (PsiField) member;
+            sb.append("F ").append(owner != null ? owner.getQualifiedName() : "?").append('#')
+                .append(field.getName()).append(':').append(text(field.getType()));
+            Object constant = field.hasInitializer() ? field.computeConstantValue() : null;
+            if (constant != null) sb.append(" = ").append(constant);
+        } else {
+            sb.append("? ").append(member.getName());
+        }
+        for (String modifier : KEY_MODIFIERS) {
+            if (member.hasModifierProperty(modifier)) sb.append(' ').append(modifier);
+        }
+        return sb.toString();
+    }
+
+    /** Name and size of every non-private overload set of more than one method, by name. */
+    private static void appendOverloads(StringBuilder sb, PsiClass cls) {
+        Map<String, Integer> sizes = new TreeMap<>();
+        for (PsiMethod method : cls.getMethods()) {
+            if (!method.hasModifierProperty(PsiModifier.PRIVATE)) sizes.merge(method.getName(), 1, Integer::sum);
+        }
+        for (Map.Entry<String, Integer> e : sizes.entrySet()) {
+            if (e.getValue() > 1) sb.append(e.getKey()).append('*').append(e.getValue()).append(',');
+        }
+    }
+
+    private static void appendTypes(StringBuilder sb, PsiClassType[] types) {
+        for (PsiClassType type : types) {
+            sb.append(text(type)).append(',');
+        }
+    }
+
+    /** {@code false} if a type in {@code key} did not resolve; such a key never matches as unchanged. */
+    static boolean isResolved(@NotNull String key) {
+        return !key.contains(UNRESOLVED);
+    }
+
+    private static String text(@Nullable PsiType type) {
+        if (type == null) return "-";
+        return resolves(type) ? type.getCanonicalText() : UNRESOLVED + type.getCanonicalText();
+    }
+
+    private static boolean resolves(PsiType type) {
+        PsiType component = type.getDeepComponentType();
+        if (component instanceof PsiWildcardType) {
+            PsiType bound = ((PsiWildcardType) component).getBound();
+            return bound == null || resolves(bound);
+        }
+        if (!(component instanceof PsiClassType)) return true;
+        PsiClassType classType = (PsiClassType) component;
+        if (classType.resolve() == null) return false;
+        for (PsiType parameter : classType.getParameters()) {
+            if (!resolves(parameter)) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.prepushchecker;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleUtilCore;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generation counters over every source or build-file change the VFS reports in a project,
+ * owned by {@link CompilationErrorService} and fed by {@link SourceChangeListener}.
+ *
+ * <p>A verdict records the {@link #generation()} it was produced at. If nothing changed since,
+ * reuse is one comparison. Otherwise the verdict survives only if none of the modules it
+ * depends on changed since, which costs one map probe per module: the modules of its files
+ * plus their transitive dependencies and, for a push verdict, the modules that depend on
+ * them ({@link #compileClosure}). A project-scope verdict depends on every module. Unlike
+ * file timestamps, this also catches a change to a dependency or a caller of the pushed code
+ * that is not itself pushed.
+ *
+ * <p>Modules are tracked by name, since a reimport replaces the {@link Module} objects. A
+ * change that no module owns (a build script outside every content root, a new module
+ * structure) is a {@link #recordProjectChange() project change}: it fails every verdict
+ * produced before it and lets the per-module entries it supersedes go.
+ */
+final class ChangeJournal {
+
+    private final AtomicLong generation = new AtomicLong();
+    // Generation of the last change in each module, by module name.
+    private final ConcurrentHashMap<String, Long> moduleGenerations = new ConcurrentHashMap<>();
+    // Generation of the last change that affects every module.
+    private final AtomicLong projectGeneration = new AtomicLong();
+
+    long generation() {
+        return generation.get();
+    }
+
+    /** Records a change in each of {@code modules}. */
+    void recordChange(@NotNull Collection<Module> modules) {
+        if (modules.isEmpty()) return;
+        long gen = generation.incrementAndGet();
+        for (Module module : modules) {
+            moduleGenerations.merge(module.getName(), gen, Math::max);
+        }
+    }
+
+    /** Records a change that may affect every module. */
+    void recordProjectChange() {
+        long gen = generation.incrementAndGet();
+        projectGeneration.accumulateAndGet(gen, Math::max);
+        // Verdicts older than this change fail anyway; younger ones only see later entries.
+        moduleGenerations.values().removeIf(changed -> changed <= gen);
+    }
+
+    /**
+     * {@code true} if nothing {@code modules} depend on changed after generation {@code since};
+     * {@code null} modules stand for the whole project.
+     */
+    boolean unchangedSince(long since, @Nullable Set<Module> modules) {
+        if (generation.get() == since) return true;
+        if (modules == null || modules.isEmpty() || projectGeneration.get() > since) return false;
+        for (Module module : modules) {
+            Long changed = moduleGenerations.get(module.getName());
+            if (changed != null && changed > since) return false;
+        }
+        return true;
+    }
+
+    /** The modules of {@code files} and their transitive dependencies. */
+    static @NotNull Set<Module> dependencyClosure(@NotNull Project project, @NotNull Collection<VirtualFile> files) {
+        return compileClosure(project, files, false);
+    }
+
+    /**
+     * Every module a compile of {@code files} reads: their modules and transitive
+     * dependencies and, with {@code withDependents} (push and project scope), the modules
+     * depending on theirs together with those modules' own dependencies.
+     */
+    static @NotNull Set<Module> compileClosure(
+        @NotNull Project project,
+        @NotNull Collection<VirtualFile> files,
+        boolean withDependents
+    ) {
+        return ReadAction.compute(() -> {
+            Set<Module> modules = new LinkedHashSet<>();
+            if (project.isDisposed()) return modules;
+            ProjectFileIndex index = ProjectFileIndex.getInstance(project);
+            Set<Module> own = new LinkedHashSet<>();
+            for (VirtualFile file : files) {
+                if (file == null || !file.isValid()) continue;
+                Module module = index.getModuleForFile(file, false);
+                if (module != null) own.add(module);
+            }
+            Collection<Module> roots = own;
+            if (withDependents) {
+                roots = new LinkedHashSet<>(own);
+                roots.addAll(ModuleDependencyIndex.getInstance(project).dependentsOf(own));
+            }
+            for (Module module : roots) {
+                // A module reached earlier already brought its closure.
+                if (!modules.contains(module)) {
+                    ModuleUtilCore.getDependencies(module, modules);
+                    modules.add(module);
+                }
+            }
+            return modules;
+        });
+    }
+}
@@ -0,0 +1,266 @@
+package com.github.prepushchecker;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Where the time of each pre-push check went.
+ *
+ * <p>The push handler, the local server and the warmup compile each open a {@link Trace} and
+ * close named phases on it as they go (change collection, cache lookups, scope planning,
+ * waiting for the EDT, JPS, the block dialog, ...). A finished trace becomes a {@link Record}
+ * that is kept in a ring buffer of the last {@link #CAPACITY} checks, shown in the tool
+ * window's Timings tab, and appended as one JSON object per line to
+ * {@link #LOG_RELATIVE_PATH} (rotated once it passes {@link #MAX_LOG_BYTES}).
+ *
+ * <p>Every verdict lookup also bumps a {@link Lookup} counter, so the hit rate of the tree,
+ * session and persisted caches can be read off directly.
+ */
+@Service(Service.Level.PROJECT)
+public final class CheckTimings {
+
+    static final String LOG_RELATIVE_PATH = ".idea/pre-push-checker/check-timings.jsonl";
+    static final int CAPACITY = 200;
+    static final long MAX_LOG_BYTES = 1_000_000L;
+    private static final Logger LOG = Logger.getInstance(CheckTimings.class);
+
+    /** Outcome of one verdict-cache lookup. */
+    enum Lookup {
+        TREE_HIT, TREE_MISS, SESSION_HIT, PERSISTED_HIT, PARTIAL_HIT, MISS
+    }
+
+    private final Project project;
+    // Oldest first. Guarded by `this`.
+    private final ArrayDeque<Record> records = new ArrayDeque<>(CAPACITY);
+    private final AtomicLongArray lookups = new AtomicLongArray(Lookup.values().length);
+    private final CopyOnWriteArrayList<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private final Object logLock = new Object();
+
+    public CheckTimings(@NotNull Project project) {
+        this.project = project;
+    }
+
+    public static CheckTimings getInstance(@NotNull Project project) {
+        return project.getService(CheckTimings.class);
+    }
+
+    /** Starts timing a check of the given kind ({@code push}, {@code server}, {@code warmup}). */
+    @NotNull Trace start(@NotNull String check) {
+        return new Trace(this, check);
+    }
+
+    void count(@NotNull Lookup lookup) {
+        lookups.incrementAndGet(lookup.ordinal());
+    }
+
+    /** Finished checks, oldest first. */
+    synchronized @NotNull List<Record> getRecords() {
+        return new ArrayList<>(records);
+    }
+
+    /** Lookup counters since the project was opened. */
+    @NotNull Map<Lookup, Long> getLookupCounts() {
+        Map<Lookup, Long> counts = new LinkedHashMap<>();
+        for (Lookup lookup : Lookup.values()) {
+            counts.put(lookup, lookups.get(lookup.ordinal()));
+        }
+        return counts;
+    }
+
+    /** Listeners run on the EDT after every finished check. */
+    public void addListener(@NotNull Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(@NotNull Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    private void add(Record record) {
+        synchronized (this) {
+            if (records.size() == CAPACITY) records.removeFirst();
+            records.addLast(record);
+        }
+        if (LOG.isDebugEnabled()) LOG.debug("Pre-push timings: " + record.toJson());
+        ApplicationManager.getApplication().executeOnPooledThread(() -> append(record));
+        ApplicationManager.getApplication().invokeLater(() -> {
+            for (Runnable listener : listeners) {
+                try {
+                    listener.run();
+                } catch (Exception e) {
+                    LOG.warn("CheckTimings listener threw", e);
+                }
+            }
+        });
+    }
+
+    private void append(Record record) {
+        String basePath = project.getBasePath();
+        if (basePath == null || basePath.isBlank() || project.isDisposed()) return;
+        Path file = Path.of(basePath, LOG_RELATIVE_PATH);
+        synchronized (logLock) {
+            try {
+                Files.createDirectories(file.getParent());
+                if (Files.isRegularFile(file) && Files.size(file) > MAX_LOG_BYTES) {
+                    Files.move(file, file.resolveSibling(file.getFileName() + ".1"),
+                        StandardCopyOption.REPLACE_EXISTING);
+                }
+                Files.writeString(file, record.toJson() + "\n", StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                LOG.debug("Could not append check timings to " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Timing of one check in progress. Each {@link #phase} call charges the time since the
+     * previous one to the named phase; repeated names accumulate. Safe to hand from thread to
+     * thread as long as the phases themselves run one after another.
+     */
+    static final class Trace {
+        /** A trace that records nothing, for callers outside an instrumented check. */
+        static final Trace NONE = new Trace(null, "none");
+
+        private final @Nullable CheckTimings owner;
+        private final String check;
+        private final long startedAtMillis = System.currentTimeMillis();
+        private final long startNanos = System.nanoTime();
+        private final Map<String, Long> phases = new LinkedHashMap<>();
+        private long markNanos = startNanos;
+        private String verdict = "unknown";
+        private int errors = -1;
+        private boolean finished = false;
+
+        private Trace(@Nullable CheckTimings owner, String check) {
+            this.owner = owner;
+            this.check = check;
+        }
+
+        /** Ends the phase that started at the previous mark and charges it to {@code name}. */
+        synchronized void phase(@NotNull String name) {
+            if (owner == null) return;
+            long now = System.nanoTime();
+            phases.merge(name, TimeUnit.NANOSECONDS.toMillis(now - markNanos), Long::sum);
+            markNanos = now;
+        }
+
+        /** Where the verdict came from, e.g. {@code compile}, {@code cache:warmup}, {@code timeout}. */
+        synchronized void verdict(@NotNull String source, int errorCount) {
+            if (owner == null) return;
+            this.verdict = source;
+            this.errors = errorCount;
+        }
+
+        /** Records the check; later calls are ignored. */
+        void finish() {
+            Record record;
+            synchronized (this) {
+                if (finished || owner == null) return;
+                finished = true;
+                record = new Record(startedAtMillis, check,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+                    Collections.unmodifiableMap(new LinkedHashMap<>(phases)), verdict, errors);
+            }
+            owner.add(record);
+        }
+    }
+
+    /** One finished check. */
+    static final class Record {
+        private final long startedAtMillis;
+        private final String check;
+        private final long totalMillis;
+        private final Map<String, Long> phases;
+        private final String verdict;
+        private final int errors;
+
+        Record(long startedAtMillis, String check, long totalMillis, Map<String, Long> phases,
+               String verdict, int errors) {
+            this.startedAtMillis = startedAtMillis;
+            this.check = check;
+            this.totalMillis = totalMillis;
+            this.phases = phases;
+            this.verdict = verdict;
+            this.errors = errors;
+        }
+
+        long getStartedAtMillis() {
+            return startedAtMillis;
+        }
+
+        String getCheck() {
+            return check;
+        }
+
+        long getTotalMillis() {
+            return totalMillis;
+        }
+
+        Map<String, Long> getPhases() {
+            return phases;
+        }
+
+        String getVerdict() {
+            return verdict;
+        }
+
+        /** Number of errors in the verdict, or {@code -1} if there was none. */
+        int getErrors() {
+            return errors;
+        }
+
+        String toJson() {
+            StringBuilder sb = new StringBuilder(160);
+            sb.append("{\"startedAt\":").append(startedAtMillis)
+                .append(",\"check\":");
+            quote(sb, check);
+            sb.append(",\"totalMs\":").append(totalMillis).append(",\"phases\":{");
+            boolean first = true;
+            for (Map.Entry<String, Long> e : phases.entrySet()) {
+                if (!first) sb.append(',');
+                first = false;
+                quote(sb, e.getKey());
+                sb.append(':').append(e.getValue());
+            }
+            sb.append("},\"verdict\":");
+            quote(sb, verdict);
+            return sb.append(",\"errors\":").append(errors).append('}').toString();
+        }
+
+        private static void quote(StringBuilder sb, String value) {
+            sb.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    sb.append('\\').append(c);
+                } else if (c < 0x20) {
+                    sb.append(String.format("\\u%04x", (int) c));
+                } else {
+                    sb.append(c);
+                }
+            }
+            sb.append('"');
+        }
+    }
+}
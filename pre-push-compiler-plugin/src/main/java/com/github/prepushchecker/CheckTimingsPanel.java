@@ -0,0 +1,132 @@
+package com.github.prepushchecker;
+
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.actionSystem.ActionManager;
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.DefaultActionGroup;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.table.JBTable;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/** "Timings" tab of the Compilation Checker tool window: the recent {@link CheckTimings}. */
+final class CheckTimingsPanel extends JPanel implements Disposable {
+
+    private static final String[] COLUMNS = {"Started", "Check", "Total (ms)", "Verdict", "Errors", "Phases (ms)"};
+
+    private final Project project;
+    private final DefaultTableModel tableModel = new DefaultTableModel(COLUMNS, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+    private final JBLabel countersLabel = new JBLabel(" ");
+    private final Runnable timingsListener = this::refresh;
+
+    CheckTimingsPanel(@NotNull Project project) {
+        super(new BorderLayout());
+        this.project = project;
+
+        CheckTimings.getInstance(project).addListener(timingsListener);
+
+        DefaultActionGroup group = new DefaultActionGroup();
+        group.add(new OpenLogAction());
+        var toolbar = ActionManager.getInstance()
+            .createActionToolbar("CompilationCheckerTimingsToolbar", group, true);
+        toolbar.setTargetComponent(this);
+        add(toolbar.getComponent(), BorderLayout.NORTH);
+
+        JBTable table = new JBTable(tableModel);
+        table.getEmptyText().setText("No pre-push checks recorded yet");
+        add(new JBScrollPane(table), BorderLayout.CENTER);
+
+        countersLabel.setBorder(BorderFactory.createEmptyBorder(2, 6, 2, 6));
+        add(countersLabel, BorderLayout.SOUTH);
+
+        refresh();
+    }
+
+    @Override
+    public void dispose() {
+        CheckTimings.getInstance(project).removeListener(timingsListener);
+    }
+
+    private void refresh() {
+        CheckTimings timings = CheckTimings.getInstance(project);
+        List<CheckTimings.Record> records = timings.getRecords();
+        SimpleDateFormat format = new SimpleDateFormat("HH:mm:ss");
+        Object[][] rows = new Object[records.size()][];
+        // Newest first.
+        for (int i = 0; i < records.size(); i++) {
+            CheckTimings.Record r = records.get(records.size() - 1 - i);
+            StringJoiner phases = new StringJoiner("  ");
+            for (Map.Entry<String, Long> e : r.getPhases().entrySet()) {
+                phases.add(e.getKey() + " " + e.getValue());
+            }
+            rows[i] = new Object[]{
+                format.format(new Date(r.getStartedAtMillis())),
+                r.getCheck(),
+                r.getTotalMillis(),
+                r.getVerdict(),
+                r.getErrors() >= 0 ? r.getErrors() : "",
+                phases.toString()
+            };
+        }
+        tableModel.setDataVector(rows, COLUMNS);
+
+        Map<CheckTimings.Lookup, Long> counts = timings.getLookupCounts();
+        countersLabel.setText("Tree cache " + counts.get(CheckTimings.Lookup.TREE_HIT) + " hit / "
+            + counts.get(CheckTimings.Lookup.TREE_MISS) + " miss    Verdict cache "
+            + counts.get(CheckTimings.Lookup.SESSION_HIT) + " session + "
+            + counts.get(CheckTimings.Lookup.PERSISTED_HIT) + " persisted hit / "
+            + counts.get(CheckTimings.Lookup.PARTIAL_HIT) + " partial / "
+            + counts.get(CheckTimings.Lookup.MISS) + " miss");
+    }
+
+    private final class OpenLogAction extends AnAction {
+
+        OpenLogAction() {
+            super("Open Timings Log", "Open " + CheckTimings.LOG_RELATIVE_PATH + " (one JSON object per check)",
+                AllIcons.Actions.MenuOpen);
+        }
+
+        @Override
+        public @NotNull ActionUpdateThread getActionUpdateThread() {
+            return ActionUpdateThread.BGT;
+        }
+
+        @Override
+        public void update(@NotNull AnActionEvent e) {
+            e.getPresentation().setEnabled(project.getBasePath() != null);
+        }
+
+        @Override
+        public void actionPerformed(@NotNull AnActionEvent e) {
+            String basePath = project.getBasePath();
+            if (basePath == null) return;
+            VirtualFile log = LocalFileSystem.getInstance()
+                .refreshAndFindFileByNioFile(Path.of(basePath, CheckTimings.LOG_RELATIVE_PATH));
+            if (log != null) {
+                FileEditorManager.getInstance(project).openFile(log, true);
+            }
+        }
+    }
+}
@@ -10,6 +10,7 @@ import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.actionSystem.DefaultActionGroup;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.compiler.CompileScope;
 import com.intellij.openapi.compiler.CompilerManager;
 import com.intellij.openapi.compiler.CompilerMessageCategory;
 import com.intellij.openapi.progress.ProgressIndicator;
@@ -39,7 +40,7 @@ import java.util.concurrent.atomic.AtomicReference;
 final class CompilationCheckerPanel extends JPanel implements Disposable {
 
     private final Project project;
-    private final DefaultListModel<String> listModel = new DefaultListModel<>();
+    private final DefaultListModel<CompilerDiagnostic> listModel = new DefaultListModel<>();
     private final JBLabel statusLabel = new JBLabel(" ");
     private final Runnable serviceListener = this::onServiceUpdate;
 
@@ -62,7 +63,7 @@ final class CompilationCheckerPanel extends JPanel implements Disposable {
         add(toolbar.getComponent(), BorderLayout.NORTH);
 
         // ── Error list ────────────────────────────────────────────────────────
-        JBList<String> errorList = new JBList<>(listModel);
+        JBList<CompilerDiagnostic> errorList = new JBList<>(listModel);
         errorList.setCellRenderer(new CompilationEntryRenderer());
         errorList.getEmptyText().setText("No compilation errors");
         errorList.getEmptyText().appendLine("Run a check or trigger a push to populate this list");
@@ -104,10 +105,18 @@ final class CompilationCheckerPanel extends JPanel implements Disposable {
     // ── Private helpers ───────────────────────────────────────────────────────
 
     private void onServiceUpdate() {
-        List<String> errors = CompilationErrorService.getInstance(project).getErrors();
+        CompilationErrorService service = CompilationErrorService.getInstance(project);
+        List<CompilerDiagnostic> errors = service.getErrors();
         listModel.clear();
-        errors.forEach(listModel::addElement);
-        statusLabel.setText(errors.isEmpty() ? " " : errors.size() + " error(s) from last check");
+        // One bulk interval event instead of one event (and relayout) per entry.
+        listModel.addAll(errors);
+        if (service.isRunning()) {
+            double progress = service.getProgress();
+            statusLabel.setText("Compiling... " + errors.size() + " error(s) so far"
+                + (progress >= 0 ? " (" + Math.round(progress * 100) + "%)" : ""));
+        } else {
+            statusLabel.setText(errors.isEmpty() ? " " : errors.size() + " error(s) from last check");
+        }
     }
 
     // ── Toolbar actions ───────────────────────────────────────────────────────
@@ -132,11 +141,17 @@ final class CompilationCheckerPanel extends JPanel implements Disposable {
                     public void run(@NotNull ProgressIndicator indicator) {
                         CompilerManager compiler = CompilerManager.getInstance(project);
                         CountDownLatch latch = new CountDownLatch(1);
-                        AtomicReference<List<String>> result =
+                        AtomicReference<List<CompilerDiagnostic>> result =
                             new AtomicReference<>(Collections.emptyList());
+                        CompileScope scope = compiler.createProjectCompileScope(project);
+                        CompilationErrorService service = CompilationErrorService.getInstance(project);
+                        // Errors show up in the list as JPS reports them, not only at the end.
+                        LiveCompileMonitor.Session live = LiveCompileMonitor.attach(project, scope,
+                            (soFar, fraction) -> service.publishPartial(soFar, fraction));
+                        CompilationErrorService.CompileStart start = service.compileStart(Collections.emptyList());
 
                         ApplicationManager.getApplication().invokeAndWait(() ->
-                            compiler.make(compiler.createProjectCompileScope(project),
+                            compiler.make(scope,
                                 (aborted, errorCount, warnings, ctx) -> {
                                     if (!aborted && errorCount > 0) {
                                         result.set(PrePushCompilationHandler.formatCompilerMessages(
@@ -150,15 +165,19 @@ final class CompilationCheckerPanel extends JPanel implements Disposable {
                         try {
                             while (!latch.await(250, TimeUnit.MILLISECONDS)) {
                                 indicator.checkCanceled();
+                                live.pump();
                             }
                         } catch (InterruptedException ignored) {
                             Thread.currentThread().interrupt();
+                        } finally {
+                            live.close();
+                            service.endPartial();
                         }
 
                         // Record project-scope result so a subsequent push with no file
                         // changes can reuse the cached verdict instead of rebuilding.
-                        CompilationErrorService.getInstance(project).recordCompletion(
-                            true, java.util.Collections.emptyMap(), result.get());
+                        service.recordCompletion(
+                            VerdictScope.Kind.PROJECT, Collections.emptyList(), result.get(), "manual", start);
                     }
                 });
         }
@@ -189,14 +208,18 @@ final class CompilationCheckerPanel extends JPanel implements Disposable {
             );
             if (choice != com.intellij.openapi.ui.Messages.YES) return;
 
+            // Persisted verdicts were produced by the caches being thrown away.
+            PersistentVerdictCache.getInstance(project).clear();
             ProgressManager.getInstance().run(
                 new Task.Backgroundable(project, "Rebuilding Compiler Caches", true) {
                     @Override
                     public void run(@NotNull ProgressIndicator indicator) {
                         CompilerManager compiler = CompilerManager.getInstance(project);
                         CountDownLatch latch = new CountDownLatch(1);
-                        AtomicReference<List<String>> result =
+                        AtomicReference<List<CompilerDiagnostic>> result =
                             new AtomicReference<>(Collections.emptyList());
+                        CompilationErrorService service = CompilationErrorService.getInstance(project);
+                        CompilationErrorService.CompileStart start = service.compileStart(Collections.emptyList());
 
                         ApplicationManager.getApplication().invokeAndWait(() ->
                             compiler.rebuild((aborted, errorCount, warnings, ctx) -> {
@@ -217,8 +240,8 @@ final class CompilationCheckerPanel extends JPanel implements Disposable {
                             Thread.currentThread().interrupt();
                         }
 
-                        CompilationErrorService.getInstance(project).recordCompletion(
-                            true, java.util.Collections.emptyMap(), result.get());
+                        service.recordCompletion(
+                            VerdictScope.Kind.PROJECT, Collections.emptyList(), result.get(), "manual", start);
                     }
                 });
         }
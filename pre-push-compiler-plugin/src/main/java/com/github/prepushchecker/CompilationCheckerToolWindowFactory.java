@@ -13,8 +13,13 @@ public final class CompilationCheckerToolWindowFactory implements ToolWindowFact
     @Override
     public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
         CompilationCheckerPanel panel = new CompilationCheckerPanel(project);
-        Content content = ContentFactory.getInstance().createContent(panel, "", false);
+        Content content = ContentFactory.getInstance().createContent(panel, "Errors", false);
         toolWindow.getContentManager().addContent(content);
         Disposer.register(toolWindow.getDisposable(), panel);
+
+        CheckTimingsPanel timings = new CheckTimingsPanel(project);
+        Content timingsContent = ContentFactory.getInstance().createContent(timings, "Timings", false);
+        toolWindow.getContentManager().addContent(timingsContent);
+        Disposer.register(toolWindow.getDisposable(), timings);
     }
 }
@@ -1,28 +1,43 @@
 package com.github.prepushchecker;
 
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.components.Service;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
 import com.intellij.openapi.vfs.VirtualFile;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
- * Project-level service that holds the most recent compilation error list produced
+ * Project-level service that holds the most recent {@link CompilerDiagnostic} list produced
  * by either the pre-push handler or the tool-window "Run Check" action.
  *
- * <p>Also acts as a freshness cache: when a compile completes, the scope (project vs.
- * file list) and a snapshot of the input files' {@link VirtualFile#getTimeStamp()} is
- * recorded, so subsequent checks over the same (or subset) scope can reuse the result
- * when nothing on disk has moved.
+ * <p>Also acts as a freshness cache. When a compile completes, its verdict is split by module:
+ * each module of the compiled files gets its own entry with the {@link VerdictScope}, the
+ * module's files, the diagnostics located in it and the {@link ChangeJournal} generation. A
+ * later compile replaces only the entries of its own modules. After a failed compile, the
+ * clean entries only count at file scope, since their callers may not have been compiled. A
+ * check reuses every module entry that covers its files and scope and that nothing has
+ * invalidated since, and compiles only the rest ({@link #reuse}); the diagnostics are merged
+ * for display. A project-scope verdict is kept as one more entry. File-scope verdicts are
+ * additionally persisted through {@link PersistentVerdictCache}, keyed by the content of
+ * everything the compile read, which is consulted when the in-session cache misses (e.g.
+ * the first push after an IDE restart).
  *
  * <p>Listeners are notified on the EDT whenever the error list changes.
  */
@@ -31,45 +46,208 @@ public final class CompilationErrorService {
 
     private static final Logger LOG = Logger.getInstance(CompilationErrorService.class);
 
-    private volatile List<String> errors = Collections.emptyList();
+    private final Project project;
+    private volatile List<CompilerDiagnostic> errors = Collections.emptyList();
+    // Build progress (0..1, or -1 if unknown) while a compile streams partial results.
+    private volatile double progress = -1;
+    private volatile boolean running = false;
     private final CopyOnWriteArrayList<Runnable> listeners = new CopyOnWriteArrayList<>();
 
-    // Freshness cache state. Guarded by `this`.
-    private long lastComputedAt = 0L;
-    private boolean lastScopeProject = false;
-    private Map<String, Long> lastFileStamps = Collections.emptyMap();
+    private final ChangeJournal journal = new ChangeJournal();
+
+    // Freshness cache state. Guarded by `this`; files without a module live under `null`.
+    private final Map<Module, ModuleVerdict> moduleVerdicts = new HashMap<>();
+    private ModuleVerdict projectVerdict;
+
+    public CompilationErrorService(@NotNull Project project) {
+        this.project = project;
+    }
 
     public static CompilationErrorService getInstance(@NotNull Project project) {
         return project.getService(CompilationErrorService.class);
     }
 
-    public void setErrors(@NotNull List<String> newErrors) {
-        List<String> snapshot = List.copyOf(newErrors);
-        if (snapshot.equals(this.errors)) {
+    public void setErrors(@NotNull List<CompilerDiagnostic> newErrors) {
+        List<CompilerDiagnostic> snapshot = List.copyOf(newErrors);
+        boolean wasRunning = running;
+        running = false;
+        progress = -1;
+        if (!wasRunning && snapshot.equals(this.errors)) {
             return;
         }
         this.errors = snapshot;
         ApplicationManager.getApplication().invokeLater(this::fireListeners);
     }
 
-    public @NotNull List<String> getErrors() {
+    /**
+     * Publishes the errors reported so far by a compile that is still running, so the tool
+     * window can show them with a live count. The next {@link #setErrors} (or
+     * {@link #recordCompletion}) replaces them with the final result.
+     */
+    public void publishPartial(@NotNull List<CompilerDiagnostic> soFar, double fraction) {
+        this.errors = List.copyOf(soFar);
+        this.progress = fraction;
+        this.running = true;
+        ApplicationManager.getApplication().invokeLater(this::fireListeners);
+    }
+
+    /** Keeps the partial list as the final one after its compile was canceled. */
+    public void endPartial() {
+        if (running) setErrors(errors);
+    }
+
+    /** {@code true} while {@link #getErrors()} is a partial result of a running compile. */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /** Progress of the running compile (0..1), or {@code -1} if unknown or idle. */
+    public double getProgress() {
+        return progress;
+    }
+
+    public @NotNull List<CompilerDiagnostic> getErrors() {
         return errors;
     }
 
     /**
-     * Record the outcome of a compile. {@code stamps} should be the per-file timestamps
-     * observed just before (or during) compilation; pass an empty map for a full project
-     * compile (in which case any file modified after {@code now} invalidates the cache).
+     * What a compile of {@code files} is about to read: the journal generation and the files'
+     * timestamps. Take it right before the make starts and pass it to {@link #recordCompletion}.
+     */
+    @NotNull CompileStart compileStart(@NotNull Collection<VirtualFile> files) {
+        return new CompileStart(journal.generation(), snapshotStamps(files));
+    }
+
+    /**
+     * Record the outcome of a compile over {@code files} with a scope of {@code kind} that
+     * started at {@code start}; pass an empty collection for a full project compile (in which
+     * case any later change invalidates the cache). Entries of modules that changed while the
+     * compile ran are not kept: the verdict describes content that is gone. File and
+     * push-scope verdicts are also persisted for reuse across restarts, unless anything
+     * changed during the compile or they contain a file-less status entry (timeout, abort,
+     * ...), which is not a real verdict. {@code origin} names the producer ({@code push},
+     * {@code server}, {@code warmup}, {@code manual}) and is reported with every later reuse
+     * of the verdict.
      */
-    public synchronized void recordCompletion(
-        boolean projectScope,
-        @NotNull Map<String, Long> stamps,
-        @NotNull List<String> newErrors
+    void recordCompletion(
+        @NotNull VerdictScope.Kind kind,
+        @NotNull Collection<VirtualFile> files,
+        @NotNull List<CompilerDiagnostic> newErrors,
+        @NotNull String origin,
+        @NotNull CompileStart start
     ) {
-        this.lastComputedAt = System.currentTimeMillis();
-        this.lastScopeProject = projectScope;
-        this.lastFileStamps = stamps.isEmpty() ? Collections.emptyMap() : Map.copyOf(stamps);
+        boolean projectScope = kind == VerdictScope.Kind.PROJECT;
+        recordSession(VerdictScope.of(project, kind), start.generation, projectScope ? null : files, newErrors, origin);
         setErrors(newErrors);
+        if (!projectScope && !start.stamps.isEmpty() && isConclusive(newErrors)
+                && journal.generation() == start.generation) {
+            PersistentVerdictCache.getInstance(project).storeAsync(files, kind, start.stamps, newErrors);
+        }
+    }
+
+    /** {@code false} if the list contains a file-less status entry (timeout, abort, ...). */
+    static boolean isConclusive(List<CompilerDiagnostic> diagnostics) {
+        for (CompilerDiagnostic d : diagnostics) {
+            if (d.getPath() == null) return false;
+        }
+        return true;
+    }
+
+    /** Stores a verdict over {@code files} ({@code null} for the project) as per-module entries. */
+    private void recordSession(
+        @NotNull VerdictScope scope,
+        long generation,
+        @Nullable Collection<VirtualFile> files,
+        @NotNull List<CompilerDiagnostic> diagnostics,
+        @NotNull String origin
+    ) {
+        if (files == null) {
+            if (!journal.unchangedSince(generation, null)) {
+                LOG.debug("Project changed while it compiled; verdict not kept.");
+                return;
+            }
+            ModuleVerdict verdict = new ModuleVerdict(scope, generation, Collections.emptySet(), null,
+                diagnostics, origin);
+            synchronized (this) {
+                projectVerdict = verdict;
+            }
+            return;
+        }
+        Map<Module, List<VirtualFile>> byModule = groupByModule(files);
+        // Diagnostics outside the compiled modules (callers in dependent modules, status
+        // entries) belong to every entry, which then also watches their modules.
+        Map<String, List<CompilerDiagnostic>> local = new HashMap<>();
+        List<CompilerDiagnostic> foreign = new ArrayList<>();
+        Set<Module> foreignModules = new LinkedHashSet<>();
+        Map<String, Module> compiled = new HashMap<>();
+        for (Module module : byModule.keySet()) {
+            if (module != null) compiled.put(module.getName(), module);
+        }
+        for (CompilerDiagnostic d : diagnostics) {
+            String name = d.getModule();
+            if (name != null && compiled.containsKey(name)) {
+                local.computeIfAbsent(name, n -> new ArrayList<>()).add(d);
+                continue;
+            }
+            foreign.add(d);
+            Module other = name != null ? ModuleManager.getInstance(project).findModuleByName(name) : null;
+            if (other != null) foreignModules.add(other);
+        }
+
+        // A make that failed may have stopped before the callers of its clean modules (later
+        // stages, the rest of a fail-fast scope): those modules only vouch for themselves.
+        VerdictScope cleanScope = diagnostics.isEmpty() ? scope : scope.narrowedTo(VerdictScope.Kind.FILES);
+        Map<Module, ModuleVerdict> entries = new HashMap<>();
+        for (Map.Entry<Module, List<VirtualFile>> e : byModule.entrySet()) {
+            Module module = e.getKey();
+            List<CompilerDiagnostic> own = new ArrayList<>(foreign);
+            if (module != null) own.addAll(local.getOrDefault(module.getName(), Collections.emptyList()));
+            // A push verdict also vouches for the callers it compiled, so their changes count too.
+            Set<Module> watched = new LinkedHashSet<>(ChangeJournal.compileClosure(project, e.getValue(),
+                scope.kind.covers(VerdictScope.Kind.PUSH)));
+            watched.addAll(foreignModules);
+            if (!journal.unchangedSince(generation, watched)) {
+                LOG.debug("Module " + (module != null ? module.getName() : "-") + " changed while it compiled; verdict not kept.");
+                continue;
+            }
+            Set<String> paths = new HashSet<>();
+            for (VirtualFile f : e.getValue()) {
+                paths.add(f.getPath());
+            }
+            entries.put(module, new ModuleVerdict(own.isEmpty() ? cleanScope : scope, generation, paths, watched,
+                own, origin));
+        }
+        synchronized (this) {
+            moduleVerdicts.putAll(entries);
+        }
+    }
+
+    private Map<Module, List<VirtualFile>> groupByModule(Collection<VirtualFile> files) {
+        return ReadAction.compute(() -> {
+            Map<Module, List<VirtualFile>> byModule = new HashMap<>();
+            if (project.isDisposed()) return byModule;
+            ProjectFileIndex index = ProjectFileIndex.getInstance(project);
+            for (VirtualFile f : files) {
+                if (f == null || !f.isValid()) continue;
+                byModule.computeIfAbsent(index.getModuleForFile(f, false), m -> new ArrayList<>()).add(f);
+            }
+            return byModule;
+        });
+    }
+
+    /** Called by {@link SourceChangeListener} for every source or build file change in {@code modules}. */
+    void recordChange(@NotNull Collection<Module> modules) {
+        journal.recordChange(modules);
+        PersistentVerdictCache.getInstance(project).modulesChanged(modules);
+    }
+
+    /**
+     * Called for changes no single module owns: a new module structure, or a build file
+     * outside every content root. Drops every cached verdict and the modules they hold.
+     */
+    void recordProjectChange() {
+        journal.recordProjectChange();
+        invalidateFreshness();
     }
 
     /**
@@ -77,38 +255,132 @@ public final class CompilationErrorService {
      * actually run the compiler).
      */
     public synchronized void invalidateFreshness() {
-        this.lastComputedAt = 0L;
-        this.lastScopeProject = false;
-        this.lastFileStamps = Collections.emptyMap();
+        moduleVerdicts.clear();
+        projectVerdict = null;
     }
 
     /**
-     * Return the cached error list if it is still valid for every file in {@code files}.
-     * "Valid" means either:
-     *   - the last compile was project-scope and no requested file has a timestamp newer
-     *     than {@code lastComputedAt}; or
-     *   - the last compile was file-scope, every requested file was part of the cached
-     *     set, and each file's current {@link VirtualFile#getTimeStamp()} equals the
-     *     recorded value.
-     * Returns {@code null} if the cache cannot be reused.
+     * Return the cached error list if it is still valid for a push of every file in
+     * {@code files}, or {@code null}; see {@link #reuse} for when a verdict is valid. Partial
+     * reuse is not reported here.
      */
-    public synchronized @Nullable List<String> tryReuse(@NotNull Collection<VirtualFile> files) {
-        if (lastComputedAt == 0L) return null;
-        if (lastScopeProject) {
+    public @Nullable List<CompilerDiagnostic> tryReuse(@NotNull Collection<VirtualFile> files) {
+        return tryReuse(files, VerdictScope.Kind.PUSH, CheckTimings.Trace.NONE);
+    }
+
+    @Nullable List<CompilerDiagnostic> tryReuse(
+        @NotNull Collection<VirtualFile> files,
+        @NotNull VerdictScope.Kind required,
+        @NotNull CheckTimings.Trace trace
+    ) {
+        Reuse reuse = reuse(files, required, trace);
+        return reuse.isComplete() ? reuse.diagnostics : null;
+    }
+
+    /**
+     * What the cache can answer for a check of {@code required} scope over {@code files}. A
+     * module entry answers for the requested files of its module if the project roots have
+     * not changed since, its {@link VerdictScope} covers {@code required} (unless it found
+     * errors, which fail any check over its files), every requested file of the module was
+     * compiled, and nothing changed since in the module, its dependencies or the modules of
+     * its diagnostics (see {@link ChangeJournal}). A project-scope verdict answers for every
+     * file while nothing at all has changed.
+     *
+     * <p>If not every file is answered, the {@link PersistentVerdictCache} content-hash
+     * lookup is tried for the whole set. Its key covers the content of every module the
+     * compile read, so a hit is as current as a fresh compile and is adopted into the session
+     * cache.
+     * Otherwise the files no entry answers are returned as {@link Reuse#remaining}, to be
+     * compiled and merged with the reused diagnostics. Counts the lookup and reports a
+     * complete hit's origin to {@code trace}.
+     */
+    @NotNull Reuse reuse(
+        @NotNull Collection<VirtualFile> files,
+        @NotNull VerdictScope.Kind required,
+        @NotNull CheckTimings.Trace trace
+    ) {
+        CheckTimings timings = CheckTimings.getInstance(project);
+        Map<Module, List<VirtualFile>> byModule = groupByModule(files);
+        Reuse session = reuseSession(files, byModule, required);
+        if (session.isComplete()) {
+            timings.count(CheckTimings.Lookup.SESSION_HIT);
+            trace.verdict("cache:" + session.origin, session.diagnostics.size());
+            return session;
+        }
+
+        // Project-scope verdicts are never persisted; try the narrowest stored kind that covers.
+        PersistentVerdictCache cache = PersistentVerdictCache.getInstance(project);
+        for (VerdictScope.Kind kind : VerdictScope.Kind.values()) {
+            if (kind == VerdictScope.Kind.PROJECT || !kind.covers(required)) continue;
+            List<CompilerDiagnostic> persisted = cache.lookup(files, kind);
+            if (persisted == null) continue;
+            LOG.info("Reusing persisted " + kind + "-scope verdict for " + files.size()
+                + " file(s) (content hash match).");
+            recordSession(VerdictScope.of(project, kind), journal.generation(), files, persisted, "persisted");
+            setErrors(persisted);
+            timings.count(CheckTimings.Lookup.PERSISTED_HIT);
+            trace.verdict("cache:persisted", persisted.size());
+            return new Reuse(persisted, Collections.emptyList(), "persisted");
+        }
+        if (session.remaining.size() < files.size()) {
+            LOG.info("Reusing cached verdicts for " + (files.size() - session.remaining.size()) + " of "
+                + files.size() + " file(s); compiling the other " + session.remaining.size() + ".");
+            timings.count(CheckTimings.Lookup.PARTIAL_HIT);
+        } else {
+            timings.count(CheckTimings.Lookup.MISS);
+        }
+        return session;
+    }
+
+    private synchronized @NotNull Reuse reuseSession(
+        @NotNull Collection<VirtualFile> files,
+        @NotNull Map<Module, List<VirtualFile>> byModule,
+        @NotNull VerdictScope.Kind required
+    ) {
+        List<VirtualFile> all = new ArrayList<>(files);
+        // A running compile may be about to replace any entry.
+        if (running) return new Reuse(Collections.emptyList(), all, "none");
+        if (projectVerdict != null && isValid(projectVerdict, required)) {
+            return new Reuse(projectVerdict.diagnostics, Collections.emptyList(), projectVerdict.origin);
+        }
+        Set<CompilerDiagnostic> diagnostics = new LinkedHashSet<>();
+        List<VirtualFile> remaining = new ArrayList<>();
+        Set<String> origins = new LinkedHashSet<>();
+        for (Map.Entry<Module, List<VirtualFile>> e : byModule.entrySet()) {
+            ModuleVerdict verdict = moduleVerdicts.get(e.getKey());
+            if (verdict != null && isValid(verdict, required) && coversFiles(verdict, e.getValue())) {
+                diagnostics.addAll(verdict.diagnostics);
+                origins.add(verdict.origin);
+            } else {
+                remaining.addAll(e.getValue());
+            }
+        }
+        // Invalid files have no module entry and always need a compile.
+        if (byModule.values().stream().mapToInt(List::size).sum() < files.size()) {
             for (VirtualFile f : files) {
-                if (f == null || !f.isValid()) return null;
-                if (f.getTimeStamp() > lastComputedAt) return null;
+                if (f == null || !f.isValid()) remaining.add(f);
             }
-            return errors;
         }
-        if (lastFileStamps.isEmpty()) return null;
+        if (!remaining.isEmpty() && origins.isEmpty()) return new Reuse(Collections.emptyList(), all, "none");
+        return new Reuse(List.copyOf(diagnostics), remaining, String.join("+", origins));
+    }
+
+    private boolean isValid(ModuleVerdict verdict, VerdictScope.Kind required) {
+        // Errors found in these files fail any check over them; only a clean verdict has to
+        // cover everything the check would compile.
+        boolean failing = !verdict.diagnostics.isEmpty() && isConclusive(verdict.diagnostics);
+        if (!verdict.scope.covers(project, failing ? VerdictScope.Kind.FILES : required)) {
+            LOG.debug("Cached " + verdict.scope + " verdict does not cover a " + required + "-scope check.");
+            return false;
+        }
+        return journal.unchangedSince(verdict.generation, verdict.watched);
+    }
+
+    private static boolean coversFiles(ModuleVerdict verdict, List<VirtualFile> files) {
         for (VirtualFile f : files) {
-            if (f == null || !f.isValid()) return null;
-            Long cached = lastFileStamps.get(f.getPath());
-            if (cached == null) return null;
-            if (f.getTimeStamp() != cached) return null;
+            if (!verdict.files.contains(f.getPath())) return false;
         }
-        return errors;
+        return true;
     }
 
     /** Capture timestamps for a collection of files. */
@@ -140,4 +412,71 @@ public final class CompilationErrorService {
             }
         }
     }
+
+    /** Taken by {@link #compileStart} before a make; see {@link #recordCompletion}. */
+    static final class CompileStart {
+        final long generation;
+        final Map<String, Long> stamps;
+
+        private CompileStart(long generation, Map<String, Long> stamps) {
+            this.generation = generation;
+            this.stamps = stamps;
+        }
+    }
+
+    /**
+     * The cached answer for a check: {@link #diagnostics} of the reused entries, and the
+     * files no entry answered, which still need a compile.
+     */
+    static final class Reuse {
+        final List<CompilerDiagnostic> diagnostics;
+        final List<VirtualFile> remaining;
+        // Producers of the reused entries, e.g. "verifier" or "warmup+push".
+        final String origin;
+
+        Reuse(List<CompilerDiagnostic> diagnostics, List<VirtualFile> remaining, String origin) {
+            this.diagnostics = diagnostics;
+            this.remaining = remaining;
+            this.origin = origin;
+        }
+
+        boolean isComplete() {
+            return remaining.isEmpty();
+        }
+
+        /** The reused diagnostics followed by those of compiling {@link #remaining}, without duplicates. */
+        @NotNull List<CompilerDiagnostic> merge(@NotNull List<CompilerDiagnostic> compiled) {
+            if (diagnostics.isEmpty()) return compiled;
+            Set<CompilerDiagnostic> merged = new LinkedHashSet<>(diagnostics);
+            merged.addAll(compiled);
+            return List.copyOf(merged);
+        }
+    }
+
+    /** One recorded verdict, restricted to the files and diagnostics of one module. */
+    private static final class ModuleVerdict {
+        final VerdictScope scope;
+        final long generation;
+        final Set<String> files;
+        // Modules whose change invalidates the entry; null for the whole project.
+        final @Nullable Set<Module> watched;
+        final List<CompilerDiagnostic> diagnostics;
+        final String origin;
+
+        ModuleVerdict(
+            VerdictScope scope,
+            long generation,
+            Set<String> files,
+            @Nullable Set<Module> watched,
+            List<CompilerDiagnostic> diagnostics,
+            String origin
+        ) {
+            this.scope = scope;
+            this.generation = generation;
+            this.files = files;
+            this.watched = watched;
+            this.diagnostics = List.copyOf(diagnostics);
+            this.origin = origin;
+        }
+    }
 }
@@ -24,19 +24,26 @@ final class CompilationReportDialog extends DialogWrapper {
 
     private static final int DIALOG_WIDTH = 640;
     private static final int DIALOG_HEIGHT = 340;
+    private static final int PROGRESS_SCALE = 1000;
 
     private final Project project;
     private final String header;
-    private final Function<ProgressIndicator, List<String>> refreshAction;
+    private final Function<ProgressIndicator, List<CompilerDiagnostic>> refreshAction;
     @Nullable private final Runnable abortCommitAction;
-    private final DefaultListModel<String> listModel = new DefaultListModel<>();
+    private final DefaultListModel<CompilerDiagnostic> listModel = new DefaultListModel<>();
+    private final JBLabel headerLabel = new JBLabel();
+    private final JProgressBar progressBar = new JProgressBar(0, PROGRESS_SCALE);
+    private final JBLabel liveStatusLabel = new JBLabel(" ");
+    private final JPanel livePanel = new JPanel(new BorderLayout(8, 0));
+    private Action refreshButton;
+    private boolean running = false;
 
     CompilationReportDialog(
         @NotNull Project project,
         @NotNull String title,
         @NotNull String header,
-        @NotNull List<String> initialItems,
-        @NotNull Function<ProgressIndicator, List<String>> refreshAction
+        @NotNull List<CompilerDiagnostic> initialItems,
+        @NotNull Function<ProgressIndicator, List<CompilerDiagnostic>> refreshAction
     ) {
         this(project, title, header, initialItems, refreshAction, null);
     }
@@ -45,8 +52,8 @@ final class CompilationReportDialog extends DialogWrapper {
         @NotNull Project project,
         @NotNull String title,
         @NotNull String header,
-        @NotNull List<String> initialItems,
-        @NotNull Function<ProgressIndicator, List<String>> refreshAction,
+        @NotNull List<CompilerDiagnostic> initialItems,
+        @NotNull Function<ProgressIndicator, List<CompilerDiagnostic>> refreshAction,
         @Nullable Runnable abortCommitAction
     ) {
         super(project, true);
@@ -55,7 +62,7 @@ final class CompilationReportDialog extends DialogWrapper {
         this.refreshAction = refreshAction;
         this.abortCommitAction = abortCommitAction;
         setTitle(title);
-        initialItems.forEach(listModel::addElement);
+        listModel.addAll(initialItems);
         init();
     }
 
@@ -65,15 +72,13 @@ final class CompilationReportDialog extends DialogWrapper {
         panel.setPreferredSize(new Dimension(DIALOG_WIDTH, DIALOG_HEIGHT));
         panel.setBorder(BorderFactory.createEmptyBorder(8, 8, 4, 8));
 
-        JBLabel headerLabel = new JBLabel(
-            "<html>" + header.replace("\n", "<br>") + "</html>",
-            AllIcons.General.Error,
-            SwingConstants.LEFT
-        );
+        setHeader(header);
+        headerLabel.setIcon(AllIcons.General.Error);
+        headerLabel.setHorizontalAlignment(SwingConstants.LEFT);
         headerLabel.setBorder(BorderFactory.createEmptyBorder(0, 0, 6, 0));
         panel.add(headerLabel, BorderLayout.NORTH);
 
-        JBList<String> list = new JBList<>(listModel);
+        JBList<CompilerDiagnostic> list = new JBList<>(listModel);
         list.setCellRenderer(new CompilationEntryRenderer());
         list.addMouseListener(new MouseAdapter() {
             @Override
@@ -85,9 +90,54 @@ final class CompilationReportDialog extends DialogWrapper {
         });
         panel.add(new JBScrollPane(list), BorderLayout.CENTER);
 
+        // Only visible while errors are streamed in from a make that is still running.
+        livePanel.add(liveStatusLabel, BorderLayout.WEST);
+        livePanel.add(progressBar, BorderLayout.CENTER);
+        livePanel.setVisible(false);
+        panel.add(livePanel, BorderLayout.SOUTH);
+
         return panel;
     }
 
+    private void setHeader(String text) {
+        headerLabel.setText("<html>" + text.replace("\n", "<br>") + "</html>");
+    }
+
+    /**
+     * Shows the errors reported so far by a compile that is still running. Streamed lists
+     * only grow, so just the new tail is appended. Refresh is disabled until
+     * {@link #finishLive} is called; "Abort Push" stays available throughout.
+     */
+    void updateLive(@NotNull List<CompilerDiagnostic> soFar, double fraction) {
+        if (!running) {
+            running = true;
+            livePanel.setVisible(true);
+            if (refreshButton != null) refreshButton.setEnabled(false);
+        }
+        if (soFar.size() > listModel.size()) {
+            listModel.addAll(soFar.subList(listModel.size(), soFar.size()));
+        }
+        progressBar.setIndeterminate(fraction < 0);
+        if (fraction >= 0) {
+            progressBar.setValue((int) Math.round(fraction * PROGRESS_SCALE));
+        }
+        liveStatusLabel.setText("Compiling... " + soFar.size() + " error(s) so far");
+    }
+
+    /** Replaces the streamed list with the final result; closes as resolved if it is empty. */
+    void finishLive(@NotNull List<CompilerDiagnostic> items, @NotNull String finalHeader) {
+        running = false;
+        livePanel.setVisible(false);
+        if (refreshButton != null) refreshButton.setEnabled(true);
+        if (items.isEmpty()) {
+            close(OK_EXIT_CODE);
+            return;
+        }
+        setHeader(finalHeader);
+        listModel.clear();
+        listModel.addAll(items);
+    }
+
     @Override
     protected void createDefaultActions() {
         super.createDefaultActions();
@@ -100,7 +150,7 @@ final class CompilationReportDialog extends DialogWrapper {
             @Override
             public void actionPerformed(ActionEvent e) {
                 ProgressManager.getInstance().run(new Task.Modal(project, "Rechecking...", false) {
-                    private List<String> updated;
+                    private List<CompilerDiagnostic> updated;
 
                     @Override
                     public void run(@NotNull ProgressIndicator indicator) {
@@ -113,12 +163,13 @@ final class CompilationReportDialog extends DialogWrapper {
                         if (updated == null || updated.isEmpty()) {
                             close(OK_EXIT_CODE);
                         } else {
-                            updated.forEach(listModel::addElement);
+                            listModel.addAll(updated);
                         }
                     }
                 });
             }
         };
+        refreshButton = refresh;
 
         if (abortCommitAction == null) {
             return new Action[]{refresh, getCancelAction()};
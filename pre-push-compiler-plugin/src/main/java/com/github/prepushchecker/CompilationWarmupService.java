@@ -7,9 +7,7 @@ import com.intellij.openapi.compiler.CompilerManager;
 import com.intellij.openapi.compiler.CompilerMessageCategory;
 import com.intellij.openapi.components.Service;
 import com.intellij.openapi.diagnostic.Logger;
-import com.intellij.openapi.editor.Document;
-import com.intellij.openapi.fileEditor.FileDocumentManager;
-import com.intellij.openapi.fileEditor.FileDocumentManagerListener;
+import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.startup.StartupActivity;
@@ -21,6 +19,7 @@ import org.jetbrains.annotations.NotNull;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -29,18 +28,36 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Runs a debounced background compile of files the user has recently saved so that
+ * Runs a debounced background compile of source files that recently changed on disk so that
  * {@link CompilationErrorService#tryReuse} almost always hits at push time — turning
  * most pushes into zero-cost operations even on large projects.
  *
+ * <p>Changes arrive through the VFS ({@link SourceChangeListener}), so editor saves, code
+ * generators, external editors and {@code git checkout}/{@code pull} all count;
+ * {@link ContentRootIndex} routes each file to its project without a per-project file index
+ * query.
+ *
  * <p>Guarded against noise:
  * <ul>
  *   <li>Debounced (see {@link #DEBOUNCE_MS}); typing quickly coalesces into one compile.</li>
+ *   <li>Change storms (a checkout touching thousands of files, see
+ *       {@code prepushchecker.warmup.stormFiles}) collapse into the set of touched modules,
+ *       compiled with their dependents as one incremental module-scope make once the storm
+ *       has been quiet for {@link #STORM_SETTLE_MS}. That make only warms the JPS caches
+ *       for the next check; it records no verdict.</li>
  *   <li>Skipped in {@link PowerSaveMode} and while {@link DumbService#isDumb} is true.</li>
  *   <li>Single-flight per project; overlapping requests are coalesced after the current
  *       compile finishes.</li>
  *   <li>Disabled via the {@code prepushchecker.warmup.enabled} registry key.</li>
  * </ul>
+ *
+ * <p>Saves that change a file's non-private API also compile the files referencing it (see
+ * {@link ReferenceScopePlanner}), and the verdict is recorded as
+ * {@link VerdictScope.Kind#FILES}: with an inconclusive search it does not cover the dependent
+ * modules a push would check. With {@code prepushchecker.warmup.pushScope} (off by default,
+ * since it can compile whole dependent modules on every save) the saved files are compiled
+ * with the push handler's own adaptive scope instead, so the verdict is recorded as
+ * {@link VerdictScope.Kind#PUSH} and a later push can reuse it.
  */
 @Service(Service.Level.PROJECT)
 public final class CompilationWarmupService implements Disposable {
@@ -48,9 +65,13 @@ public final class CompilationWarmupService implements Disposable {
     private static final Logger LOG = Logger.getInstance(CompilationWarmupService.class);
     private static final String REGISTRY_KEY = "prepushchecker.warmup.enabled";
     private static final long DEBOUNCE_MS = 4_000L;
+    private static final long STORM_SETTLE_MS = 10_000L;
 
     private final Project project;
     private final Set<VirtualFile> dirty = Collections.synchronizedSet(new LinkedHashSet<>());
+    // Modules of the dirty files; what a storm collapses into. Guarded by `dirty`.
+    private final Set<Module> dirtyModules = new LinkedHashSet<>();
+    private boolean storm = false;
     private final AtomicBoolean inFlight = new AtomicBoolean(false);
     private final AtomicBoolean rerun = new AtomicBoolean(false);
     private final ScheduledExecutorService scheduler =
@@ -69,28 +90,34 @@ public final class CompilationWarmupService implements Disposable {
         return project.getService(CompilationWarmupService.class);
     }
 
-    /** Listener on the app-level message bus; routes saves into per-project dirty sets. */
-    public static final class SaveListener implements FileDocumentManagerListener {
-        @Override
-        public void beforeDocumentSaving(@NotNull Document document) {
-            VirtualFile file = FileDocumentManager.getInstance().getFile(document);
-            if (file == null || !file.isInLocalFileSystem()) return;
-            if (!PushValidationPaths.isCompilableSource(file.getPath())) return;
-            // Fan out to every open project that contains this file.
-            for (Project project : com.intellij.openapi.project.ProjectManager.getInstance().getOpenProjects()) {
-                if (project.isDisposed()) continue;
-                CompilationWarmupService svc = project.getServiceIfCreated(CompilationWarmupService.class);
-                if (svc == null) continue;
-                if (com.intellij.openapi.roots.ProjectFileIndex.getInstance(project).isInSourceContent(file)) {
-                    svc.markDirty(file);
+    /**
+     * Called by {@link SourceChangeListener} with the changed sources per module; a
+     * {@code null} file marks a module touched by a directory event.
+     */
+    void markDirty(Map<Module, List<VirtualFile>> changed) {
+        if (!isEnabled()) return;
+        synchronized (dirty) {
+            dirtyModules.addAll(changed.keySet());
+            if (!storm) {
+                for (List<VirtualFile> files : changed.values()) {
+                    for (VirtualFile file : files) {
+                        if (file == null) {
+                            storm = true;
+                        } else {
+                            dirty.add(file);
+                        }
+                    }
+                }
+                if (dirty.size() >= Registry.intValue("prepushchecker.warmup.stormFiles", 500)) {
+                    storm = true;
+                }
+                if (storm) {
+                    LOG.info("Warmup: change storm (" + dirty.size() + " file(s) in " + dirtyModules.size()
+                        + " module(s)); waiting for it to settle.");
+                    dirty.clear();
                 }
             }
         }
-    }
-
-    private void markDirty(VirtualFile file) {
-        if (!isEnabled()) return;
-        dirty.add(file);
         schedule();
     }
 
@@ -106,12 +133,18 @@ public final class CompilationWarmupService implements Disposable {
         ScheduledFuture<?> prev = pending;
         if (prev != null) prev.cancel(false);
         try {
-            pending = scheduler.schedule(this::fire, DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+            pending = scheduler.schedule(this::fire, isStorm() ? STORM_SETTLE_MS : DEBOUNCE_MS, TimeUnit.MILLISECONDS);
         } catch (java.util.concurrent.RejectedExecutionException ignored) {
             // disposed; drop silently
         }
     }
 
+    private boolean isStorm() {
+        synchronized (dirty) {
+            return storm;
+        }
+    }
+
     private void fire() {
         if (project.isDisposed() || !isEnabled()) return;
         if (com.intellij.ide.PowerSaveMode.isEnabled()) return;
@@ -126,49 +159,166 @@ public final class CompilationWarmupService implements Disposable {
         }
 
         VirtualFile[] snapshot;
+        Module[] stormModules = null;
         synchronized (dirty) {
-            if (dirty.isEmpty()) {
-                inFlight.set(false);
-                return;
+            if (storm) {
+                stormModules = dirtyModules.toArray(Module.EMPTY_ARRAY);
+                storm = false;
             }
             snapshot = dirty.toArray(VirtualFile.EMPTY_ARRAY);
             dirty.clear();
+            dirtyModules.clear();
         }
 
-        ApplicationManager.getApplication().invokeLater(() -> runCompile(snapshot),
-            ModalityState.defaultModalityState());
+        if (stormModules != null) {
+            compileModules(stormModules);
+        } else if (snapshot.length > 0) {
+            planAndCompile(snapshot);
+        } else {
+            finish();
+        }
+    }
+
+    /**
+     * Runs on the warmup thread after a storm: one incremental make of the touched modules
+     * and their dependents.
+     */
+    private void compileModules(Module[] touched) {
+        try {
+            if (project.isDisposed()) {
+                finish();
+                return;
+            }
+            CheckTimings.Trace trace = CheckTimings.getInstance(project).start("warmup");
+            Set<Module> modules = new LinkedHashSet<>();
+            for (Module m : touched) {
+                if (!m.isDisposed()) modules.add(m);
+            }
+            modules.addAll(ModuleDependencyIndex.getInstance(project).dependentsOf(modules));
+            if (modules.isEmpty()) {
+                finish();
+                return;
+            }
+            CompilerManager cm = CompilerManager.getInstance(project);
+            com.intellij.openapi.compiler.CompileScope scope =
+                cm.createModulesCompileScope(modules.toArray(Module.EMPTY_ARRAY), false);
+            LOG.info("Warmup: storm settled; compiling " + modules.size() + " module(s) (touched + dependents).");
+            trace.phase("scope");
+            ApplicationManager.getApplication().invokeLater(() -> runCompile(cm, scope, null, VirtualFile.EMPTY_ARRAY, trace),
+                ModalityState.defaultModalityState());
+        } catch (Throwable t) {
+            LOG.debug("Warmup compile failed", t);
+            finish();
+        }
     }
 
-    private void runCompile(VirtualFile[] files) {
+    /**
+     * Runs on the warmup thread: plans the scope (reference searches must stay off the EDT),
+     * then starts the make on the EDT.
+     */
+    private void planAndCompile(VirtualFile[] files) {
         try {
-            if (project.isDisposed()) return;
+            if (project.isDisposed()) {
+                finish();
+                return;
+            }
+            // Only recorded if a compile actually starts.
+            CheckTimings.Trace trace = CheckTimings.getInstance(project).start("warmup");
             CompilerManager cm = CompilerManager.getInstance(project);
             // Keep only files that are still valid and in a source root.
             com.intellij.openapi.roots.ProjectFileIndex idx =
                 com.intellij.openapi.roots.ProjectFileIndex.getInstance(project);
-            java.util.List<VirtualFile> live = new java.util.ArrayList<>(files.length);
-            for (VirtualFile f : files) {
-                if (f != null && f.isValid() && idx.isInSourceContent(f)) live.add(f);
-            }
+            java.util.List<VirtualFile> live = ApplicationManager.getApplication().runReadAction(
+                (com.intellij.openapi.util.Computable<java.util.List<VirtualFile>>) () -> {
+                    java.util.List<VirtualFile> valid = new java.util.ArrayList<>(files.length);
+                    for (VirtualFile f : files) {
+                        if (f != null && f.isValid() && idx.isInSourceContent(f)) valid.add(f);
+                    }
+                    return valid;
+                });
             if (live.isEmpty()) {
                 finish();
                 return;
             }
             VirtualFile[] arr = live.toArray(VirtualFile.EMPTY_ARRAY);
-            com.intellij.openapi.compiler.CompileScope scope = cm.createFilesCompileScope(arr);
+            boolean pushScope = Registry.is("prepushchecker.warmup.pushScope", false);
+            com.intellij.openapi.compiler.CompileScope scope = pushScope
+                ? PrePushCompilationHandler.buildPushScopeForExternal(project, live, baselineOf(live), cm)
+                : cm.createFilesCompileScope(withReferencingFiles(live).toArray(VirtualFile.EMPTY_ARRAY));
+            VerdictScope.Kind kind = pushScope ? VerdictScope.Kind.PUSH : VerdictScope.Kind.FILES;
+            trace.phase("scope");
+            ApplicationManager.getApplication().invokeLater(() -> runCompile(cm, scope, kind, arr, trace),
+                ModalityState.defaultModalityState());
+        } catch (Throwable t) {
+            LOG.debug("Warmup compile failed", t);
+            finish();
+        }
+    }
+
+    /**
+     * The saved files, plus the files referencing any part of their API that changed since
+     * the upstream branch — the callers a push of these files would compile. Saves that keep
+     * the API intact (the common case) stay a compile of just the saved files, as does any
+     * save the planner cannot analyse.
+     */
+    private java.util.List<VirtualFile> withReferencingFiles(java.util.List<VirtualFile> files) {
+        if (!Registry.is("prepushchecker.scope.references", true)) return files;
+        PushBaseline baseline = baselineOf(files);
+        Set<VirtualFile> referencing = ReferenceScopePlanner.plan(project, files, baseline);
+        if (referencing == null || referencing.isEmpty()) return files;
+        java.util.List<VirtualFile> union = new java.util.ArrayList<>(files);
+        union.addAll(referencing);
+        return union;
+    }
+
+    /** The upstream revisions of {@code files}, for the reference-aware scope planning. */
+    private PushBaseline baselineOf(java.util.List<VirtualFile> files) {
+        if (!Registry.is("prepushchecker.scope.references", true)) return PushBaseline.UNKNOWN;
+        java.util.List<String> paths = new java.util.ArrayList<>(files.size());
+        for (VirtualFile f : files) {
+            paths.add(f.getPath());
+        }
+        return PushBaseline.fromUpstream(project, paths);
+    }
+
+    /** Starts the make on the EDT; a {@code null} {@code kind} compiles without recording a verdict. */
+    private void runCompile(
+        CompilerManager cm,
+        com.intellij.openapi.compiler.CompileScope scope,
+        @org.jetbrains.annotations.Nullable VerdictScope.Kind kind,
+        VirtualFile[] arr,
+        CheckTimings.Trace trace
+    ) {
+        try {
+            if (project.isDisposed()) {
+                finish();
+                return;
+            }
+            trace.phase("edtWait");
+            CompilationErrorService.CompileStart start =
+                CompilationErrorService.getInstance(project).compileStart(java.util.Arrays.asList(arr));
             cm.make(scope, (aborted, errorCount, warnings, ctx) -> {
                 try {
-                    if (aborted) return;
-                    List<String> result = errorCount > 0
+                    trace.phase("jps");
+                    if (aborted) {
+                        trace.verdict("aborted", -1);
+                        return;
+                    }
+                    List<CompilerDiagnostic> result = errorCount > 0
                         ? PrePushCompilationHandler.formatCompilerMessages(
                             project, ctx.getMessages(CompilerMessageCategory.ERROR))
                         : Collections.emptyList();
+                    trace.verdict("compile", result.size());
+                    if (kind == null) return;
                     CompilationErrorService.getInstance(project).recordCompletion(
-                        false,
-                        CompilationErrorService.snapshotStamps(java.util.Arrays.asList(arr)),
-                        result
+                        kind,
+                        java.util.Arrays.asList(arr),
+                        result,
+                        "warmup",
+                        start
                     );
                 } finally {
+                    trace.finish();
                     finish();
                 }
             });
@@ -186,7 +336,10 @@ public final class CompilationWarmupService implements Disposable {
     @Override
     public void dispose() {
         scheduler.shutdownNow();
-        dirty.clear();
+        synchronized (dirty) {
+            dirty.clear();
+            dirtyModules.clear();
+        }
     }
 
     /** Creates the project service on startup so the listener has somewhere to route events. */
@@ -195,6 +348,8 @@ public final class CompilationWarmupService implements Disposable {
         public void runActivity(@NotNull Project project) {
             CompilationWarmupService svc = getInstance(project);
             Disposer.register(project, svc);
+            // The new project's content roots are not routed yet.
+            ContentRootIndex.getInstance().invalidate();
         }
     }
 }
@@ -0,0 +1,316 @@
+package com.github.prepushchecker;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectManager;
+import com.intellij.openapi.startup.StartupActivity;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The one local endpoint that lets external git clients (terminal, Sublime Merge, …) reuse the
+ * IDE's incremental JPS compiler instead of spawning a full Gradle/Maven build, for every open
+ * project at once. Each request is routed to the owning project's {@link PrePushLocalServer}.
+ *
+ * <p>Protocol version 1 (line-delimited, UTF-8); {@code CHECK 2} selects the streaming
+ * version 2 described in {@link ServerReply}. The token is the session token of
+ * {@link ServerEndpoint}; requests without it get {@code ERR unauthorized}. The repository
+ * root is optional and routes checks that have no pushed files.
+ * <pre>
+ *   C -> S : CHECK 1 &lt;token&gt; [&lt;repository root&gt;]\n&lt;absolute path&gt;\n...\n\n
+ *   S -> C : OK\n                              (compile succeeded)
+ *           | ERRORS &lt;n&gt;\n&lt;line&gt;...\nEND\n    (n errors follow, {@link CompilerDiagnostic#toString()} form)
+ *           | ERR &lt;reason&gt;\n                   (server could not run the check)
+ * </pre>
+ *
+ * <p>A request goes to the project whose content roots hold its first pushed file (see
+ * {@link ContentRootIndex}), else to the project whose base directory is, contains or lies in
+ * the repository root, comparing whole path segments; the deepest such base wins. A worktree
+ * that no open project contains gets {@code ERR no-project}:
+ * the IDE can only compile its own checkout.
+ *
+ * <p>The gateway starts with the first project, listens on a Unix-domain socket in the user's
+ * private directory and on an ephemeral {@code 127.0.0.1} port, and describes both in the
+ * shared {@link #REGISTRY_NAME} file there:
+ * <pre>
+ *   port &lt;tcp port&gt;
+ *   socket &lt;socket path&gt;      (absent without Unix-domain sockets)
+ *   token &lt;session token&gt;
+ * </pre>
+ * The hook finds the registry through {@link #POINTER_FILE_RELATIVE} in an open project, or at
+ * its standard place for any other repository. Clients of all projects share one pool of
+ * {@link #MAX_CLIENTS} workers; the accept threads only hand connections off.
+ */
+@Service(Service.Level.APP)
+public final class CompileGateway implements Disposable {
+    static final String REGISTRY_NAME = "gateway";
+    /** Holds the registry path in each open project, for hooks that cannot guess it. */
+    static final String POINTER_FILE_RELATIVE = ".idea/pre-push-checker/gateway";
+    private static final Logger LOG = Logger.getInstance(CompileGateway.class);
+    private static final int BACKLOG = 50;
+    private static final int MAX_CLIENTS = 8;
+    private static final int CLIENT_SO_TIMEOUT_MS = 5 * 60 * 1000;
+
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private volatile ServerSocket server;
+    private volatile ServerSocketChannel unixServer;
+    private final List<Thread> acceptThreads = new CopyOnWriteArrayList<>();
+    private volatile String token;
+    private volatile Path registry;
+    // Written on start, deleted on dispose.
+    private final List<Path> ownedFiles = new CopyOnWriteArrayList<>();
+    private final ExecutorService clients =
+        AppExecutorUtil.createBoundedApplicationPoolExecutor("PrePushChecker-Gateway-Clients", MAX_CLIENTS);
+
+    public static CompileGateway getInstance() {
+        return ApplicationManager.getApplication().getService(CompileGateway.class);
+    }
+
+    /** Starts the gateway if needed and points {@code project}'s hook at it. */
+    void register(@NotNull Project project) {
+        start();
+        Path registryFile = registry;
+        String basePath = project.getBasePath();
+        if (registryFile == null || basePath == null || basePath.isBlank()) return;
+        Path pointer = Path.of(basePath, POINTER_FILE_RELATIVE);
+        try {
+            Files.createDirectories(pointer.getParent());
+            Files.writeString(pointer, registryFile + "\n", StandardCharsets.UTF_8);
+            Disposer.register(project, () -> {
+                try { Files.deleteIfExists(pointer); } catch (IOException ignored) {}
+            });
+        } catch (IOException e) {
+            LOG.debug("Could not write " + pointer, e);
+        }
+    }
+
+    private void start() {
+        if (!started.compareAndSet(false, true)) return;
+        try {
+            Path dir = ServerEndpoint.privateDirectory();
+            token = ServerEndpoint.newToken();
+
+            ServerSocket s = new ServerSocket(0, BACKLOG, InetAddress.getLoopbackAddress());
+            server = s;
+            startAcceptThread("tcp", () -> acceptTcp(s));
+
+            Path socket = dir.resolve(REGISTRY_NAME + ".sock");
+            ServerSocketChannel channel = ServerEndpoint.bindUnix(socket, BACKLOG);
+            if (channel != null) {
+                unixServer = channel;
+                ownedFiles.add(socket);
+                startAcceptThread("unix", () -> acceptUnix(channel));
+            }
+
+            Path registryFile = dir.resolve(REGISTRY_NAME);
+            ServerEndpoint.writePrivate(registryFile, "port " + s.getLocalPort() + "\n"
+                + (channel != null ? "socket " + socket + "\n" : "")
+                + "token " + token + "\n");
+            ownedFiles.add(registryFile);
+            registry = registryFile;
+
+            LOG.info("Pre-push compile gateway listening on 127.0.0.1:" + s.getLocalPort()
+                + (channel != null ? " and " + socket : ""));
+        } catch (IOException ex) {
+            LOG.warn("Could not start the pre-push compile gateway; external hooks will fall back to the build tool.", ex);
+            stop();
+        }
+    }
+
+    private void startAcceptThread(String transport, Runnable loop) {
+        Thread t = new Thread(loop, "PrePushChecker-Gateway-" + transport);
+        t.setDaemon(true);
+        t.start();
+        acceptThreads.add(t);
+    }
+
+    private void acceptTcp(ServerSocket s) {
+        while (!s.isClosed() && !Thread.currentThread().isInterrupted()) {
+            try {
+                Socket socket = s.accept();
+                socket.setSoTimeout(CLIENT_SO_TIMEOUT_MS);
+                serve(socket, socket.getInputStream(), socket.getOutputStream());
+            } catch (IOException e) {
+                if (s.isClosed()) return;
+                LOG.debug("Accept failed", e);
+            } catch (Throwable t) {
+                LOG.warn("Unexpected error in accept loop", t);
+            }
+        }
+    }
+
+    private void acceptUnix(ServerSocketChannel channel) {
+        while (channel.isOpen() && !Thread.currentThread().isInterrupted()) {
+            try {
+                SocketChannel client = channel.accept();
+                // The request is read completely before the first write, so the two blocking
+                // streams never wait on each other.
+                serve(client, Channels.newInputStream(client), Channels.newOutputStream(client));
+            } catch (IOException e) {
+                if (!channel.isOpen()) return;
+                LOG.debug("Accept failed", e);
+            } catch (Throwable t) {
+                LOG.warn("Unexpected error in accept loop", t);
+            }
+        }
+    }
+
+    /** Hands a connection to the client pool, or drops it if the gateway is shutting down. */
+    private void serve(Closeable connection, InputStream in, OutputStream out) throws IOException {
+        try {
+            clients.execute(() -> handleClient(connection, in, out));
+        } catch (RejectedExecutionException e) {
+            connection.close();
+        }
+    }
+
+    private void handleClient(Closeable connection, InputStream input, OutputStream output) {
+        // Channel streams have no read timeout: a Unix-domain client that sends no complete
+        // request within the TCP clients' idle limit is disconnected, so it cannot hold a worker.
+        ScheduledFuture<?> idle = connection instanceof SocketChannel
+            ? AppExecutorUtil.getAppScheduledExecutorService().schedule(() -> {
+                try { connection.close(); } catch (IOException ignored) {}
+            }, CLIENT_SO_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+            : null;
+        try (Closeable c = connection;
+             BufferedReader in = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+
+            String line = in.readLine();
+            if (line == null || !line.startsWith("CHECK")) {
+                out.write("ERR unknown-request\n");
+                out.flush();
+                return;
+            }
+            String expected = token;
+            if (expected == null || !ServerEndpoint.tokenMatches(expected, ServerEndpoint.tokenOf(line))) {
+                out.write("ERR unauthorized\n");
+                out.flush();
+                return;
+            }
+            ServerReply reply = ServerReply.negotiate(line, out);
+            try {
+                // Read optional list of absolute file paths (one per line) until a blank line or EOF.
+                List<String> requestedPaths = new ArrayList<>();
+                String request = line;
+                while ((line = in.readLine()) != null) {
+                    String trimmed = line.trim();
+                    if (trimmed.isEmpty()) break;
+                    requestedPaths.add(trimmed);
+                }
+                if (idle != null) idle.cancel(false);
+
+                Project project = route(ServerEndpoint.rootOf(request), requestedPaths);
+                if (project == null) {
+                    reply.fail("no-project");
+                    return;
+                }
+                PrePushLocalServer.getInstance(project).check(requestedPaths, reply);
+            } finally {
+                reply.close();
+            }
+        } catch (IOException e) {
+            LOG.debug("Client handling failed", e);
+        } finally {
+            if (idle != null) idle.cancel(false);
+        }
+    }
+
+    /**
+     * The open project that owns the pushed files, or else the one whose base directory is,
+     * contains or lies in the repository root; of nested candidates, the deepest base wins.
+     */
+    private static @Nullable Project route(@Nullable String root, List<String> paths) {
+        if (!paths.isEmpty()) {
+            Module owner = ContentRootIndex.getInstance().ownerOf(paths.get(0).replace('\\', '/'));
+            if (owner != null && !owner.isDisposed()) return owner.getProject();
+        }
+        if (root == null) return null;
+        String repository = FileUtil.toSystemIndependentName(Path.of(root).normalize().toString());
+        Project best = null;
+        int bestDepth = -1;
+        for (Project project : ProjectManager.getInstance().getOpenProjects()) {
+            String basePath = project.getBasePath();
+            if (project.isDisposed() || basePath == null) continue;
+            String base = FileUtil.toSystemIndependentName(Path.of(basePath).normalize().toString());
+            if (!FileUtil.isAncestor(repository, base, false) && !FileUtil.isAncestor(base, repository, false)) {
+                continue;
+            }
+            int depth = StringUtil.countChars(base, '/');
+            if (depth > bestDepth) {
+                best = project;
+                bestDepth = depth;
+            }
+        }
+        return best;
+    }
+
+    private void stop() {
+        started.set(false);
+        token = null;
+        registry = null;
+        ServerSocket s = server;
+        server = null;
+        if (s != null) {
+            try { s.close(); } catch (IOException ignored) {}
+        }
+        ServerSocketChannel channel = unixServer;
+        unixServer = null;
+        if (channel != null) {
+            try { channel.close(); } catch (IOException ignored) {}
+        }
+        for (Thread t : acceptThreads) t.interrupt();
+        acceptThreads.clear();
+        for (Path p : ownedFiles) {
+            try { Files.deleteIfExists(p); } catch (IOException ignored) {}
+        }
+        ownedFiles.clear();
+    }
+
+    @Override
+    public void dispose() {
+        stop();
+    }
+
+    /** Starts the gateway with the first project and points each project's hook at it. */
+    public static final class Starter implements StartupActivity {
+        @Override
+        public void runActivity(@NotNull Project project) {
+            getInstance().register(project);
+        }
+    }
+}
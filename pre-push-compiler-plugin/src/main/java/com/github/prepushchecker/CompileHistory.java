@@ -0,0 +1,268 @@
+package com.github.prepushchecker;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.compiler.CompilationStatusListener;
+import com.intellij.openapi.compiler.CompileContext;
+import com.intellij.openapi.compiler.CompileTask;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.registry.Registry;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * How long compiles of each module have recently taken on this machine, persisted across
+ * restarts.
+ *
+ * <p>Every make the IDE runs — push checks, warmup, the local server, the user's own builds —
+ * is timed from a "before" compile task to {@link CompilationStatusListener#compilationFinished}.
+ * The wall time is split evenly over the scope's affected modules, and each module keeps its
+ * last {@link #SAMPLES_PER_MODULE} shares. From those the planners get:
+ * <ul>
+ *   <li>{@link #estimateMillis}: the typical (median) cost of a module set, which replaces the
+ *       fixed module-count cap when every module has history;</li>
+ *   <li>{@link #timeoutMillis}: a deadline from the 95th percentile with headroom, so a
+ *       normally quick scope that stops making progress is given up on in a minute rather
+ *       than five, and a normally slow one is not cut off at the fixed default.</li>
+ * </ul>
+ * Canceled makes are not recorded. Stored in {@link #STORE_RELATIVE_PATH}.
+ */
+@Service(Service.Level.PROJECT)
+public final class CompileHistory implements Disposable {
+
+    static final String STORE_RELATIVE_PATH = ".idea/pre-push-checker/compile-history.bin";
+    static final int SAMPLES_PER_MODULE = 16;
+    /** Deadlines from history never drop below this, so a cold cache has room. */
+    static final long MIN_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(60);
+    /** Nor exceed this, however slow the history says a scope is. */
+    static final long MAX_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    private static final Logger LOG = Logger.getInstance(CompileHistory.class);
+    private static final Key<Long> STARTED_AT = Key.create("prepushchecker.compileStartedAt");
+    private static final int FORMAT_VERSION = 1;
+    private static final int TIMEOUT_FACTOR = 3;
+    private static final long TIMEOUT_SLACK_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final Project project;
+    // Module name -> recent per-module compile shares. Guarded by `this`.
+    private final Map<String, Samples> samples = new HashMap<>();
+    private final AtomicBoolean savePending = new AtomicBoolean(false);
+    private boolean loaded = false;
+
+    public CompileHistory(@NotNull Project project) {
+        this.project = project;
+    }
+
+    public static CompileHistory getInstance(@NotNull Project project) {
+        return project.getService(CompileHistory.class);
+    }
+
+    /** Records that a make over {@code modules} took {@code elapsedMillis}. */
+    void record(@NotNull Collection<Module> modules, long elapsedMillis) {
+        if (modules.isEmpty() || elapsedMillis < 0) return;
+        long share = Math.max(1, elapsedMillis / modules.size());
+        synchronized (this) {
+            ensureLoaded();
+            for (Module m : modules) {
+                samples.computeIfAbsent(m.getName(), n -> new Samples()).add(share);
+            }
+        }
+        scheduleSave();
+    }
+
+    /**
+     * Median cost of compiling {@code modules} together, or {@code -1} if any of them has no
+     * history yet.
+     */
+    long estimateMillis(@NotNull Collection<Module> modules) {
+        return sum(modules, 50);
+    }
+
+    /**
+     * Deadline for a make over {@code modules}: three times their summed 95th percentile plus
+     * slack, within [{@link #MIN_TIMEOUT_MILLIS}, {@link #MAX_TIMEOUT_MILLIS}].
+     * {@code fallbackMillis} if any module has no history or the history is disabled.
+     */
+    long timeoutMillis(@NotNull Collection<Module> modules, long fallbackMillis) {
+        if (!Registry.is("prepushchecker.history.timeouts", true)) return fallbackMillis;
+        long p95 = sum(modules, 95);
+        if (p95 < 0) return fallbackMillis;
+        long timeout = p95 * TIMEOUT_FACTOR + TIMEOUT_SLACK_MILLIS;
+        return Math.max(MIN_TIMEOUT_MILLIS, Math.min(MAX_TIMEOUT_MILLIS, timeout));
+    }
+
+    private synchronized long sum(Collection<Module> modules, int percentile) {
+        if (modules.isEmpty()) return -1;
+        ensureLoaded();
+        long total = 0;
+        for (Module m : modules) {
+            Samples s = samples.get(m.getName());
+            if (s == null) return -1;
+            total += s.percentile(percentile);
+        }
+        return total;
+    }
+
+    /** Forgets every recorded duration, in memory and on disk. */
+    public synchronized void clear() {
+        samples.clear();
+        loaded = true;
+        Path store = storePath();
+        if (store != null) {
+            try {
+                Files.deleteIfExists(store);
+            } catch (IOException e) {
+                LOG.debug("Could not delete compile history " + store, e);
+            }
+        }
+    }
+
+    // ── Recording ─────────────────────────────────────────────────────────────
+
+    /** Stamps the start of every make; registered as a "before" compile task. */
+    public static final class StartTask implements CompileTask {
+        @Override
+        public boolean execute(@NotNull CompileContext context) {
+            context.putUserData(STARTED_AT, System.nanoTime());
+            return true;
+        }
+    }
+
+    /** Records the duration of every make that ran to completion. */
+    public static final class FinishListener implements CompilationStatusListener {
+        private final Project project;
+
+        public FinishListener(@NotNull Project project) {
+            this.project = project;
+        }
+
+        @Override
+        public void compilationFinished(boolean aborted, int errors, int warnings, @NotNull CompileContext context) {
+            Long startedAt = context.getUserData(STARTED_AT);
+            if (aborted || startedAt == null || project.isDisposed()) return;
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+            Module[] modules = ApplicationManager.getApplication().runReadAction(
+                (Computable<Module[]>) () -> context.getCompileScope().getAffectedModules());
+            getInstance(project).record(Arrays.asList(modules), elapsedMillis);
+        }
+    }
+
+    // ── Persistence ───────────────────────────────────────────────────────────
+
+    private @Nullable Path storePath() {
+        String basePath = project.getBasePath();
+        return basePath == null || basePath.isBlank() ? null : Path.of(basePath, STORE_RELATIVE_PATH);
+    }
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        loaded = true;
+        Path store = storePath();
+        if (store == null || !Files.isRegularFile(store)) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(store)))) {
+            if (in.readInt() != FORMAT_VERSION) return;
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String module = in.readUTF();
+                int n = Math.min(in.readInt(), SAMPLES_PER_MODULE);
+                Samples s = new Samples();
+                for (int j = 0; j < n; j++) {
+                    s.add(in.readLong());
+                }
+                samples.put(module, s);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.info("Discarding unreadable compile history " + store + ": " + e);
+            samples.clear();
+        }
+    }
+
+    /** Coalesces the saves of a burst of makes into one write on a pooled thread. */
+    private void scheduleSave() {
+        if (!savePending.compareAndSet(false, true)) return;
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            savePending.set(false);
+            if (!project.isDisposed()) save();
+        });
+    }
+
+    private synchronized void save() {
+        Path store = storePath();
+        if (store == null) return;
+        try {
+            Files.createDirectories(store.getParent());
+            Path tmp = store.resolveSibling(store.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(samples.size());
+                for (Map.Entry<String, Samples> e : samples.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    long[] values = e.getValue().inOrder();
+                    out.writeInt(values.length);
+                    for (long v : values) {
+                        out.writeLong(v);
+                    }
+                }
+            }
+            Files.move(tmp, store, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.debug("Could not persist compile history " + store, e);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        synchronized (this) {
+            samples.clear();
+        }
+    }
+
+    /** Ring buffer of the most recent samples of one module. */
+    private static final class Samples {
+        private final long[] ring = new long[SAMPLES_PER_MODULE];
+        private int size = 0;
+        private int next = 0;
+
+        void add(long value) {
+            ring[next] = value;
+            next = (next + 1) % ring.length;
+            if (size < ring.length) size++;
+        }
+
+        /** Oldest first, so a reload keeps the same eviction order. */
+        long[] inOrder() {
+            long[] out = new long[size];
+            int start = size < ring.length ? 0 : next;
+            for (int i = 0; i < size; i++) {
+                out[i] = ring[(start + i) % ring.length];
+            }
+            return out;
+        }
+
+        long percentile(int p) {
+            long[] sorted = Arrays.copyOf(ring, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(p / 100.0 * size) - 1;
+            return sorted[Math.max(0, Math.min(size - 1, index))];
+        }
+    }
+}
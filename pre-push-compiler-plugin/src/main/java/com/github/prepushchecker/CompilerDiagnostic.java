@@ -0,0 +1,225 @@
+package com.github.prepushchecker;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Objects;
+
+/**
+ * One structured compiler diagnostic, shared by every producer (push handler, local server,
+ * warmup, external hook log) and every consumer (error service, tool window, block dialog).
+ *
+ * <p>Paths are project-relative where possible and interned, so thousands of diagnostics
+ * pointing into the same handful of files share one string. Line and column are 1-based;
+ * {@code 0} means "unknown". Diagnostics without a path (e.g. "Compilation was aborted.")
+ * are plain status messages.
+ *
+ * <p>{@link #toString()} renders the legacy {@code [path (line, col)] message} form, which is
+ * still what the local server writes on the wire and what the hook log contains.
+ */
+public final class CompilerDiagnostic {
+
+    public enum Severity { ERROR, WARNING, INFO }
+
+    @Nullable private final String path;
+    @NotNull private final String fileName;
+    private final int line;
+    private final int column;
+    @NotNull private final Severity severity;
+    @Nullable private final String module;
+    @NotNull private final String message;
+
+    // Lazily built legacy text; racy but idempotent.
+    private String text;
+
+    CompilerDiagnostic(
+        @Nullable String path,
+        int line,
+        int column,
+        @NotNull Severity severity,
+        @Nullable String module,
+        @Nullable String message
+    ) {
+        String normalized = path == null || path.isBlank() ? null : path.replace('\\', '/');
+        this.path = normalized != null ? normalized.intern() : null;
+        this.fileName = normalized != null ? lastSegment(normalized) : "";
+        this.line = Math.max(0, line);
+        this.column = Math.max(0, column);
+        this.severity = severity;
+        this.module = module != null ? module.intern() : null;
+        this.message = message != null ? message.trim() : "";
+    }
+
+    /** A diagnostic that is not attached to any file (timeouts, aborts, generic failures). */
+    static CompilerDiagnostic general(@NotNull String message) {
+        return new CompilerDiagnostic(null, 0, 0, Severity.ERROR, null, message);
+    }
+
+    /** A whole-file problem without a known position (e.g. flagged by the IDE's problem solver). */
+    static CompilerDiagnostic fileProblem(@NotNull String path, @Nullable String module, @Nullable String message) {
+        return new CompilerDiagnostic(path, 0, 0, Severity.ERROR, module, message);
+    }
+
+    public @Nullable String getPath() {
+        return path;
+    }
+
+    /** Last path segment, or an empty string for diagnostics without a file. */
+    public @NotNull String getFileName() {
+        return fileName;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    public @NotNull Severity getSeverity() {
+        return severity;
+    }
+
+    public @Nullable String getModule() {
+        return module;
+    }
+
+    public @NotNull String getMessage() {
+        return message;
+    }
+
+    public boolean hasPosition() {
+        return line > 0;
+    }
+
+    /**
+     * Parses the legacy {@code [path (line, col)] message} / {@code [path line:col] message}
+     * text form back into a diagnostic. Anything not in bracket form becomes a
+     * {@link #general} message. Returns {@code null} for blank input.
+     */
+    static @Nullable CompilerDiagnostic parse(@Nullable String entry) {
+        if (entry == null || entry.isBlank()) return null;
+        String trimmed = entry.trim();
+        if (!trimmed.startsWith("[")) return general(trimmed);
+        int end = trimmed.indexOf(']');
+        if (end < 0) return general(trimmed);
+
+        String inner = trimmed.substring(1, end).trim();
+        String msg = trimmed.substring(end + 1).trim();
+        String filePath = inner;
+        int[] position = null;
+
+        // Trailing "(line, col)" group, e.g. "src/Foo.java (10, 5)".
+        if (inner.endsWith(")")) {
+            int openParen = inner.lastIndexOf('(');
+            if (openParen > 0) {
+                position = parsePosition(inner.substring(openParen));
+                if (position != null) {
+                    filePath = inner.substring(0, openParen).trim();
+                }
+            }
+        }
+        // Trailing "line:col" after the last space, e.g. "src/Foo.java 10:5".
+        if (position == null) {
+            int space = inner.lastIndexOf(' ');
+            if (space >= 0) {
+                position = parsePosition(inner.substring(space + 1));
+                if (position != null) {
+                    filePath = inner.substring(0, space);
+                }
+            }
+        }
+
+        int lineNo = position != null ? position[0] : 0;
+        int col = position != null ? position[1] : 0;
+        return new CompilerDiagnostic(filePath, lineNo, col, Severity.ERROR, null, msg);
+    }
+
+    /**
+     * Parses {@code "(10, 5)"}, {@code "10:5"} or {@code "10"} into {@code {line, column}}
+     * (column {@code 0} when absent). Returns {@code null} if {@code text} is not a position.
+     */
+    static int @Nullable [] parsePosition(@Nullable String text) {
+        if (text == null) return null;
+        String body = text.trim();
+        if (body.startsWith("(") && body.endsWith(")")) {
+            body = body.substring(1, body.length() - 1);
+        }
+        body = body.replace(" ", "");
+        if (!isPosition(body)) return null;
+        String[] parts = body.split("[,:]");
+        int lineNo = parseIntOrZero(parts.length > 0 ? parts[0] : null);
+        int col = parseIntOrZero(parts.length > 1 ? parts[1] : null);
+        return lineNo > 0 ? new int[] { lineNo, col } : null;
+    }
+
+    private static boolean isPosition(String s) {
+        if (s.isEmpty()) return false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (!(Character.isDigit(c) || c == ':' || c == '-' || c == ',')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int parseIntOrZero(@Nullable String s) {
+        if (s == null || s.isEmpty()) return 0;
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String lastSegment(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash >= 0 ? path.substring(slash + 1) : path;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CompilerDiagnostic)) return false;
+        CompilerDiagnostic that = (CompilerDiagnostic) o;
+        return line == that.line
+            && column == that.column
+            && severity == that.severity
+            && Objects.equals(path, that.path)
+            && Objects.equals(module, that.module)
+            && message.equals(that.message);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = Objects.hashCode(path);
+        h = 31 * h + line;
+        h = 31 * h + column;
+        h = 31 * h + message.hashCode();
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        String t = text;
+        if (t != null) return t;
+        if (path == null) {
+            t = message;
+        } else {
+            StringBuilder sb = new StringBuilder(path.length() + message.length() + 16);
+            sb.append('[').append(path);
+            if (line > 0) {
+                sb.append(" (").append(line);
+                if (column > 0) sb.append(", ").append(column);
+                sb.append(')');
+            }
+            sb.append(']');
+            if (!message.isEmpty()) sb.append(' ').append(message);
+            t = sb.toString();
+        }
+        text = t;
+        return t;
+    }
+}
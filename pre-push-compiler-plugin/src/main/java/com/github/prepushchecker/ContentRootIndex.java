@@ -0,0 +1,121 @@
+package com.github.prepushchecker;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.project.ModuleListener;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectCloseListener;
+import com.intellij.openapi.project.ProjectManager;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content-root path to owning module, across every open project, so VFS events can be routed
+ * to a project's warmup without asking each project's {@code ProjectFileIndex} about every
+ * changed file.
+ *
+ * <p>A lookup walks the path's parent directories, so it costs one hash probe per directory
+ * level, independent of the number of projects and roots. The innermost content root wins,
+ * as in the platform's own index. This is a routing filter only: whether a file is really in
+ * a source root (and not excluded) is decided later, under a read action.
+ *
+ * <p>Dropped on every roots change, module add/remove and project open/close; rebuilt lazily
+ * on the next lookup.
+ */
+@Service(Service.Level.APP)
+public final class ContentRootIndex {
+
+    // Bumped on every invalidation, so a build racing a model change is not published.
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Map<String, Module> roots;
+
+    public static ContentRootIndex getInstance() {
+        return ApplicationManager.getApplication().getService(ContentRootIndex.class);
+    }
+
+    /** The module whose content root contains {@code path}, or {@code null}. */
+    @Nullable Module ownerOf(@NotNull String path) {
+        Map<String, Module> map = roots();
+        if (map.isEmpty()) return null;
+        String dir = path;
+        while (true) {
+            Module owner = map.get(dir);
+            if (owner != null) return owner.isDisposed() ? null : owner;
+            int slash = dir.lastIndexOf('/');
+            if (slash <= 0) return null;
+            dir = dir.substring(0, slash);
+        }
+    }
+
+    void invalidate() {
+        generation.incrementAndGet();
+        roots = null;
+    }
+
+    private Map<String, Module> roots() {
+        Map<String, Module> map = roots;
+        if (map != null) return map;
+        long gen = generation.get();
+        map = ApplicationManager.getApplication().runReadAction((Computable<Map<String, Module>>) this::build);
+        if (generation.get() == gen) roots = map;
+        return map;
+    }
+
+    private Map<String, Module> build() {
+        Map<String, Module> map = new HashMap<>();
+        for (Project project : ProjectManager.getInstance().getOpenProjects()) {
+            if (project.isDisposed()) continue;
+            for (Module module : ModuleManager.getInstance(project).getModules()) {
+                for (VirtualFile root : ModuleRootManager.getInstance(module).getContentRoots()) {
+                    map.put(root.getPath(), module);
+                }
+            }
+        }
+        return map.isEmpty() ? Collections.emptyMap() : map;
+    }
+
+    /** Drops the index, and the project's cached verdicts, when a project's module model changes. */
+    public static final class ModelListener implements ModuleRootListener, ModuleListener {
+        @Override
+        public void rootsChanged(@NotNull ModuleRootEvent event) {
+            modelChanged(event.getProject());
+        }
+
+        @Override
+        public void modulesAdded(@NotNull Project project, @NotNull List<? extends Module> modules) {
+            modelChanged(project);
+        }
+
+        @Override
+        public void moduleRemoved(@NotNull Project project, @NotNull Module module) {
+            modelChanged(project);
+        }
+
+        private static void modelChanged(Project project) {
+            getInstance().invalidate();
+            CompilationErrorService errors = project.getServiceIfCreated(CompilationErrorService.class);
+            if (errors != null) errors.recordProjectChange();
+        }
+    }
+
+    /** Drops the index when a project closes; opening one is handled by its warmup starter. */
+    public static final class CloseListener implements ProjectCloseListener {
+        @Override
+        public void projectClosed(@NotNull Project project) {
+            getInstance().invalidate();
+        }
+    }
+}
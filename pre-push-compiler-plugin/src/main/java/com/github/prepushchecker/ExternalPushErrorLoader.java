@@ -54,7 +54,7 @@ public final class ExternalPushErrorLoader implements StartupActivity {
     // Kotlin compile:       "e: file:///.../Path.kt:123:45 message"
     // Maven (surefire/failsafe skipped; javac via maven prints similar to javac).
     private static final Pattern JAVAC_PATTERN =
-        Pattern.compile("^(?<path>[^\\s:][^:]*\\.(?:java|kt|groovy|scala)):(?<line>\\d+)(?::(?<col>\\d+))?:\\s*(?:error|warning):?\\s*(?<msg>.+)$");
+        Pattern.compile("^(?<path>[^\\s:][^:]*\\.(?:java|kt|groovy|scala)):(?<line>\\d+)(?::(?<col>\\d+))?:\\s*(?<kind>error|warning):?\\s*(?<msg>.+)$");
     private static final Pattern KOTLIN_PATTERN =
         Pattern.compile("^e:\\s+(?:file://)?(?<path>[^:]+\\.(?:kt|kts)):(?<line>\\d+):(?<col>\\d+)\\s+(?<msg>.+)$");
 
@@ -94,11 +94,11 @@ public final class ExternalPushErrorLoader implements StartupActivity {
                 return;
             }
 
-            List<String> errors = parseErrors(project, lines);
+            List<CompilerDiagnostic> errors = parseErrors(project, lines);
             if (errors.isEmpty()) {
-                errors = Collections.singletonList(
+                errors = Collections.singletonList(CompilerDiagnostic.general(
                     "External pre-push check failed (exit " + exitCode + "). See "
-                        + GitHookInstaller.EXTERNAL_LOG_RELATIVE_PATH + " for full output.");
+                        + GitHookInstaller.EXTERNAL_LOG_RELATIVE_PATH + " for full output."));
             }
             CompilationErrorService.getInstance(project).setErrors(errors);
             notifyUser(project, errors.size());
@@ -122,35 +122,55 @@ public final class ExternalPushErrorLoader implements StartupActivity {
         return null;
     }
 
-    static List<String> parseErrors(@NotNull Project project, @NotNull List<String> lines) {
-        String basePath = project.getBasePath();
-        Set<String> seen = new LinkedHashSet<>();
-        List<String> formatted = new ArrayList<>();
+    static List<CompilerDiagnostic> parseErrors(@NotNull Project project, @NotNull List<String> lines) {
+        return parseErrors(project.getBasePath(), lines);
+    }
+
+    /** Paths under {@code basePath} come back project-relative; others are kept as logged. */
+    static List<CompilerDiagnostic> parseErrors(@Nullable String basePath, @NotNull List<String> lines) {
+        Set<CompilerDiagnostic> seen = new LinkedHashSet<>();
 
         for (String raw : lines) {
             String line = raw == null ? "" : raw.trim();
             if (line.isEmpty()) continue;
 
+            // Lines relayed verbatim from the IDE's local server are already structured.
+            if (line.startsWith("[")) {
+                CompilerDiagnostic relayed = CompilerDiagnostic.parse(line);
+                if (relayed != null && PushValidationPaths.isCompilableSource(relayed.getPath())) {
+                    seen.add(relayed);
+                    continue;
+                }
+            }
+
             Matcher m = KOTLIN_PATTERN.matcher(line);
-            if (!m.matches()) {
+            boolean kotlin = m.matches();
+            if (!kotlin) {
                 m = JAVAC_PATTERN.matcher(line);
                 if (!m.matches()) continue;
             }
 
             String path = m.group("path");
-            String lineNo = m.group("line");
-            String col = safeGroup(m, "col");
+            int lineNo = parseIntOrZero(m.group("line"));
+            int col = parseIntOrZero(safeGroup(m, "col"));
             String msg = m.group("msg").trim();
+            CompilerDiagnostic.Severity severity = !kotlin && "warning".equals(safeGroup(m, "kind"))
+                ? CompilerDiagnostic.Severity.WARNING
+                : CompilerDiagnostic.Severity.ERROR;
 
-            String relativePath = toProjectRelative(basePath, path);
-            String position = col != null && !col.isEmpty() ? lineNo + ":" + col : lineNo;
-            String entry = "[" + relativePath + " (" + position.replace(":", ", ") + ")] " + msg;
+            seen.add(new CompilerDiagnostic(
+                toProjectRelative(basePath, path), lineNo, col, severity, null, msg));
+        }
+        return new ArrayList<>(seen);
+    }
 
-            if (seen.add(entry)) {
-                formatted.add(entry);
-            }
+    private static int parseIntOrZero(@Nullable String s) {
+        if (s == null || s.isEmpty()) return 0;
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            return 0;
         }
-        return formatted;
     }
 
     @Nullable
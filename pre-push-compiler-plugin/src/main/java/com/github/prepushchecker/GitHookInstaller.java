@@ -315,12 +315,29 @@ public final class GitHookInstaller implements StartupActivity {
     }
 
     private static Path queryGit(String basePath, String... args) {
+        String output = runGit(basePath, args);
+        if (output == null || output.isEmpty()) {
+            return null;
+        }
+        Path candidate = Path.of(output);
+        if (!candidate.isAbsolute()) {
+            candidate = Path.of(basePath).resolve(output).normalize();
+        }
+        return candidate;
+    }
+
+    /**
+     * Runs {@code git args...} in {@code directory} and returns its trimmed stdout, or
+     * {@code null} if git is unavailable, exits non-zero, or takes longer than 5 seconds.
+     */
+    @org.jetbrains.annotations.Nullable
+    static String runGit(String directory, String... args) {
         String[] cmd = new String[args.length + 1];
         cmd[0] = "git";
         System.arraycopy(args, 0, cmd, 1, args.length);
         try {
             Process process = new ProcessBuilder(cmd)
-                .directory(new File(basePath))
+                .directory(new File(directory))
                 .redirectErrorStream(false)
                 .start();
             String output;
@@ -338,14 +355,7 @@ public final class GitHookInstaller implements StartupActivity {
                 process.destroyForcibly();
                 return null;
             }
-            if (process.exitValue() != 0 || output.isEmpty()) {
-                return null;
-            }
-            Path candidate = Path.of(output);
-            if (!candidate.isAbsolute()) {
-                candidate = Path.of(basePath).resolve(output).normalize();
-            }
-            return candidate;
+            return process.exitValue() == 0 ? output : null;
         } catch (IOException | InterruptedException ex) {
             if (ex instanceof InterruptedException) {
                 Thread.currentThread().interrupt();
@@ -468,6 +478,7 @@ public final class GitHookInstaller implements StartupActivity {
             "    rc=$?",
             "  else",
             "    log \"[pre-push] No supported build tool found. Skipping compilation check.\"",
+            "    NO_BUILD_TOOL=1",
             "    rm -f \"$TMP_OUT\" 2>/dev/null",
             "    return 0",
             "  fi",
@@ -485,6 +496,51 @@ public final class GitHookInstaller implements StartupActivity {
             "}",
             "",
             "HOOK_INPUT=\"$(cat || true)\"",
+            "",
+            "# Verdicts keyed by git tree object ID, shared with the IDE push handler. Pushing an",
+            "# identical tree again (network retry, second remote, reworded commit) is a lookup.",
+            "TREE_VERDICTS=\"$LOG_DIR/tree-verdicts\"",
+            "PUSHED_TREES=\"$(printf '%s\\n' \"$HOOK_INPUT\" | while IFS=' ' read -r local_ref local_sha remote_ref remote_sha; do",
+            "  [ -z \"${local_sha:-}\" ] && continue",
+            "  [ \"$local_sha\" = \"$NULL_SHA\" ] && continue",
+            "  git rev-parse --verify --quiet \"$local_sha^{tree}\" 2>/dev/null",
+            "done | sort -u)\"",
+            "",
+            "# Prints 'pass' when the last record of every pushed tree is a pass. A recorded failure",
+            "# (from the IDE's compiler) only stops an earlier pass from being reused; it is checked again.",
+            "lookup_tree_verdict() {",
+            "  [ -n \"$PUSHED_TREES\" ] && [ -r \"$TREE_VERDICTS\" ] || return 0",
+            "  for t in $PUSHED_TREES; do",
+            "    v=\"$(grep \"^$t \" \"$TREE_VERDICTS\" 2>/dev/null | tail -n1 | cut -d' ' -f2)\"",
+            "    [ \"$v\" = \"pass\" ] || return 0",
+            "  done",
+            "  printf 'pass\\n'",
+            "  return 0",
+            "}",
+            "",
+            "# Records a pass; only trustworthy when the compile saw exactly the pushed tree: a clean",
+            "# worktree at HEAD. Failures are not recorded: a build tool also fails on network, daemon",
+            "# or memory trouble, and a push that failed is checked again anyway.",
+            "record_tree_verdict() {",
+            "  [ -n \"$PUSHED_TREES\" ] || return 0",
+            "  [ -z \"$(git status --porcelain 2>/dev/null)\" ] || return 0",
+            "  head_tree=\"$(git rev-parse --verify --quiet 'HEAD^{tree}' 2>/dev/null)\" || return 0",
+            "  now=\"$(date +%s)\"",
+            "  for t in $PUSHED_TREES; do",
+            "    [ \"$t\" = \"$head_tree\" ] && printf '%s pass %s\\n' \"$t\" \"$now\" >> \"$TREE_VERDICTS\" 2>/dev/null",
+            "  done",
+            "  if [ \"$(wc -l < \"$TREE_VERDICTS\" 2>/dev/null || echo 0)\" -gt " + TreeVerdictStore.MAX_LINES + " ]; then",
+            "    tail -n " + TreeVerdictStore.MAX_LINES / 2 + " \"$TREE_VERDICTS\" > \"$TREE_VERDICTS.tmp\" 2>/dev/null && mv \"$TREE_VERDICTS.tmp\" \"$TREE_VERDICTS\"",
+            "  fi",
+            "  return 0",
+            "}",
+            "",
+            "if [ -z \"${PRE_PUSH_CHECKER_RECHECK:-}\" ] && [ \"$(lookup_tree_verdict)\" = \"pass\" ]; then",
+            "  printf '[pre-push-checker] exit=0\\n' >> \"$LOG_FILE\" 2>/dev/null || true",
+            "  log \"[pre-push] Identical tree already passed the compilation check. Proceeding with push.\"",
+            "  exit 0",
+            "fi",
+            "",
             "CHANGED_FILES=\"$(printf '%s\\n' \"$HOOK_INPUT\" | collect_changed_files | sed '/^$/d' | sort -u)\"",
             "",
             "if [ -z \"$CHANGED_FILES\" ]; then",
@@ -532,34 +588,164 @@ public final class GitHookInstaller implements StartupActivity {
             "",
             "# Fast path: ask the running IntelliJ to reuse its incremental JPS compiler.",
             "# Falls through to the build tool if IntelliJ is not running or the request fails.",
-            "PORT_FILE=\"$REPO_ROOT/.idea/pre-push-checker/server.port\"",
+            "# One IntelliJ gateway serves every open project. Its user-private registry holds the port,",
+            "# socket and session token; an open project points at it, any other repository (a worktree,",
+            "# say) looks in the standard places.",
+            "find_gateway() {",
+            "  pointer=\"$REPO_ROOT/.idea/pre-push-checker/gateway\"",
+            "  if [ -r \"$pointer\" ]; then",
+            "    f=\"$(head -n1 \"$pointer\" 2>/dev/null)\"",
+            "    [ -n \"$f\" ] && [ -r \"$f\" ] && { printf '%s\\n' \"$f\"; return 0; }",
+            "  fi",
+            "  user=\"$(id -un 2>/dev/null || printf '%s' \"${USER:-}\")\"",
+            "  for d in \"${XDG_RUNTIME_DIR:-}\" \"${TMPDIR:-}\" /tmp; do",
+            "    [ -n \"$d\" ] || continue",
+            "    f=\"${d%/}/prepushchecker-$user/gateway\"",
+            "    [ -r \"$f\" ] && { printf '%s\\n' \"$f\"; return 0; }",
+            "  done",
+            "  return 1",
+            "}",
+            "gateway_field() {",
+            "  sed -n \"s/^$1 //p\" \"$GATEWAY\" 2>/dev/null | head -n1",
+            "}",
+            "# Reads the IDE's reply frames as they arrive: errors are shown at once, progress on a",
+            "# terminal. Prints the verdict: ok, errors, unreachable (no reply at all) or nothing if the",
+            "# IDE could not decide. Also understands the single-block reply of protocol version 1.",
+            "clear_ide_progress() {",
+            "  if [ \"$IDE_PROGRESS_SHOWN\" -eq 1 ]; then printf '\\r%70s\\r' '' >&2; IDE_PROGRESS_SHOWN=0; fi",
+            "}",
+            "show_ide_frames() {",
+            "  verdict=\"unreachable\"",
+            "  legacy_errors=0",
+            "  errors_shown=0",
+            "  pct=\"\"",
+            "  secs=0",
+            "  IDE_PROGRESS_SHOWN=0",
+            "  while IFS= read -r frame; do",
+            "    [ \"$verdict\" = \"unreachable\" ] && verdict=\"\"",
+            "    printf '%s\\n' \"$frame\" >> \"$LOG_FILE\" 2>/dev/null || true",
+            "    if [ \"$legacy_errors\" -eq 1 ]; then",
+            "      [ \"$frame\" = \"END\" ] && { legacy_errors=0; continue; }",
+            "      printf '%s\\n' \"$frame\" >&2",
+            "      continue",
+            "    fi",
+            "    case \"$frame\" in",
+            "      \"CACHE hit \"*)",
+            "        log \"[pre-push] IntelliJ: reusing a compile verdict that is still valid (${frame#CACHE hit }).\" ;;",
+            "      \"CACHE partial \"*)",
+            "        log \"[pre-push] IntelliJ: ${frame#CACHE partial } file(s) answered from cache, compiling the rest.\" ;;",
+            "      \"CACHE coalesced\")",
+            "        log \"[pre-push] IntelliJ: joining a running check of the same files.\" ;;",
+            "      \"PROGRESS \"*|\"HEARTBEAT \"*)",
+            "        case \"$frame\" in",
+            "          PROGRESS*) pct=\" ${frame#PROGRESS }%\" ;;",
+            "          *) secs=$(( ${frame#HEARTBEAT } / 1000 )) ;;",
+            "        esac",
+            "        if [ -t 2 ]; then",
+            "          printf '\\r[pre-push] IntelliJ compiling...%s (%ss)' \"$pct\" \"$secs\" >&2",
+            "          IDE_PROGRESS_SHOWN=1",
+            "        fi ;;",
+            "      \"DIAG \"*)",
+            "        clear_ide_progress",
+            "        if [ \"$errors_shown\" -eq 0 ]; then",
+            "          log \"[pre-push] IntelliJ incremental compile reported errors:\"",
+            "          errors_shown=1",
+            "        fi",
+            "        printf '%s\\n' \"${frame#DIAG }\" >&2 ;;",
+            "      \"DONE OK\"|OK)",
+            "        verdict=ok ;;",
+            "      \"DONE ERRORS \"*)",
+            "        verdict=errors ;;",
+            "      \"ERRORS \"*)",
+            "        log \"[pre-push] IntelliJ incremental compile reported errors:\"",
+            "        verdict=errors",
+            "        legacy_errors=1 ;;",
+            "      \"DONE ERR \"*|\"ERR \"*)",
+            "        clear_ide_progress",
+            "        log \"[pre-push] IntelliJ could not run the check (${frame#*ERR }); falling back to the build tool.\" ;;",
+            "    esac",
+            "  done",
+            "  clear_ide_progress",
+            "  printf '%s\\n' \"$verdict\"",
+            "}",
+            "# Passes frames through; once the server has confirmed version 2, which sends a heartbeat",
+            "# every few seconds, 30 s of silence means it hangs. The producer is then killed: the",
+            "# command substitution around the pipeline waits for every stage, not just this one.",
+            "watch_ide_frames() {",
+            "  if command -v bash >/dev/null 2>&1; then",
+            "    bash -c '",
+            "      wait_opt=\"\"",
+            "      while :; do",
+            "        IFS= read -r $wait_opt line",
+            "        rc=$?",
+            "        if [ \"$rc\" -gt 128 ]; then",
+            "          printf \"[pre-push] IntelliJ stopped responding.\\n\" >&2",
+            "          pid=\"$(cat \"$0\" 2>/dev/null)\"",
+            "          [ -n \"$pid\" ] && kill \"$pid\" 2>/dev/null",
+            "          break",
+            "        fi",
+            "        [ \"$rc\" -eq 0 ] || break",
+            "        printf \"%s\\n\" \"$line\"",
+            "        case \"$line\" in \"V \"*) wait_opt=\"-t 30\" ;; esac",
+            "      done",
+            "    ' \"$IDE_PID_FILE\"",
+            "  else",
+            "    cat",
+            "  fi",
+            "}",
+            "# Runs the command that reads the IDE's reply, recording its PID for watch_ide_frames.",
+            "ide_producer() {",
+            "  sh -c 'printf \"%s\\n\" \"$$\" > \"$0\"; exec \"$@\"' \"$IDE_PID_FILE\" \"$@\"",
+            "}",
+            "ide_request() {",
+            "  printf 'CHECK 2 %s %s\\n%s\\n\\n' \"$IDE_TOKEN\" \"$REPO_ROOT\" \"$ABS_FILES\"",
+            "}",
+            "# The user-private Unix-domain socket, through socat or an nc that supports -U.",
+            "ide_exchange_unix() {",
+            "  IDE_SOCKET=\"$(gateway_field socket)\"",
+            "  [ -n \"$IDE_SOCKET\" ] && [ -S \"$IDE_SOCKET\" ] || return 0",
+            "  if command -v socat >/dev/null 2>&1; then",
+            "    ide_request | ide_producer socat -t 900 - UNIX-CONNECT:\"$IDE_SOCKET\" 2>/dev/null",
+            "  elif command -v nc >/dev/null 2>&1 && nc -h 2>&1 | grep -q -- '-U'; then",
+            "    ide_request | ide_producer nc -U \"$IDE_SOCKET\" 2>/dev/null",
+            "  fi",
+            "  return 0",
+            "}",
+            "# Loopback TCP through bash's /dev/tcp.",
+            "ide_exchange_tcp() {",
+            "  IDE_PORT=\"$(gateway_field port | tr -d '[:space:]')\"",
+            "  [ -n \"$IDE_PORT\" ] || return 0",
+            "  command -v bash >/dev/null 2>&1 || return 0",
+            "  IDE_REQUEST=\"$(ide_request)\"",
+            "  export IDE_REQUEST IDE_PORT",
+            "  ide_producer bash -c '",
+            "    exec 3<>/dev/tcp/127.0.0.1/\"$IDE_PORT\" || exit 2",
+            "    printf \"%s\\n\\n\" \"$IDE_REQUEST\" >&3",
+            "    exec cat <&3",
+            "  ' 2>/dev/null",
+            "  return 0",
+            "}",
             "try_ide_compile() {",
-            "  [ -r \"$PORT_FILE\" ] || return 2",
-            "  IDE_PORT=\"$(head -n1 \"$PORT_FILE\" 2>/dev/null | tr -d '[:space:]')\"",
-            "  [ -n \"$IDE_PORT\" ] || return 2",
-            "  # /dev/tcp is a bash feature; fall back cleanly if unavailable.",
-            "  command -v bash >/dev/null 2>&1 || return 2",
+            "  GATEWAY=\"$(find_gateway)\" || return 2",
+            "  # The session token proves this is the installed hook; only this user can read it.",
+            "  IDE_TOKEN=\"$(gateway_field token | tr -d '[:space:]')\"",
+            "  [ -n \"$IDE_TOKEN\" ] || return 2",
             "  # Translate the change list (repo-relative) to absolute paths so the IDE can resolve them.",
             "  ABS_FILES=\"$(printf '%s\\n' \"$CHANGED_FILES\" | awk -v root=\"$REPO_ROOT\" 'NF{print root\"/\"$0}')\"",
-            "  IDE_RESP=\"$(REQ_FILES=\"$ABS_FILES\" IDE_PORT=\"$IDE_PORT\" bash -c '",
-            "    exec 3<>/dev/tcp/127.0.0.1/\"$IDE_PORT\" || exit 2",
-            "    printf \"CHECK\\n%s\\n\\n\" \"$REQ_FILES\" >&3",
-            "    cat <&3",
-            "  ' 2>/dev/null)\" || return 2",
-            "  [ -n \"$IDE_RESP\" ] || return 2",
-            "  IDE_FIRST=\"$(printf '%s' \"$IDE_RESP\" | head -n1)\"",
-            "  case \"$IDE_FIRST\" in",
-            "    OK)",
+            "  IDE_PID_FILE=\"$LOG_DIR/ide-exchange.$$.pid\"",
+            "  IDE_VERDICT=\"$(ide_exchange_unix | watch_ide_frames | show_ide_frames)\"",
+            "  if [ \"$IDE_VERDICT\" = \"unreachable\" ]; then",
+            "    IDE_VERDICT=\"$(ide_exchange_tcp | watch_ide_frames | show_ide_frames)\"",
+            "  fi",
+            "  rm -f \"$IDE_PID_FILE\" 2>/dev/null",
+            "  case \"$IDE_VERDICT\" in",
+            "    ok)",
             "      log \"[pre-push] IntelliJ incremental compile: OK\"",
-            "      printf '%s\\n' \"$IDE_RESP\" >> \"$LOG_FILE\" 2>/dev/null || true",
             "      return 0 ;;",
-            "    ERRORS*)",
-            "      log \"[pre-push] IntelliJ incremental compile reported errors:\"",
-            "      printf '%s\\n' \"$IDE_RESP\" >> \"$LOG_FILE\" 2>/dev/null || true",
-            "      printf '%s\\n' \"$IDE_RESP\" | sed -n '2,$p' | grep -v '^END$' >&2",
+            "    errors)",
             "      return 1 ;;",
-            "    ERR*|*)",
-            "      # IDE could not run the check (disposed, busy, etc.) - fall back.",
+            "    *)",
+            "      # IDE could not run the check (unreachable, disposed, timed out, hung, etc.) - fall back.",
             "      return 2 ;;",
             "  esac",
             "}",
@@ -567,6 +753,7 @@ public final class GitHookInstaller implements StartupActivity {
             "try_ide_compile",
             "IDE_RC=$?",
             "if [ \"$IDE_RC\" -eq 0 ]; then",
+            "  record_tree_verdict",
             "  printf '[pre-push-checker] exit=0\\n' >> \"$LOG_FILE\" 2>/dev/null || true",
             "  log \"[pre-push] Compilation passed (via IntelliJ incremental). Proceeding with push.\"",
             "  exit 0",
@@ -578,8 +765,12 @@ public final class GitHookInstaller implements StartupActivity {
             "fi",
             "",
             "# Fallback: run the project build tool.",
+            "NO_BUILD_TOOL=0",
             "run_compilation",
             "EXIT_CODE=$?",
+            "if [ \"$NO_BUILD_TOOL\" -eq 0 ] && [ \"$EXIT_CODE\" -eq 0 ]; then",
+            "  record_tree_verdict",
+            "fi",
             "",
             "# Trailer line the IntelliJ side looks for to detect the final status.",
             "printf '[pre-push-checker] exit=%s\\n' \"$EXIT_CODE\" >> \"$LOG_FILE\" 2>/dev/null || true",
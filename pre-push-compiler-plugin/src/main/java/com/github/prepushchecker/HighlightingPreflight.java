@@ -0,0 +1,179 @@
+package com.github.prepushchecker;
+
+import com.intellij.compiler.CompilerConfiguration;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.util.text.LineColumn;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.JavaRecursiveElementWalkingVisitor;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiErrorElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiImportStatement;
+import com.intellij.psi.PsiJavaCodeReferenceElement;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiTypeElement;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.concurrency.CancellablePromise;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Sub-second check of pushed files the editor never highlighted, run before a make is
+ * scheduled. {@code WolfTheProblemSolver} only knows about files the daemon has analysed, so
+ * without this a syntax error in a file that was never opened always costs a JPS round trip.
+ *
+ * <p>Every pushed file that is neither flagged nor open in an editor is analysed in its own
+ * non-blocking read action, in parallel on a bounded pool:
+ * <ul>
+ *   <li>{@link PsiErrorElement}s — syntax errors, in any language with a parser;</li>
+ *   <li>in Java files, imports and type references that resolve to nothing. Skipped for
+ *       modules with annotation processing, whose generated classes may not exist yet.</li>
+ * </ul>
+ * Whatever has not finished within {@code prepushchecker.preflight.budgetMs} is canceled and
+ * left to the compiler, as is everything in dumb mode. Call it off the EDT, outside a read
+ * action.
+ */
+final class HighlightingPreflight {
+
+    private static final Logger LOG = Logger.getInstance(HighlightingPreflight.class);
+    private static final int MAX_PER_FILE = 10;
+    private static final ExecutorService EXECUTOR = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+        "PrePushChecker-Preflight", Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+
+    private HighlightingPreflight() {
+    }
+
+    /** Obvious errors in the files of {@code files} the daemon has not analysed; empty if none were found in time. */
+    static @NotNull List<CompilerDiagnostic> check(@NotNull Project project, @NotNull Collection<VirtualFile> files) {
+        if (files.isEmpty() || !Registry.is("prepushchecker.preflight", true)) return Collections.emptyList();
+        long budgetMillis = Registry.intValue("prepushchecker.preflight.budgetMs", 800);
+        if (budgetMillis <= 0 || project.isDisposed() || DumbService.isDumb(project)) return Collections.emptyList();
+
+        long startNanos = System.nanoTime();
+        long deadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        FileEditorManager editors = FileEditorManager.getInstance(project);
+        List<CancellablePromise<List<CompilerDiagnostic>>> tasks = new ArrayList<>();
+        for (VirtualFile file : files) {
+            // Open files are highlighted by the daemon, and Wolf already answered for them.
+            if (!file.isValid() || editors.isFileOpen(file)) continue;
+            tasks.add(ReadAction.nonBlocking(() -> analyze(project, file))
+                .expireWith(project)
+                .submit(EXECUTOR));
+        }
+        if (tasks.isEmpty()) return Collections.emptyList();
+
+        List<CompilerDiagnostic> found = new ArrayList<>();
+        int analyzed = 0;
+        try {
+            for (CancellablePromise<List<CompilerDiagnostic>> task : tasks) {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+                if (remainingMillis <= 0) break;
+                try {
+                    found.addAll(task.get(remainingMillis, TimeUnit.MILLISECONDS));
+                    analyzed++;
+                } catch (TimeoutException e) {
+                    break;
+                } catch (ExecutionException | CancellationException e) {
+                    LOG.debug("Preflight analysis failed", e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (CancellablePromise<List<CompilerDiagnostic>> task : tasks) {
+                if (!task.isDone()) task.cancel();
+            }
+        }
+        LOG.info("Pre-push preflight: " + found.size() + " problem(s) in " + analyzed + "/" + tasks.size()
+            + " unanalysed file(s) in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) + " ms.");
+        return found;
+    }
+
+    private static List<CompilerDiagnostic> analyze(Project project, VirtualFile vf) {
+        if (!vf.isValid()) return Collections.emptyList();
+        PsiFile file = PsiManager.getInstance(project).findFile(vf);
+        if (file == null) return Collections.emptyList();
+        Module module = ProjectFileIndex.getInstance(project).getModuleForFile(vf, false);
+        Reporter reporter = new Reporter(project, file, module);
+
+        for (PsiErrorElement error : PsiTreeUtil.collectElementsOfType(file, PsiErrorElement.class)) {
+            if (!reporter.add(error, error.getErrorDescription())) return reporter.diagnostics;
+        }
+        if (file instanceof PsiJavaFile && !usesAnnotationProcessing(project, module)) {
+            file.accept(new JavaRecursiveElementWalkingVisitor() {
+                @Override
+                public void visitImportStatement(@NotNull PsiImportStatement statement) {
+                    PsiJavaCodeReferenceElement reference = statement.getImportReference();
+                    if (reference != null && reference.resolve() == null) {
+                        report(reference);
+                    }
+                }
+
+                @Override
+                public void visitTypeElement(@NotNull PsiTypeElement type) {
+                    PsiJavaCodeReferenceElement reference = type.getInnermostComponentReferenceElement();
+                    if (reference != null && reference.multiResolve(false).length == 0) {
+                        report(reference);
+                    }
+                    super.visitTypeElement(type);
+                }
+
+                private void report(PsiJavaCodeReferenceElement reference) {
+                    if (!reporter.add(reference, "Cannot resolve symbol '" + reference.getReferenceName() + "'")) {
+                        stopWalking();
+                    }
+                }
+            });
+        }
+        return reporter.diagnostics;
+    }
+
+    private static boolean usesAnnotationProcessing(Project project, Module module) {
+        // Files outside any module have no classpath to resolve against either.
+        return module == null
+            || CompilerConfiguration.getInstance(project).getAnnotationProcessingConfiguration(module).isEnabled();
+    }
+
+    /** Positions and collects one file's findings, at most {@link #MAX_PER_FILE}. */
+    private static final class Reporter {
+        final List<CompilerDiagnostic> diagnostics = new ArrayList<>();
+        private final PsiFile file;
+        private final String path;
+        private final String module;
+
+        Reporter(Project project, PsiFile file, Module module) {
+            this.file = file;
+            this.path = PrePushCompilationHandler.toDisplayPath(project, file.getVirtualFile());
+            this.module = module != null ? module.getName() : null;
+        }
+
+        /** Returns {@code false} once the file has reported enough. */
+        boolean add(PsiElement element, String message) {
+            LineColumn position = StringUtil.offsetToLineColumn(
+                file.getViewProvider().getContents(), element.getTextRange().getStartOffset());
+            int line = position != null ? position.line + 1 : 0;
+            int column = position != null ? position.column + 1 : 0;
+            diagnostics.add(new CompilerDiagnostic(path, line, column, CompilerDiagnostic.Severity.ERROR, module, message));
+            return diagnostics.size() < MAX_PER_FILE;
+        }
+    }
+}
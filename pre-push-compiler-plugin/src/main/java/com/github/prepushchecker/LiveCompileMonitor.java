@@ -0,0 +1,260 @@
+package com.github.prepushchecker;
+
+import com.intellij.build.BuildViewManager;
+import com.intellij.build.FilePosition;
+import com.intellij.build.events.BuildEvent;
+import com.intellij.build.events.FileMessageEvent;
+import com.intellij.build.events.MessageEvent;
+import com.intellij.build.events.StartBuildEvent;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.compiler.CompileContext;
+import com.intellij.openapi.compiler.CompileScope;
+import com.intellij.openapi.compiler.CompileTask;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams compiler errors out of a make that is still running.
+ *
+ * <p>{@code CompilerManager.make} only hands its {@link CompileContext} to the completion
+ * callback. This "before" compile task picks the context up as soon as the build starts,
+ * for scopes tagged through {@link #attach}, so the caller's wait loop can follow its
+ * progress with {@link Session#pump()}. The context's message list belongs to the JPS
+ * thread and is never read before the build ends; errors arrive instead as the build view's
+ * {@link MessageEvent}s for this make's build id, queued by its listener and drained by the
+ * pumping thread, so the first errors surface while JPS is still working through the rest
+ * of the scope.
+ *
+ * <p>The same polling drives fail-fast mode ({@code prepushchecker.failFast.errors}): once
+ * that many errors are known, {@link Session#stopEarly()} cancels the make and returns them
+ * with a file-less {@link #partialMarker} entry, which keeps the verdict out of every cache
+ * that only stores conclusive results.
+ *
+ * <p>Pumping also tracks when the build last showed any sign of life (progress, status text
+ * or a new error), which lets wait loops tell a slow build from a hung one.
+ */
+public final class LiveCompileMonitor implements CompileTask {
+
+    private static final Key<Session> SESSION_KEY = Key.create("prepushchecker.liveCompileSession");
+    private static final double MIN_FRACTION_STEP = 0.01;
+    /** A make past its deadline that shows no activity for this long is considered hung. */
+    static final long STALL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    /** Receives the errors seen so far; called on the thread that pumps the session. */
+    interface Listener {
+        Listener NONE = (soFar, fraction) -> { };
+
+        void onProgress(@NotNull List<CompilerDiagnostic> soFar, double fraction);
+
+        /** {@code true} once nobody waits for the result any more; the make is then canceled. */
+        default boolean isAbandoned() {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean execute(@NotNull CompileContext context) {
+        Session session = context.getCompileScope().getUserData(SESSION_KEY);
+        if (session != null) {
+            session.started(context);
+        }
+        return true;
+    }
+
+    /** Error count after which a make is canceled, or {@code 0} to always compile the whole scope. */
+    static int failFastThreshold() {
+        return Math.max(0, Registry.intValue("prepushchecker.failFast.errors", 0));
+    }
+
+    /** Trailing entry of a fail-fast result; file-less, so the result is never conclusive. */
+    static @NotNull CompilerDiagnostic partialMarker(int errorCount) {
+        return new CompilerDiagnostic(null, 0, 0, CompilerDiagnostic.Severity.INFO, null,
+            "Stopped after " + errorCount + " error(s) (fail-fast); the rest of the scope was not compiled.");
+    }
+
+    /**
+     * Tags {@code scope} so the next make over it can be observed. Call before starting it,
+     * and {@link Session#close()} the session once the make is over or no longer awaited.
+     */
+    static @NotNull Session attach(@NotNull Project project, @NotNull CompileScope scope, @NotNull Listener listener) {
+        Session session = new Session(project, listener);
+        Disposer.register(project, session.subscription);
+        project.getService(BuildViewManager.class).addListener(session::onEvent, session.subscription);
+        scope.putUserData(SESSION_KEY, session);
+        return session;
+    }
+
+    static final class Session {
+        private final Project project;
+        private final Listener listener;
+        private volatile CompileContext context;
+        private final Disposable subscription = Disposer.newDisposable("prepushchecker.liveCompileSession");
+        // Filled by the build view's listener, drained by the pumping thread.
+        private final Queue<MessageEvent> reported = new ConcurrentLinkedQueue<>();
+        // Build view id of the last build started before this make ran, and of this make.
+        private volatile Object lastStartedId;
+        private volatile Object buildId;
+
+        // Owned by the pumping thread.
+        private final List<CompilerDiagnostic> streamed = new ArrayList<>();
+        private double lastFraction = -1;
+        private double lastActivityFraction = -1;
+        private String lastText;
+        private long lastActivityNanos = System.nanoTime();
+
+        private Session(Project project, Listener listener) {
+            this.project = project;
+            this.listener = listener;
+        }
+
+        /**
+         * Pulls errors reported since the previous call and notifies the listener if the error
+         * count or the build progress moved. Returns {@code false} (after canceling the make)
+         * if the listener has abandoned the compile.
+         */
+        boolean pump() {
+            CompileContext ctx = context;
+            if (listener.isAbandoned()) {
+                if (ctx != null) ctx.getProgressIndicator().cancel();
+                return false;
+            }
+            if (ctx == null) return true;
+
+            List<MessageEvent> fresh = new ArrayList<>();
+            for (MessageEvent event; (event = reported.poll()) != null; ) {
+                fresh.add(event);
+            }
+            boolean grown = !fresh.isEmpty();
+            if (grown) {
+                streamed.addAll(toDiagnostics(fresh));
+            }
+            double fraction = fractionOf(ctx.getProgressIndicator());
+            String text = ctx.getProgressIndicator() != null ? ctx.getProgressIndicator().getText() : null;
+            if (grown || fraction != lastActivityFraction || !java.util.Objects.equals(text, lastText)) {
+                lastActivityFraction = fraction;
+                lastText = text;
+                lastActivityNanos = System.nanoTime();
+            }
+            if (grown || Math.abs(fraction - lastFraction) >= MIN_FRACTION_STEP) {
+                lastFraction = fraction;
+                listener.onProgress(List.copyOf(streamed), fraction);
+            }
+            return true;
+        }
+
+        /**
+         * {@code true} if the build reported progress, status text or an error within the last
+         * {@code millis}, as of the last {@link #pump()}. A make that has not started counts
+         * as active from the moment the session was attached.
+         */
+        boolean isActiveWithin(long millis) {
+            return System.nanoTime() - lastActivityNanos < TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+
+        /** Errors seen by the last {@link #pump()}. */
+        int errorCount() {
+            return streamed.size();
+        }
+
+        /** Cancels the make and returns the errors seen so far plus a {@link #partialMarker}. */
+        @NotNull List<CompilerDiagnostic> stopEarly() {
+            CompileContext ctx = context;
+            if (ctx != null) ctx.getProgressIndicator().cancel();
+            List<CompilerDiagnostic> result = new ArrayList<>(streamed.size() + 1);
+            result.addAll(streamed);
+            result.add(partialMarker(streamed.size()));
+            return result;
+        }
+
+        /** Stops listening to the build view; the session reports no further errors. */
+        void close() {
+            Disposer.dispose(subscription);
+        }
+
+        /**
+         * Called by the "before" task. The build view announces a make right before its before
+         * tasks run, so the build started last is this one; if none was announced yet, the
+         * next one to start is.
+         */
+        private synchronized void started(CompileContext ctx) {
+            buildId = lastStartedId;
+            context = ctx;
+        }
+
+        /**
+         * Queues the errors of this session's build. Other builds the view shows (Gradle,
+         * run configurations, earlier makes) are ignored.
+         */
+        private synchronized void onEvent(@NotNull Object id, @NotNull BuildEvent event) {
+            if (event instanceof StartBuildEvent) {
+                if (context == null) {
+                    lastStartedId = id;
+                } else if (buildId == null) {
+                    buildId = id;
+                }
+                return;
+            }
+            if (context == null || buildId == null || !buildId.equals(id) || !(event instanceof MessageEvent)) return;
+            MessageEvent message = (MessageEvent) event;
+            if (message.getKind() == MessageEvent.Kind.ERROR) {
+                reported.add(message);
+            }
+        }
+
+        /** Same form as {@link PrePushCompilationHandler#toDiagnostics}, from build view events. */
+        private List<CompilerDiagnostic> toDiagnostics(List<MessageEvent> events) {
+            return ApplicationManager.getApplication().runReadAction(
+                (Computable<List<CompilerDiagnostic>>) () -> {
+                    if (project.isDisposed()) return new ArrayList<>();
+                    ProjectFileIndex idx = ProjectFileIndex.getInstance(project);
+                    String basePath = project.getBasePath();
+                    List<CompilerDiagnostic> out = new ArrayList<>(events.size());
+                    for (MessageEvent event : events) {
+                        String text = event.getDescription() != null && !event.getDescription().isBlank()
+                            ? event.getDescription().trim()
+                            : event.getMessage();
+                        FilePosition position = event instanceof FileMessageEvent
+                            ? ((FileMessageEvent) event).getFilePosition()
+                            : null;
+                        if (position == null || position.getFile() == null) {
+                            out.add(new CompilerDiagnostic(null, 0, 0, CompilerDiagnostic.Severity.ERROR, null, text));
+                            continue;
+                        }
+                        String path = FileUtil.toSystemIndependentName(position.getFile().getPath());
+                        VirtualFile file = LocalFileSystem.getInstance().findFileByPath(path);
+                        Module module = file != null ? idx.getModuleForFile(file, false) : null;
+                        String relative = basePath != null ? FileUtil.getRelativePath(basePath, path, '/') : null;
+                        int line = position.getStartLine() >= 0 ? position.getStartLine() + 1 : 0;
+                        int column = line > 0 ? Math.max(0, position.getStartColumn()) + 1 : 0;
+                        out.add(new CompilerDiagnostic(relative != null ? relative : path, line, column,
+                            CompilerDiagnostic.Severity.ERROR, module != null ? module.getName() : null, text));
+                    }
+                    return out;
+                }
+            );
+        }
+
+        private static double fractionOf(@Nullable ProgressIndicator indicator) {
+            if (indicator == null || indicator.isIndeterminate()) return -1;
+            return Math.max(0, Math.min(1, indicator.getFraction()));
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.github.prepushchecker;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.project.ModuleListener;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleOrderEntry;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.roots.OrderEntry;
+import com.intellij.openapi.util.Computable;
+import com.intellij.util.messages.MessageBusConnection;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reverse module-dependency graph for scope planning, built once and reused by every push
+ * and every external check until the module model changes.
+ *
+ * <p>Modules are numbered and, for each module, the set of modules whose compile classpath
+ * sees it is kept as a {@link BitSet}: its direct dependents plus everyone reaching it
+ * through a chain of exported dependencies (the transitive closure that
+ * {@link ModuleManager#getModuleDependentModules} does not follow). Collecting the
+ * dependents of a push is then one OR per pushed module.
+ *
+ * <p>Dropped on every roots change and module add/remove; rebuilt lazily on the next query.
+ */
+@Service(Service.Level.PROJECT)
+public final class ModuleDependencyIndex implements Disposable {
+
+    private static final Logger LOG = Logger.getInstance(ModuleDependencyIndex.class);
+
+    private final Project project;
+    // Bumped on every invalidation, so a build racing a model change is not published.
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Graph graph;
+
+    public ModuleDependencyIndex(@NotNull Project project) {
+        this.project = project;
+        MessageBusConnection connection = project.getMessageBus().connect(this);
+        connection.subscribe(ModuleRootListener.TOPIC, new ModuleRootListener() {
+            @Override
+            public void rootsChanged(@NotNull ModuleRootEvent event) {
+                invalidate();
+            }
+        });
+        connection.subscribe(ModuleListener.TOPIC, new ModuleListener() {
+            @Override
+            public void modulesAdded(@NotNull Project p, @NotNull List<? extends Module> modules) {
+                invalidate();
+            }
+
+            @Override
+            public void moduleRemoved(@NotNull Project p, @NotNull Module module) {
+                invalidate();
+            }
+        });
+    }
+
+    public static ModuleDependencyIndex getInstance(@NotNull Project project) {
+        return project.getService(ModuleDependencyIndex.class);
+    }
+
+    /** Modules whose classpath sees any of {@code modules}, excluding {@code modules} itself. */
+    @NotNull Set<Module> dependentsOf(@NotNull Collection<Module> modules) {
+        Graph g = graph();
+        BitSet union = new BitSet(g.modules.length);
+        BitSet self = new BitSet(g.modules.length);
+        for (Module m : modules) {
+            Integer i = g.indexOf.get(m);
+            if (i == null) continue;
+            union.or(g.dependents[i]);
+            self.set(i);
+        }
+        union.andNot(self);
+        Set<Module> result = new LinkedHashSet<>(union.cardinality() * 2);
+        for (int i = union.nextSetBit(0); i >= 0; i = union.nextSetBit(i + 1)) {
+            result.add(g.modules[i]);
+        }
+        return result;
+    }
+
+    private void invalidate() {
+        generation.incrementAndGet();
+        graph = null;
+    }
+
+    private Graph graph() {
+        Graph cached = graph;
+        if (cached != null) return cached;
+        long gen = generation.get();
+        Graph built = ApplicationManager.getApplication().runReadAction((Computable<Graph>) this::build);
+        if (generation.get() == gen) {
+            graph = built;
+        }
+        return built;
+    }
+
+    private Graph build() {
+        long startNanos = System.nanoTime();
+        Module[] modules = ModuleManager.getInstance(project).getModules();
+        int n = modules.length;
+        Map<Module, Integer> indexOf = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            indexOf.put(modules[i], i);
+        }
+
+        // Direct and exported module dependencies, by index.
+        BitSet[] direct = new BitSet[n];
+        BitSet[] exported = new BitSet[n];
+        for (int i = 0; i < n; i++) {
+            direct[i] = new BitSet(n);
+            exported[i] = new BitSet(n);
+            for (OrderEntry entry : ModuleRootManager.getInstance(modules[i]).getOrderEntries()) {
+                if (!(entry instanceof ModuleOrderEntry)) continue;
+                ModuleOrderEntry moduleEntry = (ModuleOrderEntry) entry;
+                Integer dep = moduleEntry.getModule() != null ? indexOf.get(moduleEntry.getModule()) : null;
+                if (dep == null || dep == i) continue;
+                direct[i].set(dep);
+                if (moduleEntry.isExported()) exported[i].set(dep);
+            }
+        }
+
+        // Close the exported edges transitively: a module re-exports what its exports export.
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < n; i++) {
+                int before = exported[i].cardinality();
+                for (int e = exported[i].nextSetBit(0); e >= 0; e = exported[i].nextSetBit(e + 1)) {
+                    if (e != i) exported[i].or(exported[e]);
+                }
+                if (exported[i].cardinality() != before) changed = true;
+            }
+        }
+
+        // A module sees its direct dependencies and everything they export; invert that.
+        BitSet[] dependents = new BitSet[n];
+        for (int i = 0; i < n; i++) {
+            dependents[i] = new BitSet(n);
+        }
+        BitSet visible = new BitSet(n);
+        for (int i = 0; i < n; i++) {
+            visible.clear();
+            for (int d = direct[i].nextSetBit(0); d >= 0; d = direct[i].nextSetBit(d + 1)) {
+                visible.set(d);
+                visible.or(exported[d]);
+            }
+            visible.clear(i);
+            for (int v = visible.nextSetBit(0); v >= 0; v = visible.nextSetBit(v + 1)) {
+                dependents[v].set(i);
+            }
+        }
+
+        LOG.info("Pre-push: module dependency index built for " + n + " module(s) in "
+            + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) + " ms.");
+        return new Graph(modules, indexOf, dependents);
+    }
+
+    @Override
+    public void dispose() {
+        graph = null;
+    }
+
+    private static final class Graph {
+        final Module[] modules;
+        final Map<Module, Integer> indexOf;
+        // dependents[i]: modules whose compile classpath includes modules[i].
+        final BitSet[] dependents;
+
+        Graph(Module[] modules, Map<Module, Integer> indexOf, BitSet[] dependents) {
+            this.modules = modules;
+            this.indexOf = indexOf;
+            this.dependents = dependents;
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package com.github.prepushchecker;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.projectRoots.Sdk;
+import com.intellij.openapi.roots.LibraryOrderEntry;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.roots.OrderEntry;
+import com.intellij.openapi.roots.OrderRootType;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Disk-backed compile verdicts that survive IDE restarts and {@code touch}-style timestamp
+ * churn.
+ *
+ * <p>A verdict is keyed by a SHA-256 over the <em>content</em> of every input file, the
+ * {@link VerdictScope.Kind} it was compiled with, a fingerprint of the module / classpath
+ * configuration and the content of every module the compile read: the modules of the files,
+ * their transitive dependencies and, for a push scope, the modules that depend on them. So an
+ * unchanged push after a restart is a hash lookup instead of a JPS make, while a pulled change
+ * to a dependency or an edited caller misses. Only file and push-scope verdicts are stored; a
+ * project-wide build has no cheap content key.
+ *
+ * <ul>
+ *   <li>Stored in {@link #STORE_RELATIVE_PATH}; loaded lazily on first lookup.</li>
+ *   <li>Bounded by {@code prepushchecker.verdictCache.size} entries, evicting the least
+ *       recently used.</li>
+ *   <li>The configuration fingerprint is recomputed only after a roots change, a module's
+ *       content digest only after a change in it ({@link #modulesChanged}).</li>
+ * </ul>
+ */
+@Service(Service.Level.PROJECT)
+public final class PersistentVerdictCache implements Disposable {
+
+    static final String STORE_RELATIVE_PATH = ".idea/pre-push-checker/verdicts.bin";
+    private static final Logger LOG = Logger.getInstance(PersistentVerdictCache.class);
+    private static final int FORMAT_VERSION = 4;
+    private static final int MAX_DIAGNOSTICS_PER_VERDICT = 1_000;
+    private static final int MAX_MESSAGE_CHARS = 4_000;
+
+    private final Project project;
+    // Access-ordered: iteration runs from least to most recently used. Guarded by `this`.
+    private final LinkedHashMap<String, List<CompilerDiagnostic>> entries =
+        new LinkedHashMap<>(64, 0.75f, true);
+    private boolean loaded = false;
+    private volatile String configFingerprint;
+    // Content digest of each module's sources, by module name; dropped when the module changes.
+    private final ConcurrentHashMap<String, String> moduleDigests = new ConcurrentHashMap<>();
+    // Bumped on every change, so a digest or store racing a change is not kept.
+    private final AtomicLong changes = new AtomicLong();
+
+    public PersistentVerdictCache(@NotNull Project project) {
+        this.project = project;
+        project.getMessageBus().connect(this).subscribe(ModuleRootListener.TOPIC, new ModuleRootListener() {
+            @Override
+            public void rootsChanged(@NotNull ModuleRootEvent event) {
+                configFingerprint = null;
+                changes.incrementAndGet();
+                moduleDigests.clear();
+            }
+        });
+    }
+
+    public static PersistentVerdictCache getInstance(@NotNull Project project) {
+        return project.getService(PersistentVerdictCache.class);
+    }
+
+    /**
+     * Returns the verdict stored for the current content of {@code files} compiled with a
+     * {@code kind} scope, or {@code null}.
+     */
+    @Nullable List<CompilerDiagnostic> lookup(@NotNull Collection<VirtualFile> files, @NotNull VerdictScope.Kind kind) {
+        if (files.isEmpty() || project.isDisposed()) return null;
+        String key = computeKey(files, kind);
+        if (key == null) return null;
+        synchronized (this) {
+            ensureLoaded();
+            return entries.get(key);
+        }
+    }
+
+    /**
+     * Stores {@code verdict} for {@code files} compiled with a {@code kind} scope on a pooled
+     * thread. {@code stamps} are the timestamps the compile observed; if any file has moved
+     * since, or any module changed before the key is computed, the content no longer matches
+     * what was compiled and nothing is stored.
+     */
+    void storeAsync(
+        @NotNull Collection<VirtualFile> files,
+        @NotNull VerdictScope.Kind kind,
+        @NotNull Map<String, Long> stamps,
+        @NotNull List<CompilerDiagnostic> verdict
+    ) {
+        if (files.isEmpty() || verdict.size() > MAX_DIAGNOSTICS_PER_VERDICT) return;
+        List<VirtualFile> snapshot = List.copyOf(files);
+        List<CompilerDiagnostic> diagnostics = List.copyOf(verdict);
+        long changesAtStore = changes.get();
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            if (project.isDisposed()) return;
+            for (VirtualFile f : snapshot) {
+                Long stamp = stamps.get(f.getPath());
+                if (stamp == null || !f.isValid() || f.getTimeStamp() != stamp) return;
+            }
+            String key = computeKey(snapshot, kind);
+            if (key == null || changes.get() != changesAtStore) return;
+            synchronized (this) {
+                ensureLoaded();
+                entries.put(key, diagnostics);
+                evictOverflow();
+                save();
+            }
+        });
+    }
+
+    /** Called by {@link CompilationErrorService} for every source or build file change in {@code modules}. */
+    void modulesChanged(@NotNull Collection<Module> modules) {
+        changes.incrementAndGet();
+        for (Module module : modules) {
+            moduleDigests.remove(module.getName());
+        }
+    }
+
+    /** Drops every stored verdict, in memory and on disk. */
+    public synchronized void clear() {
+        entries.clear();
+        loaded = true;
+        Path store = storePath();
+        if (store != null) {
+            try {
+                Files.deleteIfExists(store);
+            } catch (IOException e) {
+                LOG.debug("Could not delete verdict store " + store, e);
+            }
+        }
+    }
+
+    private void evictOverflow() {
+        int cap = Math.max(1, Registry.intValue("prepushchecker.verdictCache.size", 128));
+        var it = entries.entrySet().iterator();
+        while (entries.size() > cap && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    // ── Keys ──────────────────────────────────────────────────────────────────
+
+    private @Nullable String computeKey(Collection<VirtualFile> files, VerdictScope.Kind kind) {
+        String config = configFingerprint();
+        if (config == null) return null;
+        String inputs = scopeFingerprint(files, kind);
+        if (inputs == null) return null;
+        List<VirtualFile> sorted = new ArrayList<>(files);
+        sorted.sort(Comparator.comparing(VirtualFile::getPath));
+        MessageDigest digest = sha256();
+        MessageDigest content = sha256();
+        update(digest, config);
+        update(digest, kind.name());
+        update(digest, inputs);
+        try {
+            for (VirtualFile f : sorted) {
+                if (f == null || !f.isValid()) return null;
+                digest.update(f.getPath().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                content.reset();
+                digest.update(content.digest(f.contentsToByteArray()));
+            }
+        } catch (IOException e) {
+            LOG.debug("Could not hash pushed files", e);
+            return null;
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Hash over the content digests of every module a {@code kind} compile of {@code files}
+     * reads: their modules and transitive dependencies and, for a push, the dependents of
+     * their modules with those dependents' own dependencies ({@link ChangeJournal#compileClosure}).
+     */
+    private @Nullable String scopeFingerprint(Collection<VirtualFile> files, VerdictScope.Kind kind) {
+        Set<Module> scope = ChangeJournal.compileClosure(project, files, kind != VerdictScope.Kind.FILES);
+        List<Module> sorted = new ArrayList<>(scope);
+        sorted.sort(Comparator.comparing(Module::getName));
+        MessageDigest digest = sha256();
+        for (Module module : sorted) {
+            String moduleDigest = moduleDigest(module);
+            if (moduleDigest == null) return null;
+            update(digest, module.getName());
+            update(digest, moduleDigest);
+        }
+        return toHex(digest.digest());
+    }
+
+    /** Hash over the paths and contents of {@code module}'s sources and build files, cached until it changes. */
+    private @Nullable String moduleDigest(Module module) {
+        String cached = moduleDigests.get(module.getName());
+        if (cached != null) return cached;
+        long changesAtStart = changes.get();
+        List<VirtualFile> inputs = ReadAction.compute(() -> {
+            if (module.isDisposed()) return null;
+            List<VirtualFile> found = new ArrayList<>();
+            ModuleRootManager.getInstance(module).getFileIndex().iterateContent(f -> {
+                if (!f.isDirectory() && PushValidationPaths.isRelevantPath(f.getPath())) found.add(f);
+                return true;
+            });
+            return found;
+        });
+        if (inputs == null) return null;
+        inputs.sort(Comparator.comparing(VirtualFile::getPath));
+        MessageDigest digest = sha256();
+        MessageDigest content = sha256();
+        try {
+            for (VirtualFile f : inputs) {
+                if (!f.isValid()) return null;
+                update(digest, f.getPath());
+                content.reset();
+                digest.update(content.digest(f.contentsToByteArray()));
+            }
+        } catch (IOException e) {
+            LOG.debug("Could not hash module " + module.getName(), e);
+            return null;
+        }
+        String computed = toHex(digest.digest());
+        // A change while hashing may have been read half-way; the next lookup hashes again.
+        if (changes.get() == changesAtStart) moduleDigests.put(module.getName(), computed);
+        return computed;
+    }
+
+    /**
+     * Hash of every module's name, SDK and order entries (including library class roots).
+     * Cached until the next {@link ModuleRootListener#rootsChanged}.
+     */
+    private @Nullable String configFingerprint() {
+        String cached = configFingerprint;
+        if (cached != null) return cached;
+        String computed = ApplicationManager.getApplication().runReadAction((Computable<String>) () -> {
+            if (project.isDisposed()) return null;
+            Module[] modules = ModuleManager.getInstance(project).getModules().clone();
+            java.util.Arrays.sort(modules, Comparator.comparing(Module::getName));
+            MessageDigest digest = sha256();
+            for (Module module : modules) {
+                ModuleRootManager roots = ModuleRootManager.getInstance(module);
+                update(digest, module.getName());
+                Sdk sdk = roots.getSdk();
+                update(digest, sdk != null ? sdk.getName() + "@" + sdk.getVersionString() : "-");
+                for (OrderEntry entry : roots.getOrderEntries()) {
+                    update(digest, entry.getPresentableName());
+                    if (entry instanceof LibraryOrderEntry) {
+                        for (String url : ((LibraryOrderEntry) entry).getRootUrls(OrderRootType.CLASSES)) {
+                            update(digest, url);
+                        }
+                    }
+                }
+            }
+            return toHex(digest.digest());
+        });
+        configFingerprint = computed;
+        return computed;
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    // ── Persistence ───────────────────────────────────────────────────────────
+
+    private @Nullable Path storePath() {
+        String basePath = project.getBasePath();
+        return basePath == null || basePath.isBlank() ? null : Path.of(basePath, STORE_RELATIVE_PATH);
+    }
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        loaded = true;
+        Path store = storePath();
+        if (store == null || !Files.isRegularFile(store)) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(store)))) {
+            if (in.readInt() != FORMAT_VERSION) return;
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                int n = in.readInt();
+                List<CompilerDiagnostic> diagnostics = new ArrayList<>(n);
+                for (int j = 0; j < n; j++) {
+                    String path = in.readBoolean() ? in.readUTF() : null;
+                    int line = in.readInt();
+                    int column = in.readInt();
+                    CompilerDiagnostic.Severity severity = CompilerDiagnostic.Severity.values()[in.readByte()];
+                    String module = in.readBoolean() ? in.readUTF() : null;
+                    String message = in.readUTF();
+                    diagnostics.add(new CompilerDiagnostic(path, line, column, severity, module, message));
+                }
+                entries.put(key, Collections.unmodifiableList(diagnostics));
+            }
+            LOG.info("Loaded " + entries.size() + " persisted pre-push verdict(s).");
+        } catch (IOException | RuntimeException e) {
+            LOG.info("Discarding unreadable verdict store " + store + ": " + e);
+            entries.clear();
+        }
+    }
+
+    private void save() {
+        Path store = storePath();
+        if (store == null) return;
+        try {
+            Files.createDirectories(store.getParent());
+            Path tmp = store.resolveSibling(store.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, List<CompilerDiagnostic>> e : entries.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    out.writeInt(e.getValue().size());
+                    for (CompilerDiagnostic d : e.getValue()) {
+                        writeNullable(out, d.getPath());
+                        out.writeInt(d.getLine());
+                        out.writeInt(d.getColumn());
+                        out.writeByte(d.getSeverity().ordinal());
+                        writeNullable(out, d.getModule());
+                        String message = d.getMessage();
+                        out.writeUTF(message.length() > MAX_MESSAGE_CHARS
+                            ? message.substring(0, MAX_MESSAGE_CHARS) : message);
+                    }
+                }
+            }
+            Files.move(tmp, store, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.debug("Could not persist verdict store " + store, e);
+        }
+    }
+
+    private static void writeNullable(DataOutputStream out, @Nullable String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+
+    @Override
+    public void dispose() {
+        synchronized (this) {
+            entries.clear();
+        }
+    }
+}
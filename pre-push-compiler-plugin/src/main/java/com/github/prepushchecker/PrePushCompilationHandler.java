@@ -11,6 +11,7 @@ import com.intellij.openapi.compiler.CompilerManager;
 import com.intellij.openapi.compiler.CompilerMessage;
 import com.intellij.openapi.compiler.CompilerMessageCategory;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.OpenFileDescriptor;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.progress.ProgressIndicator;
@@ -24,13 +25,20 @@ import com.intellij.openapi.vcs.changes.Change;
 import com.intellij.openapi.vcs.changes.ContentRevision;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.pom.Navigatable;
 import com.intellij.problems.WolfTheProblemSolver;
+import com.intellij.vcs.log.Hash;
 import com.intellij.vcs.log.VcsFullCommitDetails;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.File;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -46,6 +54,12 @@ public final class PrePushCompilationHandler implements PrePushHandler {
     private static final long WAIT_SLICE_MILLIS = 250L;
     private static final long TARGETED_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(2);
     private static final long FULL_BUILD_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final String UNKNOWN_COMPILER_ERROR = "Compilation failed with an unknown compiler error.";
+    private static final String BLOCKED_TITLE = "Push Blocked - Compilation Errors Found";
+    private static final String BLOCKED_HEADER =
+        "Compilation failed for this push. Fix the following errors before retrying:";
+    private static final String STREAMING_HEADER =
+        "Compilation is still running. Errors are listed as they are found; you can abort the push at any time:";
 
     @Override
     public @NotNull String getPresentableName() {
@@ -62,18 +76,40 @@ public final class PrePushCompilationHandler implements PrePushHandler {
             return Result.OK;
         }
 
+        CheckTimings timings = CheckTimings.getInstance(project);
+        CheckTimings.Trace trace = timings.start("push");
         try {
+            // Identical trees compile identically: a retry, a second remote or a reworded
+            // commit that already passed (here or in the external hook) is a file lookup.
+            // A recorded failure is not short-circuited; the normal path below re-shows it.
+            Map<String, List<String>> pushedTrees = collectPushedTrees(pushDetails);
+            Path basePath = project.getBasePath() != null ? Path.of(project.getBasePath()) : null;
+            boolean treePassed = basePath != null
+                && TreeVerdictStore.lookup(basePath, flatten(pushedTrees)) == TreeVerdictStore.Verdict.PASS;
+            trace.phase("treeVerdict");
+            if (basePath != null) {
+                timings.count(treePassed ? CheckTimings.Lookup.TREE_HIT : CheckTimings.Lookup.TREE_MISS);
+            }
+            if (treePassed) {
+                LOG.info("Pushed tree(s) already passed the compilation check; skipping.");
+                trace.verdict("cache:tree", 0);
+                return Result.OK;
+            }
+
             PushChangeSet changeSet = collectRelevantChanges(pushDetails, indicator);
+            trace.phase("collectChanges");
             if (!changeSet.hasRelevantChanges()) {
                 LOG.info("Skipping pre-push compilation check because no source/build files are affected.");
+                trace.verdict("skipped", 0);
                 return Result.OK;
             }
 
             CompilationErrorService errorService = CompilationErrorService.getInstance(project);
             Runnable abortCommitAction = buildAbortCommitAction(project, pushDetails);
 
-            List<String> problemFiles = collectKnownProblemFiles(project, changeSet.getSourceFiles());
+            List<CompilerDiagnostic> problemFiles = collectKnownProblemFiles(project, changeSet.getSourceFiles(), trace);
             if (!problemFiles.isEmpty()) {
+                trace.verdict("ide-problems", problemFiles.size());
                 errorService.setErrors(problemFiles);
                 boolean resolved = showDialog(
                     project,
@@ -81,53 +117,106 @@ public final class PrePushCompilationHandler implements PrePushHandler {
                     "Push Blocked - IDE Problems Found",
                     "IntelliJ already reports problems in files included in this push. Fix them before pushing:",
                     problemFiles,
-                    _ind -> collectKnownProblemFiles(project, changeSet.getSourceFiles()),
+                    _ind -> collectKnownProblemFiles(project, changeSet.getSourceFiles(), CheckTimings.Trace.NONE),
                     abortCommitAction
                 );
+                trace.phase("dialog");
                 if (!resolved) return Result.ABORT;
             }
 
+            Function<ProgressIndicator, List<CompilerDiagnostic>> recompile = freshInd ->
+                changeSet.requiresProjectBuild()
+                    ? compileProject(project, freshInd, null, CheckTimings.Trace.NONE)
+                    : compileFiles(project, changeSet.getSourceFiles(), changeSet.baseline(), freshInd, null,
+                        CheckTimings.Trace.NONE);
+
+            // A compile of the outgoing commits started in the background or when the push
+            // dialog opened is usually this very check; let it finish rather than queue a
+            // second make behind it.
+            SpeculativePushCheck speculative = SpeculativePushCheck.getInstance(project);
+            speculative.disarm();
+            speculative.awaitInFlight(indicator);
+            trace.phase("speculativeWait");
+
             // Reuse a recent compile verdict when nothing has moved on disk since it ran.
             // This skips a redundant full rebuild when e.g. the user just ran the manual
-            // "Run Compilation Check" and is now pushing without edits.
-            List<String> cached = errorService.tryReuse(changeSet.getSourceFiles());
-            List<String> errors;
-            if (cached != null) {
-                LOG.info("Reusing cached compilation result (" + cached.size() + " error(s)).");
-                errors = cached;
+            // "Run Compilation Check" and is now pushing without edits. Modules whose
+            // verdict is still valid are not compiled again; a project build is all or nothing.
+            CompilationErrorService.Reuse reuse = errorService.reuse(
+                changeSet.getSourceFiles(), changeSet.verdictScope(), trace);
+            boolean partial = !reuse.isComplete() && !changeSet.requiresProjectBuild()
+                && reuse.remaining.size() < changeSet.getSourceFiles().size();
+            trace.phase("reuseLookup");
+            List<CompilerDiagnostic> errors;
+            StreamingBlockDialog live = null;
+            if (reuse.isComplete()) {
+                LOG.info("Reusing cached compilation result (" + reuse.diagnostics.size() + " error(s)).");
+                errors = reuse.diagnostics;
             } else {
-                errors = changeSet.requiresProjectBuild()
-                    ? compileProject(project, indicator)
-                    : compileFiles(project, changeSet.getSourceFiles(), indicator);
-                errorService.recordCompletion(
-                    changeSet.requiresProjectBuild(),
-                    CompilationErrorService.snapshotStamps(changeSet.getSourceFiles()),
-                    errors
-                );
+                Collection<VirtualFile> toCompile = partial ? reuse.remaining : changeSet.getSourceFiles();
+                // Errors are streamed into the tool window and, from the first one on, into
+                // the block dialog while the make is still running.
+                live = new StreamingBlockDialog(project, indicator, recompile, abortCommitAction);
+                if (!changeSet.requiresProjectBuild()) {
+                    changeSet.baseline();
+                    trace.phase("baseline");
+                }
+                CompilationErrorService.CompileStart start = errorService.compileStart(toCompile);
+                List<CompilerDiagnostic> compiled = changeSet.requiresProjectBuild()
+                    ? compileProject(project, indicator, live, trace)
+                    : compileFiles(project, toCompile, changeSet.baseline(), indicator, live, trace);
+                if (live.isAbandoned()) {
+                    LOG.info("Push aborted from the block dialog while compiling.");
+                    errorService.endPartial();
+                    trace.verdict("aborted", -1);
+                    return Result.ABORT;
+                }
+                trace.verdict(CompilationErrorService.isConclusive(compiled)
+                    ? (partial ? "compile+cache:" + reuse.origin : "compile")
+                    : "compile:inconclusive", compiled.size());
+                errorService.recordCompletion(changeSet.verdictScope(), toCompile, compiled, "push", start);
+                errors = partial ? reuse.merge(compiled) : compiled;
             }
 
             if (!errors.isEmpty()) {
                 errorService.setErrors(errors);
-                boolean resolved = showDialog(
+                if (CompilationErrorService.isConclusive(errors)) {
+                    recordTreeVerdict(basePath, pushedTrees, TreeVerdictStore.Verdict.FAIL);
+                }
+                Boolean streamedResult = live != null ? live.finish(errors) : null;
+                boolean resolved = streamedResult != null ? streamedResult : showDialog(
                     project,
                     indicator.getModalityState(),
-                    "Push Blocked - Compilation Errors Found",
-                    "Compilation failed for this push. Fix the following errors before retrying:",
+                    BLOCKED_TITLE,
+                    BLOCKED_HEADER,
                     errors,
-                    freshInd -> changeSet.requiresProjectBuild()
-                        ? compileProject(project, freshInd)
-                        : compileFiles(project, changeSet.getSourceFiles(), freshInd),
+                    recompile,
                     abortCommitAction
                 );
-                if (resolved) errorService.setErrors(Collections.emptyList());
+                trace.phase("dialog");
+                if (resolved) {
+                    errorService.setErrors(Collections.emptyList());
+                    recordTreeVerdict(basePath, pushedTrees, TreeVerdictStore.Verdict.PASS);
+                }
                 return resolved ? Result.OK : Result.ABORT;
             }
 
+            // A dialog opened on streamed errors closes itself once the final result is clean.
+            boolean dismissed = live != null && Boolean.FALSE.equals(live.finish(errors));
+            trace.phase("dialog");
+            if (dismissed) {
+                return Result.ABORT;
+            }
             errorService.setErrors(Collections.emptyList());
+            recordTreeVerdict(basePath, pushedTrees, TreeVerdictStore.Verdict.PASS);
             return Result.OK;
         } catch (ProcessCanceledException ignored) {
+            CompilationErrorService.getInstance(project).endPartial();
             LOG.info("Pre-push compilation check canceled.");
+            trace.verdict("canceled", -1);
             return Result.ABORT;
+        } finally {
+            trace.finish();
         }
     }
 
@@ -140,36 +229,203 @@ public final class PrePushCompilationHandler implements PrePushHandler {
         return type == Change.Type.DELETED || type == Change.Type.MOVED;
     }
 
+    /**
+     * Tree object IDs of every pushed tip, per repository root. A tip is a pushed commit that
+     * is not the parent of another pushed commit. Returns an empty map if any tree cannot be
+     * resolved, which simply disables the tree-verdict shortcut.
+     */
+    private static Map<String, List<String>> collectPushedTrees(List<PushInfo> pushDetails) {
+        Map<String, Set<String>> tipsPerRoot = new LinkedHashMap<>();
+        for (PushInfo pushInfo : pushDetails) {
+            List<? extends VcsFullCommitDetails> commits = pushInfo.getCommits();
+            Set<String> parents = parentIds(commits);
+            for (VcsFullCommitDetails commit : commits) {
+                VirtualFile root = commit.getRoot();
+                String id = commit.getId().asString();
+                if (root != null && !parents.contains(id)) {
+                    tipsPerRoot.computeIfAbsent(root.getPath(), r -> new LinkedHashSet<>()).add(id);
+                }
+            }
+        }
+
+        Map<String, List<String>> treesPerRoot = new LinkedHashMap<>();
+        for (Map.Entry<String, Set<String>> entry : tipsPerRoot.entrySet()) {
+            List<String> trees = TreeVerdictStore.resolveTrees(entry.getKey(), entry.getValue());
+            if (trees.size() != entry.getValue().size()) {
+                return Collections.emptyMap();
+            }
+            treesPerRoot.put(entry.getKey(), trees);
+        }
+        return treesPerRoot;
+    }
+
+    /**
+     * Records {@code verdict} for the pushed trees that the compile actually saw: those equal
+     * to a clean working tree's {@code HEAD} in their repository.
+     */
+    private static void recordTreeVerdict(
+        @org.jetbrains.annotations.Nullable Path basePath,
+        Map<String, List<String>> pushedTrees,
+        TreeVerdictStore.Verdict verdict
+    ) {
+        if (basePath == null || pushedTrees.isEmpty()) return;
+        List<String> verified = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : pushedTrees.entrySet()) {
+            String headTree = TreeVerdictStore.headTreeIfClean(entry.getKey());
+            if (headTree != null && entry.getValue().contains(headTree)) {
+                verified.add(headTree);
+            }
+        }
+        TreeVerdictStore.record(basePath, verified, verdict);
+    }
+
+    private static List<String> flatten(Map<String, List<String>> treesPerRoot) {
+        List<String> all = new ArrayList<>();
+        treesPerRoot.values().forEach(all::addAll);
+        return all;
+    }
+
+    private static Set<String> parentIds(List<? extends VcsFullCommitDetails> commits) {
+        Set<String> parents = new HashSet<>();
+        for (VcsFullCommitDetails commit : commits) {
+            for (Hash parent : commit.getParents()) {
+                parents.add(parent.asString());
+            }
+        }
+        return parents;
+    }
+
+    /**
+     * Collects the relevant paths of every pushed {@link PushInfo}, then resolves the surviving
+     * source paths to {@link VirtualFile}s with one batched VFS refresh.
+     *
+     * <p>With {@code prepushchecker.changes.netDiff} (default) each push is reduced to a single
+     * {@code git diff base..tip}, so a 300-commit branch costs one diff and files a later
+     * commit reverted or deleted are not checked. Pushes whose range has more than one base or
+     * tip (e.g. merges of other branches) fall back to walking every commit's changes.
+     */
     private static PushChangeSet collectRelevantChanges(List<PushInfo> pushDetails, ProgressIndicator indicator) {
-        Map<String, VirtualFile> sourceFiles = new LinkedHashMap<>();
-        Set<String> relevantPaths = new LinkedHashSet<>();
-        boolean requiresProjectBuild = false;
+        long startNanos = System.nanoTime();
+        boolean netDiffEnabled = Registry.is("prepushchecker.changes.netDiff", true);
+        ChangeAccumulator changes = new ChangeAccumulator();
+        int netDiffs = 0;
+        int walked = 0;
 
         for (PushInfo pushInfo : pushDetails) {
-            for (VcsFullCommitDetails commit : pushInfo.getCommits()) {
-                indicator.checkCanceled();
-                for (Change change : commit.getChanges()) {
-                    String path = extractPath(change);
-                    if (!PushValidationPaths.isRelevantPath(path)) {
-                        continue;
-                    }
+            indicator.checkCanceled();
+            if (netDiffEnabled && collectNetDiff(pushInfo, changes)) {
+                netDiffs++;
+            } else {
+                collectCommitWalk(pushInfo, changes, indicator);
+                walked++;
+            }
+        }
 
-                    relevantPaths.add(path);
-                    if (requiresProjectBuild(change, path)) {
-                        requiresProjectBuild = true;
-                    }
+        List<VirtualFile> sourceFiles = resolveSourceFiles(changes.sourcePaths);
+        LOG.info("Pre-push: collected " + changes.sourcePaths.size() + " source path(s) from "
+            + netDiffs + " net diff(s) and " + walked + " commit walk(s) in "
+            + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) + " ms.");
+        return new PushChangeSet(sourceFiles, changes);
+    }
 
-                    if (PushValidationPaths.isCompilableSource(path)) {
-                        VirtualFile file = findVirtualFile(change);
-                        if (file != null) {
-                            sourceFiles.putIfAbsent(file.getPath(), file);
-                        }
-                    }
+    /**
+     * Adds the net {@code base..tip} difference of {@code pushInfo}. Returns {@code false} if
+     * the pushed range does not have exactly one base and one tip, or git fails.
+     */
+    private static boolean collectNetDiff(PushInfo pushInfo, ChangeAccumulator changes) {
+        List<? extends VcsFullCommitDetails> commits = pushInfo.getCommits();
+        if (commits.isEmpty()) return true;
+        VirtualFile root = commits.get(0).getRoot();
+        if (root == null) return false;
+
+        Set<String> ids = new HashSet<>();
+        for (VcsFullCommitDetails commit : commits) {
+            ids.add(commit.getId().asString());
+        }
+        Set<String> parents = parentIds(commits);
+        Set<String> tips = new HashSet<>(ids);
+        tips.removeAll(parents);
+        Set<String> bases = new HashSet<>(parents);
+        bases.removeAll(ids);
+        if (tips.size() != 1 || bases.size() != 1) return false;
+
+        return addNetDiff(root.getPath(), bases.iterator().next(), tips.iterator().next(), changes);
+    }
+
+    /**
+     * The change set a push of every repository's {@code HEAD} to its upstream would check:
+     * one net diff from the merge-base per repository. Repositories without an upstream or
+     * without outgoing commits are skipped. {@code null} if git fails. Runs git; call it off
+     * the EDT.
+     */
+    static @org.jetbrains.annotations.Nullable PushChangeSet collectOutgoingChanges(Project project) {
+        ChangeAccumulator changes = new ChangeAccumulator();
+        for (VirtualFile root : com.intellij.openapi.vcs.ProjectLevelVcsManager.getInstance(project).getAllVersionedRoots()) {
+            String base = GitHookInstaller.runGit(root.getPath(), "merge-base", "HEAD", "@{upstream}");
+            String head = GitHookInstaller.runGit(root.getPath(), "rev-parse", "HEAD");
+            if (base == null || base.isEmpty() || head == null || head.equals(base)) continue;
+            if (!addNetDiff(root.getPath(), base, head, changes)) return null;
+        }
+        return new PushChangeSet(resolveSourceFiles(changes.sourcePaths), changes);
+    }
+
+    /** Adds {@code git diff base..tip} of the repository at {@code root}; {@code false} if git fails. */
+    private static boolean addNetDiff(String root, String base, String tip, ChangeAccumulator changes) {
+        String output = GitHookInstaller.runGit(root,
+            "diff", "--name-status", "--no-renames", "-z", base, tip);
+        if (output == null) return false;
+        // Two pushes of one repository with different bases leave its baseline unknown.
+        String previousBase = changes.baseByRoot.putIfAbsent(root, base);
+        if (previousBase != null && !previousBase.equals(base)) {
+            changes.baseByRoot.put(root, "");
+        }
+
+        // -z output: "<status>\0<path>\0" pairs, paths relative to the repository root.
+        String[] fields = output.split("\0");
+        for (int i = 0; i + 1 < fields.length; i += 2) {
+            String status = fields[i].trim();
+            String path = fields[i + 1];
+            if (!PushValidationPaths.isRelevantPath(path)) {
+                continue;
+            }
+            boolean deleted = status.startsWith("D");
+            changes.hasRelevantChanges = true;
+            if (deleted || PushValidationPaths.isBuildFile(path)) {
+                changes.requiresProjectBuild = true;
+            }
+            if (!deleted && PushValidationPaths.isCompilableSource(path)) {
+                changes.sourcePaths.add(root + "/" + path);
+                if (status.startsWith("A")) {
+                    changes.addedPaths.add(root + "/" + path);
                 }
             }
         }
+        return true;
+    }
+
+    private static void collectCommitWalk(PushInfo pushInfo, ChangeAccumulator changes, ProgressIndicator indicator) {
+        for (VcsFullCommitDetails commit : pushInfo.getCommits()) {
+            indicator.checkCanceled();
+            if (commit.getRoot() != null) {
+                changes.baseByRoot.put(commit.getRoot().getPath(), ""); // no single base
+            }
+            for (Change change : commit.getChanges()) {
+                String path = extractPath(change);
+                if (!PushValidationPaths.isRelevantPath(path)) {
+                    continue;
+                }
 
-        return new PushChangeSet(new ArrayList<>(sourceFiles.values()), !relevantPaths.isEmpty(), requiresProjectBuild);
+                changes.hasRelevantChanges = true;
+                if (requiresProjectBuild(change, path)) {
+                    changes.requiresProjectBuild = true;
+                }
+
+                ContentRevision afterRevision = change.getAfterRevision();
+                if (afterRevision != null && PushValidationPaths.isCompilableSource(path)) {
+                    changes.sourcePaths.add(FileUtil.toSystemIndependentName(afterRevision.getFile().getPath()));
+                }
+            }
+        }
     }
 
     private static String extractPath(Change change) {
@@ -182,99 +438,188 @@ public final class PrePushCompilationHandler implements PrePushHandler {
         return beforeRevision != null ? beforeRevision.getFile().getPath() : "";
     }
 
-    private static VirtualFile findVirtualFile(Change change) {
-        ContentRevision afterRevision = change.getAfterRevision();
-        if (afterRevision == null) {
-            return null;
+    /**
+     * Resolves absolute paths to {@link VirtualFile}s. Paths the VFS does not know yet are
+     * refreshed together in one synchronous batch instead of one refresh per file.
+     */
+    private static List<VirtualFile> resolveSourceFiles(Collection<String> paths) {
+        if (paths.isEmpty()) {
+            return Collections.emptyList();
         }
-
-        String path = FileUtil.toSystemIndependentName(afterRevision.getFile().getPath());
         LocalFileSystem localFileSystem = LocalFileSystem.getInstance();
-        VirtualFile file = localFileSystem.findFileByPath(path);
-        return file != null ? file : localFileSystem.refreshAndFindFileByPath(path);
+        Map<String, VirtualFile> files = new LinkedHashMap<>();
+        List<File> missing = new ArrayList<>();
+        for (String path : paths) {
+            VirtualFile file = localFileSystem.findFileByPath(path);
+            if (file != null) {
+                files.putIfAbsent(file.getPath(), file);
+            } else {
+                missing.add(new File(path));
+            }
+        }
+        if (!missing.isEmpty()) {
+            localFileSystem.refreshIoFiles(missing);
+            for (File io : missing) {
+                VirtualFile file = localFileSystem.findFileByIoFile(io);
+                if (file != null) {
+                    files.putIfAbsent(file.getPath(), file);
+                }
+            }
+        }
+        return new ArrayList<>(files.values());
     }
 
-    private static List<String> collectKnownProblemFiles(Project project, Collection<VirtualFile> sourceFiles) {
+    /**
+     * Problems known before compiling: files the daemon has flagged, then a
+     * {@link HighlightingPreflight} of the pushed files it never analysed.
+     */
+    private static List<CompilerDiagnostic> collectKnownProblemFiles(
+        Project project,
+        Collection<VirtualFile> sourceFiles,
+        CheckTimings.Trace trace
+    ) {
         if (sourceFiles.isEmpty()) {
             return Collections.emptyList();
         }
 
         WolfTheProblemSolver problemSolver = WolfTheProblemSolver.getInstance(project);
-        List<String> problemFiles = new ArrayList<>();
+        List<CompilerDiagnostic> problemFiles = new ArrayList<>();
         for (VirtualFile sourceFile : sourceFiles) {
             if (problemSolver.isProblemFile(sourceFile)) {
-                problemFiles.add(toDisplayPath(project, sourceFile));
+                problemFiles.add(CompilerDiagnostic.fileProblem(
+                    toDisplayPath(project, sourceFile), null, "Problems reported by the IDE."));
             }
         }
+        trace.phase("ideProblems");
+        if (problemFiles.isEmpty()) {
+            problemFiles.addAll(HighlightingPreflight.check(project, sourceFiles));
+            trace.phase("preflight");
+        }
         return problemFiles;
     }
 
-    private static List<String> compileFiles(Project project, Collection<VirtualFile> sourceFiles, ProgressIndicator indicator) {
+    private static List<CompilerDiagnostic> compileFiles(
+        Project project,
+        Collection<VirtualFile> sourceFiles,
+        PushBaseline baseline,
+        ProgressIndicator indicator,
+        @org.jetbrains.annotations.Nullable LiveCompileMonitor.Listener listener,
+        CheckTimings.Trace trace
+    ) {
         if (sourceFiles.isEmpty()) {
             return Collections.emptyList();
         }
         CompilerManager compilerManager = CompilerManager.getInstance(project);
-        CompileScope scope = ApplicationManager.getApplication().runReadAction(
-            (Computable<CompileScope>) () -> buildPushScope(project, sourceFiles, compilerManager)
-        );
-        return runCompilation(
-            project,
-            indicator,
-            TARGETED_TIMEOUT_MILLIS,
-            notification -> compilerManager.make(scope, notification)
+        Set<VirtualFile> referencing = ReferenceScopePlanner.plan(project, sourceFiles, baseline);
+        List<CompileScope> stages = ApplicationManager.getApplication().runReadAction(
+            (Computable<List<CompileScope>>) () -> buildPushStages(project, sourceFiles, referencing, compilerManager)
         );
+        Set<Module> affected = ApplicationManager.getApplication().runReadAction((Computable<Set<Module>>) () -> {
+            Set<Module> modules = new LinkedHashSet<>();
+            for (CompileScope stage : stages) {
+                modules.addAll(Arrays.asList(stage.getAffectedModules()));
+            }
+            return modules;
+        });
+        long timeoutMillis = CompileHistory.getInstance(project).timeoutMillis(affected, TARGETED_TIMEOUT_MILLIS);
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        trace.phase("scope");
+        List<CompilerDiagnostic> errors = Collections.emptyList();
+        for (int i = 0; i < stages.size(); i++) {
+            CompileScope scope = stages.get(i);
+            long remainingMillis = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+            errors = runCompilation(
+                project,
+                indicator,
+                remainingMillis,
+                scope,
+                listener,
+                trace,
+                notification -> compilerManager.make(scope, notification)
+            );
+            if (!errors.isEmpty()) {
+                if (stages.size() > 1) {
+                    LOG.info("Pre-push: stage " + (i + 1) + "/" + stages.size() + " failed; later stages skipped.");
+                }
+                return errors;
+            }
+        }
+        return errors;
     }
 
     /**
      * Picks the smallest {@link CompileScope} that still guarantees A-depends-on-B coverage.
      *
      * <ul>
+     *   <li>If {@link ReferenceScopePlanner} can tell which files reference the parts of the
+     *       pushed API that changed since {@code baseline}, make exactly those files plus the
+     *       pushed ones — just the pushed ones when the API is unchanged. Otherwise fall back
+     *       to module scope:</li>
      *   <li>Resolve each pushed file's module.</li>
-     *   <li>Union in every module that <em>depends on</em> that module
-     *       ({@link ModuleManager#getModuleDependentModules}) — these are the potential callers.
-     *       The lookup is a pure module-graph query, no file iteration.</li>
+     *   <li>Union in every module that <em>depends on</em> that module, directly or through
+     *       exported dependencies — these are the potential callers. The lookup is a bitset
+     *       OR over the cached {@link ModuleDependencyIndex}, no file iteration.</li>
      *   <li>{@code make} that union. JPS runs incrementally, so only actually-stale files in
      *       those modules are recompiled; warm files are skipped. Because the caller modules
      *       are in the scope explicitly, JPS cannot "forget" to recompile a caller the way a
      *       stale dep-graph sometimes does with a file-only scope.</li>
-     *   <li>Safety cap ({@code prepushchecker.scope.modules.cap}, default 50): if a pushed
-     *       file lives in a very widely-used utility module and would drag most of the project
-     *       in, fall back to the narrower file scope rather than churning the world.</li>
+     *   <li>Safety cap: if a pushed file lives in a very widely-used utility module and would
+     *       drag most of the project in, fall back to the narrower file scope rather than
+     *       churning the world. When {@link CompileHistory} knows every module, the cap is the
+     *       estimated cost ({@code prepushchecker.scope.modules.budgetMs}); otherwise the
+     *       module count ({@code prepushchecker.scope.modules.cap}, default 50).</li>
      *   <li>If no module can be resolved (file outside content roots), use file scope.</li>
      * </ul>
      *
      * Must be called under a read action.
      */
-    /** Package-private helper so the socket server can reuse the adaptive scope policy. */
+    /**
+     * Package-private helper so the socket server can reuse the adaptive scope policy.
+     * Runs reference searches; call it off the EDT, outside any read action.
+     */
     static CompileScope buildPushScopeForExternal(Project project,
                                                   Collection<VirtualFile> files,
+                                                  PushBaseline baseline,
                                                   CompilerManager cm) {
+        Set<VirtualFile> referencing = ReferenceScopePlanner.plan(project, files, baseline);
         return ApplicationManager.getApplication().runReadAction(
-            (Computable<CompileScope>) () -> buildPushScope(project, files, cm)
+            (Computable<CompileScope>) () -> buildPushScope(project, files, referencing, cm)
         );
     }
 
     private static CompileScope buildPushScope(Project project,
                                                Collection<VirtualFile> files,
+                                               @org.jetbrains.annotations.Nullable Set<VirtualFile> referencing,
                                                CompilerManager cm) {
-        ProjectFileIndex idx = ProjectFileIndex.getInstance(project);
-        ModuleManager mm = ModuleManager.getInstance(project);
-        Set<Module> modules = new LinkedHashSet<>();
-        for (VirtualFile f : files) {
-            Module m = idx.getModuleForFile(f, false);
-            if (m == null) continue;
-            modules.add(m);
-            modules.addAll(mm.getModuleDependentModules(m));
+        if (referencing != null) {
+            return referenceScope(files, referencing, cm);
         }
+        return buildModuleScope(project, files, cm);
+    }
+
+    private static CompileScope referenceScope(Collection<VirtualFile> files,
+                                               Set<VirtualFile> referencing,
+                                               CompilerManager cm) {
+        Set<VirtualFile> union = new LinkedHashSet<>(files);
+        union.addAll(referencing);
+        LOG.info("Pre-push: make scope = " + files.size() + " pushed + "
+            + referencing.size() + " referencing file(s).");
+        return cm.createFilesCompileScope(union.toArray(VirtualFile.EMPTY_ARRAY));
+    }
+
+    private static CompileScope buildModuleScope(Project project,
+                                                 Collection<VirtualFile> files,
+                                                 CompilerManager cm) {
+        Set<Module> modules = new LinkedHashSet<>();
+        Set<Module> pushed = resolvePushedModules(project, files);
+        modules.addAll(pushed);
+        modules.addAll(collectDependents(project, pushed));
         VirtualFile[] fileArr = files.toArray(VirtualFile.EMPTY_ARRAY);
         if (modules.isEmpty()) {
             LOG.info("Pre-push: no module resolved for pushed files, using file scope.");
             return cm.createFilesCompileScope(fileArr);
         }
-        int cap = Registry.intValue("prepushchecker.scope.modules.cap", 50);
-        if (modules.size() > cap) {
-            LOG.info("Pre-push: dependent-module count " + modules.size()
-                + " exceeds cap " + cap + "; falling back to file scope.");
+        if (exceedsModuleBudget(project, modules)) {
             return cm.createFilesCompileScope(fileArr);
         }
         LOG.info("Pre-push: make scope = " + modules.size()
@@ -282,29 +627,131 @@ public final class PrePushCompilationHandler implements PrePushHandler {
         return cm.createModulesCompileScope(modules.toArray(Module.EMPTY_ARRAY), false);
     }
 
-    private static List<String> compileProject(Project project, ProgressIndicator indicator) {
+    /**
+     * Staged variant of {@link #buildPushScope}: the pushed modules first, then all their
+     * dependents in one more make. The most likely breakage sits in the pushed module itself,
+     * so a red push is reported after compiling just that module instead of the whole union.
+     * Never more than two stages: each make pays JPS startup and up-to-date checks again,
+     * which a green push across many dependency levels would otherwise pay once per level.
+     *
+     * <p>A reference-planned scope is staged the same way: the pushed files, then the files
+     * referencing them.
+     *
+     * <p>Disabled by {@code prepushchecker.scope.staged}; file scope, the module cap and
+     * pushes without dependents produce a single stage. Must be called under a read action.
+     */
+    private static List<CompileScope> buildPushStages(Project project,
+                                                      Collection<VirtualFile> files,
+                                                      @org.jetbrains.annotations.Nullable Set<VirtualFile> referencing,
+                                                      CompilerManager cm) {
+        boolean staged = Registry.is("prepushchecker.scope.staged", true);
+        if (referencing != null) {
+            if (!staged || referencing.isEmpty()) {
+                return Collections.singletonList(referenceScope(files, referencing, cm));
+            }
+            LOG.info("Pre-push: staged make = " + files.size() + " pushed file(s), then "
+                + referencing.size() + " referencing file(s).");
+            return List.of(
+                cm.createFilesCompileScope(files.toArray(VirtualFile.EMPTY_ARRAY)),
+                cm.createFilesCompileScope(referencing.toArray(VirtualFile.EMPTY_ARRAY)));
+        }
+        if (!staged) {
+            return Collections.singletonList(buildModuleScope(project, files, cm));
+        }
+        Set<Module> pushed = resolvePushedModules(project, files);
+        Set<Module> dependents = collectDependents(project, pushed);
+        if (pushed.isEmpty() || dependents.isEmpty()) {
+            return Collections.singletonList(buildModuleScope(project, files, cm));
+        }
+        Set<Module> union = new LinkedHashSet<>(pushed);
+        union.addAll(dependents);
+        if (exceedsModuleBudget(project, union)) {
+            return Collections.singletonList(cm.createFilesCompileScope(files.toArray(VirtualFile.EMPTY_ARRAY)));
+        }
+
+        LOG.info("Pre-push: staged make = " + pushed.size() + " pushed module(s), then "
+            + dependents.size() + " dependent(s), incremental.");
+        return List.of(
+            cm.createModulesCompileScope(pushed.toArray(Module.EMPTY_ARRAY), false),
+            cm.createModulesCompileScope(dependents.toArray(Module.EMPTY_ARRAY), false));
+    }
+
+    /**
+     * {@code true} if making {@code modules} is too expensive for a push check: by the
+     * {@link CompileHistory} estimate when every module has history, by module count otherwise.
+     */
+    private static boolean exceedsModuleBudget(Project project, Set<Module> modules) {
+        long estimate = CompileHistory.getInstance(project).estimateMillis(modules);
+        if (estimate >= 0) {
+            int budget = Registry.intValue("prepushchecker.scope.modules.budgetMs", 60_000);
+            if (estimate <= budget) return false;
+            LOG.info("Pre-push: estimated make of " + modules.size() + " module(s) takes "
+                + estimate + " ms, over budget " + budget + " ms; falling back to file scope.");
+            return true;
+        }
+        int cap = Registry.intValue("prepushchecker.scope.modules.cap", 50);
+        if (modules.size() <= cap) return false;
+        LOG.info("Pre-push: dependent-module count " + modules.size()
+            + " exceeds cap " + cap + "; falling back to file scope.");
+        return true;
+    }
+
+    private static Set<Module> resolvePushedModules(Project project, Collection<VirtualFile> files) {
+        ProjectFileIndex idx = ProjectFileIndex.getInstance(project);
+        Set<Module> modules = new LinkedHashSet<>();
+        for (VirtualFile f : files) {
+            Module m = idx.getModuleForFile(f, false);
+            if (m != null) modules.add(m);
+        }
+        return modules;
+    }
+
+    /** Modules whose classpath sees any of {@code pushed}, excluding {@code pushed} itself. */
+    private static Set<Module> collectDependents(Project project, Set<Module> pushed) {
+        return ModuleDependencyIndex.getInstance(project).dependentsOf(pushed);
+    }
+
+    private static List<CompilerDiagnostic> compileProject(
+        Project project,
+        ProgressIndicator indicator,
+        @org.jetbrains.annotations.Nullable LiveCompileMonitor.Listener listener,
+        CheckTimings.Trace trace
+    ) {
         CompilerManager compilerManager = CompilerManager.getInstance(project);
         CompileScope scope = compilerManager.createProjectCompileScope(project);
+        long timeoutMillis = CompileHistory.getInstance(project).timeoutMillis(
+            Arrays.asList(ModuleManager.getInstance(project).getModules()), FULL_BUILD_TIMEOUT_MILLIS);
+        trace.phase("scope");
         return runCompilation(
             project,
             indicator,
-            FULL_BUILD_TIMEOUT_MILLIS,
+            timeoutMillis,
+            scope,
+            listener,
+            trace,
             notification -> compilerManager.make(scope, notification)
         );
     }
 
-    private static List<String> runCompilation(
+    private static List<CompilerDiagnostic> runCompilation(
         Project project,
         ProgressIndicator indicator,
         long timeoutMillis,
+        CompileScope scope,
+        @org.jetbrains.annotations.Nullable LiveCompileMonitor.Listener listener,
+        CheckTimings.Trace trace,
         CompilationStarter compilationStarter
     ) {
+        int failFast = LiveCompileMonitor.failFastThreshold();
+        // Always observed: the wait loop needs its liveness to tell slow from hung.
+        LiveCompileMonitor.Session session = LiveCompileMonitor.attach(
+            project, scope, listener != null ? listener : LiveCompileMonitor.Listener.NONE);
         CountDownLatch latch = new CountDownLatch(1);
-        AtomicReference<List<String>> errors = new AtomicReference<>(Collections.emptyList());
+        AtomicReference<List<CompilerDiagnostic>> errors = new AtomicReference<>(Collections.emptyList());
 
         Runnable startCompilation = () -> compilationStarter.start((aborted, errorCount, warnings, compileContext) -> {
             if (aborted) {
-                errors.set(Collections.singletonList("Compilation was aborted."));
+                errors.set(Collections.singletonList(CompilerDiagnostic.general("Compilation was aborted.")));
             } else if (errorCount > 0) {
                 errors.set(formatCompilerMessages(project, compileContext.getMessages(CompilerMessageCategory.ERROR)));
             }
@@ -321,57 +768,123 @@ public final class PrePushCompilationHandler implements PrePushHandler {
             }
             application.invokeAndWait(startCompilation, modality);
         }
+        trace.phase("edtWait");
 
-        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        // Past the deadline a build that still reports progress keeps going, up to the ceiling.
+        long startNanos = System.nanoTime();
+        long deadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long ceilingNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(
+            Math.max(timeoutMillis, CompileHistory.MAX_TIMEOUT_MILLIS));
         try {
             while (true) {
                 indicator.checkCanceled();
-                long remainingNanos = deadlineNanos - System.nanoTime();
-                if (remainingNanos <= 0) {
-                    return Collections.singletonList("Compilation check timed out.");
+                long now = System.nanoTime();
+                if (now - deadlineNanos >= 0
+                        && (now - ceilingNanos >= 0 || !session.isActiveWithin(LiveCompileMonitor.STALL_MILLIS))) {
+                    LOG.info("Pre-push: no compile progress for " + LiveCompileMonitor.STALL_MILLIS
+                        + " ms after the " + timeoutMillis + " ms deadline; giving up.");
+                    return Collections.singletonList(CompilerDiagnostic.general("Compilation check timed out."));
                 }
 
-                long waitMillis = Math.min(WAIT_SLICE_MILLIS, TimeUnit.NANOSECONDS.toMillis(remainingNanos));
+                long untilDeadline = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - now);
+                long waitMillis = untilDeadline > 0 ? Math.min(WAIT_SLICE_MILLIS, untilDeadline) : WAIT_SLICE_MILLIS;
                 if (latch.await(waitMillis, TimeUnit.MILLISECONDS)) {
                     return errors.get();
                 }
+                if (!session.pump()) {
+                    return Collections.singletonList(CompilerDiagnostic.general("Compilation was aborted."));
+                }
+                if (failFast > 0 && session.errorCount() >= failFast) {
+                    LOG.info("Pre-push: fail-fast after " + session.errorCount()
+                        + " error(s); canceling the rest of the make.");
+                    return session.stopEarly();
+                }
             }
         } catch (InterruptedException interruptedException) {
             Thread.currentThread().interrupt();
-            return Collections.singletonList("Compilation check was interrupted.");
+            return Collections.singletonList(CompilerDiagnostic.general("Compilation check was interrupted."));
+        } finally {
+            session.close();
+            trace.phase("jps");
         }
     }
 
-    static List<String> formatCompilerMessages(Project project, CompilerMessage[] messages) {
-        if (messages == null || messages.length == 0) {
-            return Collections.singletonList("Compilation failed with an unknown compiler error.");
+    /**
+     * Converts raw JPS messages into {@link CompilerDiagnostic}s. Module lookups are done once
+     * per distinct file under a single read action, so a 5k-error build costs a handful of
+     * index queries rather than one per message.
+     */
+    static List<CompilerDiagnostic> formatCompilerMessages(Project project, CompilerMessage[] messages) {
+        List<CompilerDiagnostic> diagnostics = toDiagnostics(project, messages);
+        if (diagnostics.isEmpty()) {
+            return Collections.singletonList(CompilerDiagnostic.general(UNKNOWN_COMPILER_ERROR));
         }
+        return diagnostics;
+    }
 
-        List<String> formattedMessages = new ArrayList<>(messages.length);
-        StringBuilder builder = new StringBuilder(128);
-        for (CompilerMessage message : messages) {
-            if (message == null) {
-                continue;
+    /** Like {@link #formatCompilerMessages} but without the "unknown error" placeholder. */
+    static List<CompilerDiagnostic> toDiagnostics(Project project, CompilerMessage[] messages) {
+        if (messages == null || messages.length == 0) {
+            return Collections.emptyList();
+        }
+        return ApplicationManager.getApplication().runReadAction(
+            (Computable<List<CompilerDiagnostic>>) () -> {
+                ProjectFileIndex idx = ProjectFileIndex.getInstance(project);
+                Map<VirtualFile, String> moduleNames = new HashMap<>();
+                List<CompilerDiagnostic> out = new ArrayList<>(messages.length);
+                for (CompilerMessage message : messages) {
+                    if (message == null) {
+                        continue;
+                    }
+                    out.add(toDiagnostic(project, idx, moduleNames, message));
+                }
+                return out;
             }
+        );
+    }
 
-            builder.setLength(0);
-            VirtualFile file = message.getVirtualFile();
-            builder.append('[');
-            builder.append(file != null ? toDisplayPath(project, file) : "unknown");
-            String prefix = message.getRenderTextPrefix();
-            if (prefix != null && !prefix.isBlank()) {
-                builder.append(' ').append(prefix.trim());
-            }
-            builder.append("] ");
-            String msg = message.getMessage();
-            builder.append(msg != null ? msg : "");
-            formattedMessages.add(builder.toString());
+    private static CompilerDiagnostic toDiagnostic(
+        Project project,
+        ProjectFileIndex idx,
+        Map<VirtualFile, String> moduleNames,
+        CompilerMessage message
+    ) {
+        VirtualFile file = message.getVirtualFile();
+        String msg = message.getMessage();
+        CompilerDiagnostic.Severity severity = toSeverity(message.getCategory());
+        if (file == null) {
+            return new CompilerDiagnostic(null, 0, 0, severity, null, msg);
         }
 
-        if (formattedMessages.isEmpty()) {
-            return Collections.singletonList("Compilation failed with an unknown compiler error.");
+        String module = moduleNames.computeIfAbsent(file, f -> {
+            Module m = project.isDisposed() ? null : idx.getModuleForFile(f, false);
+            return m != null ? m.getName() : null;
+        });
+        int line = 0;
+        int column = 0;
+        Navigatable navigatable = message.getNavigatable();
+        if (navigatable instanceof OpenFileDescriptor) {
+            OpenFileDescriptor descriptor = (OpenFileDescriptor) navigatable;
+            if (descriptor.getLine() >= 0) {
+                line = descriptor.getLine() + 1;
+                column = Math.max(0, descriptor.getColumn()) + 1;
+            }
+        }
+        if (line == 0) {
+            // JPS also renders the position as a "(line, col)" prefix.
+            int[] position = CompilerDiagnostic.parsePosition(message.getRenderTextPrefix());
+            if (position != null) {
+                line = position[0];
+                column = position[1];
+            }
         }
-        return formattedMessages;
+        return new CompilerDiagnostic(toDisplayPath(project, file), line, column, severity, module, msg);
+    }
+
+    private static CompilerDiagnostic.Severity toSeverity(CompilerMessageCategory category) {
+        if (category == CompilerMessageCategory.WARNING) return CompilerDiagnostic.Severity.WARNING;
+        if (category == CompilerMessageCategory.ERROR || category == null) return CompilerDiagnostic.Severity.ERROR;
+        return CompilerDiagnostic.Severity.INFO;
     }
 
     static String toDisplayPath(Project project, VirtualFile file) {
@@ -389,8 +902,8 @@ public final class PrePushCompilationHandler implements PrePushHandler {
         ModalityState modalityState,
         String title,
         String header,
-        List<String> items,
-        Function<ProgressIndicator, List<String>> refreshAction,
+        List<CompilerDiagnostic> items,
+        Function<ProgressIndicator, List<CompilerDiagnostic>> refreshAction,
         @org.jetbrains.annotations.Nullable Runnable abortCommitAction
     ) {
         boolean[] result = {false};
@@ -492,27 +1005,168 @@ public final class PrePushCompilationHandler implements PrePushHandler {
         void start(CompileStatusNotification notification);
     }
 
-    private static final class PushChangeSet {
+    /**
+     * Streams a running make into the tool window and, from the first error on, into a block
+     * dialog that stays open while JPS keeps compiling. Closing the dialog before the make
+     * finishes abandons it, so a user who has seen enough does not wait for the whole build.
+     */
+    private static final class StreamingBlockDialog implements LiveCompileMonitor.Listener {
+        private final Project project;
+        private final ProgressIndicator indicator;
+        private final Function<ProgressIndicator, List<CompilerDiagnostic>> refreshAction;
+        @org.jetbrains.annotations.Nullable private final Runnable abortCommitAction;
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        private volatile List<CompilerDiagnostic> latest = Collections.emptyList();
+        private volatile double fraction = -1;
+        private volatile boolean opened = false;
+        private volatile boolean finished = false;
+        private volatile boolean accepted = false;
+        private CompilationReportDialog dialog; // EDT only
+
+        StreamingBlockDialog(
+            Project project,
+            ProgressIndicator indicator,
+            Function<ProgressIndicator, List<CompilerDiagnostic>> refreshAction,
+            @org.jetbrains.annotations.Nullable Runnable abortCommitAction
+        ) {
+            this.project = project;
+            this.indicator = indicator;
+            this.refreshAction = refreshAction;
+            this.abortCommitAction = abortCommitAction;
+        }
+
+        @Override
+        public void onProgress(@NotNull List<CompilerDiagnostic> soFar, double fraction) {
+            this.latest = soFar;
+            this.fraction = fraction;
+            CompilationErrorService.getInstance(project).publishPartial(soFar, fraction);
+            indicator.setText2(soFar.size() + " compilation error(s) so far");
+            if (fraction >= 0) {
+                indicator.setIndeterminate(false);
+                indicator.setFraction(fraction);
+            }
+            if (soFar.isEmpty()) return;
+            if (!opened) {
+                opened = true;
+                open();
+            } else {
+                // Pure list-model update; safe under whatever modal dialog is showing.
+                ApplicationManager.getApplication().invokeLater(this::sync, ModalityState.any());
+            }
+        }
+
+        @Override
+        public boolean isAbandoned() {
+            return !finished && closed.getCount() == 0;
+        }
+
+        /**
+         * Hands the final result to the dialog and waits for the user's decision. Returns
+         * {@code null} if no dialog was opened (the caller then shows the regular one).
+         */
+        @org.jetbrains.annotations.Nullable Boolean finish(@NotNull List<CompilerDiagnostic> errors) {
+            if (!opened) return null;
+            latest = errors;
+            finished = true;
+            ApplicationManager.getApplication().invokeLater(this::sync, ModalityState.any());
+            try {
+                closed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            return accepted;
+        }
+
+        private void open() {
+            ModalityState modality = indicator.getModalityState();
+            if (modality == null) {
+                modality = ModalityState.defaultModalityState();
+            }
+            ApplicationManager.getApplication().invokeLater(() -> {
+                if (project.isDisposed() || (finished && latest.isEmpty())) {
+                    accepted = !project.isDisposed();
+                    closed.countDown();
+                    return;
+                }
+                dialog = new CompilationReportDialog(
+                    project, BLOCKED_TITLE, STREAMING_HEADER,
+                    Collections.emptyList(), refreshAction, abortCommitAction
+                );
+                sync();
+                accepted = dialog.showAndGet();
+                closed.countDown();
+            }, modality);
+        }
+
+        private void sync() {
+            CompilationReportDialog d = dialog;
+            if (d == null || d.isDisposed()) return;
+            if (finished) {
+                d.finishLive(latest, BLOCKED_HEADER);
+            } else {
+                d.updateLive(latest, fraction);
+            }
+        }
+    }
+
+    /** Mutable result of the path-collection phase, before VFS resolution. */
+    private static final class ChangeAccumulator {
+        private final Set<String> sourcePaths = new LinkedHashSet<>();
+        // Repository root -> base revision of its net diff ("" if unknown), and paths new since it.
+        private final Map<String, String> baseByRoot = new HashMap<>();
+        private final Set<String> addedPaths = new HashSet<>();
+        private boolean hasRelevantChanges;
+        private boolean requiresProjectBuild;
+    }
+
+    static final class PushChangeSet {
         private final List<VirtualFile> sourceFiles;
         private final boolean hasRelevantChanges;
         private final boolean requiresProjectBuild;
 
-        private PushChangeSet(List<VirtualFile> sourceFiles, boolean hasRelevantChanges, boolean requiresProjectBuild) {
+        private final Map<String, String> baseByRoot;
+        private final Set<String> addedPaths;
+        private PushBaseline baseline;
+
+        private PushChangeSet(List<VirtualFile> sourceFiles, ChangeAccumulator changes) {
             this.sourceFiles = sourceFiles;
-            this.hasRelevantChanges = hasRelevantChanges;
-            this.requiresProjectBuild = requiresProjectBuild;
+            this.hasRelevantChanges = changes.hasRelevantChanges;
+            this.requiresProjectBuild = changes.requiresProjectBuild;
+            this.baseByRoot = changes.baseByRoot;
+            this.addedPaths = changes.addedPaths;
         }
 
-        private List<VirtualFile> getSourceFiles() {
+        /** Base texts of the pushed sources, fetched with git on first use. */
+        synchronized PushBaseline baseline() {
+            if (baseline == null) {
+                List<String> paths = new ArrayList<>(sourceFiles.size());
+                for (VirtualFile f : sourceFiles) {
+                    paths.add(f.getPath());
+                }
+                baseline = Registry.is("prepushchecker.scope.references", true)
+                    ? PushBaseline.fetch(baseByRoot, paths, addedPaths)
+                    : PushBaseline.UNKNOWN;
+            }
+            return baseline;
+        }
+
+        List<VirtualFile> getSourceFiles() {
             return sourceFiles;
         }
 
-        private boolean hasRelevantChanges() {
+        boolean hasRelevantChanges() {
             return hasRelevantChanges;
         }
 
-        private boolean requiresProjectBuild() {
+        boolean requiresProjectBuild() {
             return requiresProjectBuild;
         }
+
+        /** The scope this push is compiled with, which a reused verdict must cover. */
+        VerdictScope.Kind verdictScope() {
+            return requiresProjectBuild ? VerdictScope.Kind.PROJECT : VerdictScope.Kind.PUSH;
+        }
     }
 }
@@ -1,190 +1,174 @@
 package com.github.prepushchecker;
 
-import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ModalityState;
 import com.intellij.openapi.compiler.CompileScope;
 import com.intellij.openapi.compiler.CompilerManager;
 import com.intellij.openapi.compiler.CompilerMessageCategory;
+import com.intellij.openapi.components.Service;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.startup.StartupActivity;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.registry.Registry;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.problems.WolfTheProblemSolver;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.net.InetAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * Per-project TCP-loopback server that lets external git clients (terminal, Sublime Merge, …)
- * reuse the IDE's incremental JPS compiler instead of spawning a full Gradle/Maven build.
+ * The per-project half of the external-hook fast path: runs the checks that
+ * {@link CompileGateway} routes to this project and streams their result into the
+ * {@link ServerReply}.
  *
- * <p>Protocol (line-delimited, UTF-8):
- * <pre>
- *   C -> S : CHECK\n
- *   S -> C : OK\n                              (compile succeeded)
- *           | ERRORS &lt;n&gt;\n&lt;line&gt;...\nEND\n    (n errors follow)
- *           | ERR &lt;reason&gt;\n                   (server could not run the check)
- * </pre>
- *
- * <p>The server binds to {@code 127.0.0.1} on an ephemeral port and writes the port to
- * {@link #PORT_FILE_RELATIVE}. When the IDE is closed the port file is removed and the hook
- * silently falls back to the build-tool path.
+ * <p>Checks run concurrently. A {@code CHECK} whose files are all part of a check already
+ * running (or a project check arriving while one runs) waits for that check's result instead
+ * of starting another make. Its result may then list errors of the other request's files too,
+ * which only makes it stricter.
  */
-public final class PrePushLocalServer implements Disposable {
-    static final String PORT_FILE_RELATIVE = ".idea/pre-push-checker/server.port";
+@Service(Service.Level.PROJECT)
+public final class PrePushLocalServer {
     private static final Logger LOG = Logger.getInstance(PrePushLocalServer.class);
     private static final long COMPILE_TIMEOUT_SECONDS = 300L;
-    private static final int BACKLOG = 4;
-    private static final int CLIENT_SO_TIMEOUT_MS = 5 * 60 * 1000;
+    private static final long WAIT_SLICE_MILLIS = 250L;
 
     private final Project project;
-    private final AtomicBoolean started = new AtomicBoolean(false);
-    private volatile ServerSocket server;
-    private volatile Thread acceptThread;
-    private volatile Path portFile;
+    // Checks currently running, which overlapping requests attach to. Guarded by itself.
+    private final List<InFlight> inFlight = new ArrayList<>();
 
     public PrePushLocalServer(@NotNull Project project) {
         this.project = project;
     }
 
-    void start() {
-        if (project.isDisposed() || !started.compareAndSet(false, true)) return;
-        String basePath = project.getBasePath();
-        if (basePath == null || basePath.isBlank()) return;
+    public static PrePushLocalServer getInstance(@NotNull Project project) {
+        return project.getService(PrePushLocalServer.class);
+    }
 
+    /** Checks {@code requestedPaths} (the whole project if empty) and writes the verdict to {@code reply}. */
+    void check(@NotNull List<String> requestedPaths, @NotNull ServerReply reply) {
+        if (project.isDisposed()) {
+            reply.fail("project-disposed");
+            return;
+        }
+        CheckTimings.Trace trace = CheckTimings.getInstance(project).start("server");
         try {
-            ServerSocket s = new ServerSocket(0, BACKLOG, InetAddress.getLoopbackAddress());
-            server = s;
-            portFile = Path.of(basePath, PORT_FILE_RELATIVE);
-            Files.createDirectories(portFile.getParent());
-            Files.writeString(portFile, s.getLocalPort() + "\n", StandardCharsets.UTF_8);
-
-            Thread t = new Thread(this::acceptLoop, "PrePushChecker-Server-" + project.getName());
-            t.setDaemon(true);
-            t.start();
-            acceptThread = t;
-
-            LOG.info("PrePushLocalServer listening on 127.0.0.1:" + s.getLocalPort()
-                + " for project '" + project.getName() + "'");
-        } catch (IOException ex) {
-            LOG.warn("Could not start local pre-push server; external hook will fall back to build tool.", ex);
-            started.set(false);
+            InFlight done = check(requestedPaths, trace, reply);
+            reply.finish(done.result.join(), done.failure);
+            trace.phase("respond");
+        } finally {
+            trace.finish();
         }
     }
 
-    private void acceptLoop() {
-        ServerSocket s = server;
-        while (s != null && !s.isClosed() && !Thread.currentThread().isInterrupted()) {
-            try {
-                Socket socket = s.accept();
-                socket.setSoTimeout(CLIENT_SO_TIMEOUT_MS);
-                handleClient(socket);
-            } catch (IOException e) {
-                if (s.isClosed()) return;
-                LOG.debug("Accept failed", e);
-            } catch (Throwable t) {
-                LOG.warn("Unexpected error in accept loop", t);
+    /**
+     * Runs the check for {@code requestedPaths}, or waits for a running check that covers
+     * them. Returns that check once its result is known; see {@link InFlight#failure}.
+     */
+    private @NotNull InFlight check(
+        List<String> requestedPaths,
+        CheckTimings.Trace trace,
+        ServerReply reply
+    ) {
+        Set<String> paths = new HashSet<>(normalizePaths(requestedPaths));
+        InFlight own;
+        InFlight covering = null;
+        synchronized (inFlight) {
+            for (InFlight running : inFlight) {
+                if (running.covers(paths)) {
+                    covering = running;
+                    break;
+                }
             }
+            own = covering == null ? new InFlight(paths) : null;
+            if (own != null) inFlight.add(own);
+            (covering != null ? covering : own).replies.add(reply);
+        }
+        if (covering != null) {
+            LOG.info("Attaching external pre-push check of " + paths.size() + " file(s) to the running check.");
+            reply.cache("coalesced");
+            List<CompilerDiagnostic> result = covering.result.join();
+            trace.phase("coalesced");
+            trace.verdict("coalesced", result != null ? result.size() : -1);
+            return covering;
         }
-    }
-
-    private void handleClient(Socket socket) {
-        try (Socket c = socket;
-             BufferedReader in = new BufferedReader(new InputStreamReader(c.getInputStream(), StandardCharsets.UTF_8));
-             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(c.getOutputStream(), StandardCharsets.UTF_8))) {
-
-            String line = in.readLine();
-            if (line == null || !line.startsWith("CHECK")) {
-                out.write("ERR unknown-request\n");
-                out.flush();
-                return;
-            }
-            // Read optional list of absolute file paths (one per line) until a blank line or EOF.
-            List<String> requestedPaths = new ArrayList<>();
-            while ((line = in.readLine()) != null) {
-                String trimmed = line.trim();
-                if (trimmed.isEmpty()) break;
-                requestedPaths.add(trimmed);
-            }
-
-            if (project.isDisposed()) {
-                out.write("ERR project-disposed\n");
-                out.flush();
-                return;
-            }
 
-            List<String> errors = runCompile(requestedPaths);
-            if (errors == null) {
-                out.write("ERR compile-timeout\n");
-            } else if (errors.isEmpty()) {
-                out.write("OK\n");
-            } else {
-                out.write("ERRORS " + errors.size() + "\n");
-                for (String e : errors) {
-                    out.write(e.replace('\r', ' ').replace('\n', ' '));
-                    out.write('\n');
-                }
-                out.write("END\n");
+        List<CompilerDiagnostic> result = null;
+        try {
+            result = runCompile(requestedPaths, trace, own);
+            return own;
+        } finally {
+            synchronized (inFlight) {
+                inFlight.remove(own);
             }
-            out.flush();
-        } catch (IOException e) {
-            LOG.debug("Client handling failed", e);
+            own.result.complete(result);
         }
     }
 
-    private List<String> runCompile(List<String> requestedPaths) {
-        CountDownLatch latch = new CountDownLatch(1);
-        AtomicReference<List<String>> errorsRef = new AtomicReference<>(Collections.emptyList());
-        AtomicBoolean fatal = new AtomicBoolean(false);
+    private List<CompilerDiagnostic> runCompile(List<String> requestedPaths, CheckTimings.Trace trace, InFlight sink) {
+        CompilationErrorService svc = CompilationErrorService.getInstance(project);
+        AtomicReference<List<VirtualFile>> resolved = new AtomicReference<>(Collections.emptyList());
+        AtomicReference<List<CompilerDiagnostic>> early = new AtomicReference<>();
+        AtomicReference<CompilationErrorService.Reuse> partialReuse = new AtomicReference<>();
 
-        ApplicationManager.getApplication().invokeLater(() -> {
-            if (project.isDisposed()) {
-                fatal.set(true);
-                latch.countDown();
-                return;
-            }
-            try {
+        // Base revision texts for reference-aware scope planning; git runs here, not on the EDT.
+        PushBaseline baseline = Registry.is("prepushchecker.scope.references", true)
+            ? PushBaseline.fromUpstream(project, normalizePaths(requestedPaths))
+            : PushBaseline.UNKNOWN;
+        trace.phase("baseline");
+
+        // The background verifier is usually compiling exactly this push already.
+        // Bounded: the hook is waiting, and the make below has its own timeout.
+        SpeculativePushCheck.getInstance(project).awaitInFlight(
+            null, TimeUnit.SECONDS.toMillis(COMPILE_TIMEOUT_SECONDS));
+        trace.phase("speculativeWait");
+
+        try {
+            ApplicationManager.getApplication().invokeAndWait(() -> {
+                trace.phase("edtWait");
+                if (project.isDisposed()) return;
                 // Narrow, targeted refresh: only the files the hook is actually asking about.
                 // Avoids the (potentially slow) project-wide VirtualFileManager.syncRefresh().
                 FileDocumentManager.getInstance().saveAllDocuments();
-
-                CompilerManager cm = CompilerManager.getInstance(project);
                 List<VirtualFile> files = resolveFiles(requestedPaths);
                 if (!files.isEmpty()) {
                     LocalFileSystem.getInstance().refreshFiles(files);
                 }
+                resolved.set(files);
+                trace.phase("prepare");
 
                 // Reuse a recent compile verdict when nothing has moved on disk. Lets
                 // external pushes piggyback on a just-completed manual check or an
-                // earlier push check without re-running javac.
-                CompilationErrorService svc = CompilationErrorService.getInstance(project);
+                // earlier push check without re-running javac; modules still covered by a
+                // verdict are left out of the make.
                 if (!files.isEmpty()) {
-                    List<String> cached = svc.tryReuse(files);
-                    if (cached != null) {
-                        errorsRef.set(cached);
-                        latch.countDown();
+                    CompilationErrorService.Reuse reuse = svc.reuse(files, VerdictScope.Kind.PUSH, trace);
+                    trace.phase("reuseLookup");
+                    if (reuse.isComplete()) {
+                        sink.cache("hit " + reuse.origin);
+                        early.set(reuse.diagnostics);
                         return;
                     }
+                    if (reuse.remaining.size() < files.size()) {
+                        sink.cache("partial " + (files.size() - reuse.remaining.size()) + "/" + files.size());
+                        partialReuse.set(reuse);
+                    } else {
+                        sink.cache("miss");
+                    }
                 }
 
                 // Fast-fail: if the IDE already has an editor-flagged problem on any pushed
@@ -192,49 +176,102 @@ public final class PrePushLocalServer implements Disposable {
                 // This is essentially free and catches the case where JPS's incremental cache
                 // would have silently declared the file "up-to-date".
                 if (!files.isEmpty()) {
-                    List<String> wolfProblems = collectWolfProblems(files);
+                    List<CompilerDiagnostic> wolfProblems = collectWolfProblems(files);
+                    trace.phase("ideProblems");
                     if (!wolfProblems.isEmpty()) {
-                        svc.recordCompletion(false,
-                            CompilationErrorService.snapshotStamps(files), wolfProblems);
-                        errorsRef.set(wolfProblems);
-                        latch.countDown();
-                        return;
+                        // Shown, but not kept as a verdict: a highlighter flag can be stale, and
+                        // only a compile may fail later pushes of the same content.
+                        trace.verdict("ide-problems", wolfProblems.size());
+                        svc.setErrors(wolfProblems);
+                        early.set(wolfProblems);
                     }
                 }
+            }, ModalityState.defaultModalityState());
+        } catch (Throwable t) {
+            LOG.warn("Preparing the external pre-push check failed", t);
+            return sink.fail("prepare-failed");
+        }
+        if (project.isDisposed()) return sink.fail("project-disposed");
+        if (early.get() != null) return early.get();
 
-                final List<VirtualFile> recordedFiles = files;
-                com.intellij.openapi.compiler.CompileStatusNotification callback =
-                    (aborted, errorCount, warningCount, ctx) -> {
-                        try {
-                            List<String> result;
-                            if (aborted) {
-                                result = Collections.singletonList("Compilation was aborted.");
-                            } else if (errorCount > 0) {
-                                result = PrePushCompilationHandler.formatCompilerMessages(
-                                    project, ctx.getMessages(CompilerMessageCategory.ERROR));
-                            } else {
-                                result = Collections.emptyList();
-                            }
-                            errorsRef.set(result);
-                            if (!aborted) {
-                                svc.recordCompletion(
-                                    recordedFiles.isEmpty(),
-                                    CompilationErrorService.snapshotStamps(recordedFiles),
-                                    result);
-                            }
-                        } finally {
-                            latch.countDown();
-                        }
-                    };
+        // Obvious errors in pushed files the daemon never analysed, before any make.
+        List<CompilerDiagnostic> preflight = HighlightingPreflight.check(project, resolved.get());
+        trace.phase("preflight");
+        if (!preflight.isEmpty()) {
+            // Shown, but not kept as a verdict: the preflight is a heuristic, not a compile.
+            trace.verdict("preflight", preflight.size());
+            svc.setErrors(preflight);
+            return preflight;
+        }
 
-                if (!files.isEmpty()) {
-                    // Same adaptive scope as the in-IDE push path: include dependent modules so
-                    // JPS cannot miss A-depends-on-B breakage, but keep it incremental.
-                    CompileScope scope = PrePushCompilationHandler.buildPushScopeForExternal(project, files, cm);
-                    cm.make(scope, callback);
-                } else {
-                    cm.make(cm.createProjectCompileScope(project), callback);
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<List<CompilerDiagnostic>> errorsRef = new AtomicReference<>(Collections.emptyList());
+        AtomicBoolean fatal = new AtomicBoolean(false);
+        AtomicReference<CompilationErrorService.CompileStart> started = new AtomicReference<>();
+        CompilationErrorService.Reuse reused = partialReuse.get();
+        List<VirtualFile> files = reused != null ? reused.remaining : resolved.get();
+        int failFast = LiveCompileMonitor.failFastThreshold();
+        LiveCompileMonitor.Session session = null;
+        CompileScope scope;
+        long timeoutMillis;
+        CompilerManager cm = CompilerManager.getInstance(project);
+        try {
+            // Same adaptive scope as the in-IDE push path: referencing files or dependent
+            // modules, so JPS cannot miss A-depends-on-B breakage, but kept incremental.
+            // Computed here because the reference search must not run on the EDT.
+            scope = files.isEmpty()
+                ? cm.createProjectCompileScope(project)
+                : PrePushCompilationHandler.buildPushScopeForExternal(project, files, baseline, cm);
+            // Observed even without fail-fast, so the wait below can tell slow from hung.
+            // Errors and progress go to v2 clients as they arrive, with the reused ones first.
+            List<CompilerDiagnostic> reusedErrors = reused != null ? reused.diagnostics : Collections.emptyList();
+            sink.progress(reusedErrors, -1);
+            session = LiveCompileMonitor.attach(project, scope,
+                (soFar, fraction) -> sink.progress(soFar, fraction));
+            Module[] affected = ApplicationManager.getApplication().runReadAction(
+                (Computable<Module[]>) scope::getAffectedModules);
+            timeoutMillis = CompileHistory.getInstance(project).timeoutMillis(
+                Arrays.asList(affected), TimeUnit.SECONDS.toMillis(COMPILE_TIMEOUT_SECONDS));
+            trace.phase("scope");
+        } catch (Throwable t) {
+            LOG.warn("Planning the external pre-push compile scope failed", t);
+            if (session != null) session.close();
+            return sink.fail("planning-failed");
+        }
+
+        com.intellij.openapi.compiler.CompileStatusNotification callback =
+            (aborted, errorCount, warningCount, ctx) -> {
+                try {
+                    List<CompilerDiagnostic> result;
+                    if (aborted) {
+                        result = Collections.singletonList(
+                            CompilerDiagnostic.general("Compilation was aborted."));
+                    } else if (errorCount > 0) {
+                        result = PrePushCompilationHandler.formatCompilerMessages(
+                            project, ctx.getMessages(CompilerMessageCategory.ERROR));
+                    } else {
+                        result = Collections.emptyList();
+                    }
+                    errorsRef.set(result);
+                    trace.verdict(aborted ? "aborted" : "compile", result.size());
+                    if (!aborted) {
+                        svc.recordCompletion(scopeKind(files), files, result, "server", started.get());
+                    }
+                } finally {
+                    latch.countDown();
                 }
+            };
+
+        ApplicationManager.getApplication().invokeLater(() -> {
+            trace.phase("edtWait");
+            if (project.isDisposed()) {
+                fatal.set(true);
+                latch.countDown();
+                return;
+            }
+            try {
+                started.set(svc.compileStart(files));
+                cm.make(scope, callback);
             } catch (Throwable t) {
                 LOG.warn("CompilerManager compile/make failed", t);
                 fatal.set(true);
@@ -242,23 +279,75 @@ public final class PrePushLocalServer implements Disposable {
             }
         }, ModalityState.defaultModalityState());
 
+        // Past the deadline a build that still reports progress keeps going, up to the ceiling.
+        long startNanos = System.nanoTime();
+        long deadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long ceilingNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(
+            Math.max(timeoutMillis, CompileHistory.MAX_TIMEOUT_MILLIS));
         try {
-            if (!latch.await(COMPILE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) return null;
+            while (!latch.await(WAIT_SLICE_MILLIS, TimeUnit.MILLISECONDS)) {
+                boolean alive = session.pump();
+                long now = System.nanoTime();
+                if (now - deadlineNanos >= 0
+                        && (now - ceilingNanos >= 0 || !session.isActiveWithin(LiveCompileMonitor.STALL_MILLIS))) {
+                    LOG.info("External pre-push compile stalled past its " + timeoutMillis + " ms deadline.");
+                    trace.verdict("timeout", -1);
+                    return sink.fail("compile-timeout");
+                }
+                if (alive && failFast > 0 && session.errorCount() >= failFast) {
+                    // The canceled make reports "aborted", so its callback records nothing;
+                    // the partial result is recorded here and never persisted.
+                    List<CompilerDiagnostic> partial = session.stopEarly();
+                    LOG.info("Fail-fast after " + session.errorCount() + " error(s) for external push.");
+                    trace.verdict("compile:fail-fast", partial.size());
+                    svc.recordCompletion(scopeKind(files), files, partial, "server", started.get());
+                    return withReused(reused, partial);
+                }
+            }
         } catch (InterruptedException ie) {
             Thread.currentThread().interrupt();
-            return null;
+            return sink.fail("interrupted");
+        } finally {
+            session.close();
+            trace.phase("jps");
+        }
+        if (fatal.get()) return sink.fail(project.isDisposed() ? "project-disposed" : "make-failed");
+        return withReused(reused, errorsRef.get());
+    }
+
+    /** Adds the diagnostics of the modules answered from cache, and shows the merged list. */
+    private List<CompilerDiagnostic> withReused(
+        @Nullable CompilationErrorService.Reuse reused,
+        List<CompilerDiagnostic> compiled
+    ) {
+        if (reused == null || reused.diagnostics.isEmpty()) return compiled;
+        List<CompilerDiagnostic> merged = reused.merge(compiled);
+        CompilationErrorService.getInstance(project).setErrors(merged);
+        return merged;
+    }
+
+    /** Without a file list the server compiles the whole project. */
+    private static VerdictScope.Kind scopeKind(List<VirtualFile> files) {
+        return files.isEmpty() ? VerdictScope.Kind.PROJECT : VerdictScope.Kind.PUSH;
+    }
+
+    private static List<String> normalizePaths(List<String> paths) {
+        List<String> out = new ArrayList<>(paths.size());
+        for (String p : paths) {
+            if (p != null && !p.isBlank()) out.add(p.trim().replace('\\', '/'));
         }
-        return fatal.get() ? null : errorsRef.get();
+        return out;
     }
 
-    private List<String> collectWolfProblems(List<VirtualFile> files) {
+    private List<CompilerDiagnostic> collectWolfProblems(List<VirtualFile> files) {
         WolfTheProblemSolver wolf = WolfTheProblemSolver.getInstance(project);
-        List<String> out = new ArrayList<>();
+        List<CompilerDiagnostic> out = new ArrayList<>();
         for (VirtualFile f : files) {
             if (wolf.isProblemFile(f)) {
-                out.add("[" + PrePushCompilationHandler.toDisplayPath(project, f)
-                    + "] Unresolved references / compilation problems reported by IDE. "
-                    + "Open the file to see the red-flagged issues.");
+                out.add(CompilerDiagnostic.fileProblem(
+                    PrePushCompilationHandler.toDisplayPath(project, f), null,
+                    "Unresolved references / compilation problems reported by IDE. "
+                        + "Open the file to see the red-flagged issues."));
             }
         }
         return out;
@@ -285,29 +374,38 @@ public final class PrePushLocalServer implements Disposable {
         return out;
     }
 
-    @Override
-    public void dispose() {
-        started.set(false);
-        ServerSocket s = server;
-        server = null;
-        if (s != null) {
-            try { s.close(); } catch (IOException ignored) {}
+    /**
+     * A running check, the requested paths it answers (none for a project check) and the
+     * replies of every client waiting for it.
+     */
+    private static final class InFlight {
+        final Set<String> paths;
+        // Completed with null if the check could not complete, for the reason in `failure`.
+        final CompletableFuture<List<CompilerDiagnostic>> result = new CompletableFuture<>();
+        final List<ServerReply> replies = new CopyOnWriteArrayList<>();
+        volatile String failure = "check-failed";
+
+        InFlight(Set<String> paths) {
+            this.paths = paths;
         }
-        Thread t = acceptThread;
-        if (t != null) t.interrupt();
-        Path p = portFile;
-        if (p != null) {
-            try { Files.deleteIfExists(p); } catch (IOException ignored) {}
+
+        boolean covers(Set<String> requested) {
+            if (paths.isEmpty()) return true;
+            return !requested.isEmpty() && paths.containsAll(requested);
+        }
+
+        /** Records why the check could not complete; returns {@code null} for the caller to return. */
+        @Nullable List<CompilerDiagnostic> fail(String reason) {
+            failure = reason;
+            return null;
+        }
+
+        void cache(String marker) {
+            for (ServerReply reply : replies) reply.cache(marker);
         }
-    }
 
-    /** Starts the per-project server on project open. */
-    public static final class Starter implements StartupActivity {
-        @Override
-        public void runActivity(@NotNull Project project) {
-            PrePushLocalServer srv = new PrePushLocalServer(project);
-            srv.start();
-            com.intellij.openapi.util.Disposer.register(project, srv);
+        void progress(List<CompilerDiagnostic> soFar, double fraction) {
+            for (ServerReply reply : replies) reply.progress(soFar, fraction);
         }
     }
 }
@@ -0,0 +1,181 @@
+package com.github.prepushchecker;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vcs.ProjectLevelVcsManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Source text of pushed files as of the push base — what the remote has, and therefore what
+ * every caller was last compiled against. Scope planning diffs a pushed file's API against
+ * this text to find members that were removed or changed signature.
+ *
+ * <p>Texts are fetched up front with one {@code git cat-file --batch} per repository, so no
+ * git process runs inside a read action. A file whose base text could not be determined is
+ * "unknown" and makes the planners fall back to module scope.
+ */
+final class PushBaseline {
+
+    static final PushBaseline UNKNOWN = new PushBaseline(Collections.emptyMap());
+    private static final Logger LOG = Logger.getInstance(PushBaseline.class);
+    private static final byte[] MISSING = " missing".getBytes(StandardCharsets.US_ASCII);
+
+    // Absolute path -> text at the base; "" if the file did not exist there.
+    private final Map<String, String> textByPath;
+
+    private PushBaseline(Map<String, String> textByPath) {
+        this.textByPath = textByPath;
+    }
+
+    /**
+     * Fetches the base text of {@code paths} (absolute, {@code /}-separated).
+     * {@code baseByRoot} maps repository root paths to the base revision of the push; files
+     * under a root without one (or mapped to {@code ""}) stay unknown. Paths in
+     * {@code addedPaths} did not exist at the base and are not looked up.
+     */
+    static @NotNull PushBaseline fetch(
+        @NotNull Map<String, String> baseByRoot,
+        @NotNull Collection<String> paths,
+        @NotNull Set<String> addedPaths
+    ) {
+        if (paths.isEmpty() || baseByRoot.isEmpty()) return UNKNOWN;
+        Map<String, String> texts = new HashMap<>(paths.size() * 2);
+        Map<String, List<String>> byRoot = new LinkedHashMap<>();
+        for (String path : paths) {
+            if (addedPaths.contains(path)) {
+                texts.put(path, "");
+                continue;
+            }
+            String root = rootOf(baseByRoot.keySet(), path);
+            if (root != null) {
+                byRoot.computeIfAbsent(root, r -> new ArrayList<>()).add(path);
+            }
+        }
+        for (Map.Entry<String, List<String>> e : byRoot.entrySet()) {
+            String revision = baseByRoot.get(e.getKey());
+            if (revision != null && !revision.isEmpty()) {
+                catFile(e.getKey(), revision, e.getValue(), texts);
+            }
+        }
+        return new PushBaseline(texts);
+    }
+
+    /**
+     * Baseline for a push that only names its files (the external hook): the base of each
+     * repository is the merge-base of {@code HEAD} and its upstream. Repositories without an
+     * upstream stay unknown.
+     */
+    static @NotNull PushBaseline fromUpstream(@NotNull Project project, @NotNull Collection<String> paths) {
+        if (paths.isEmpty() || project.isDisposed()) return UNKNOWN;
+        List<String> roots = new ArrayList<>();
+        for (VirtualFile root : ProjectLevelVcsManager.getInstance(project).getAllVersionedRoots()) {
+            roots.add(root.getPath());
+        }
+        Map<String, String> baseByRoot = new HashMap<>();
+        for (String path : paths) {
+            String root = rootOf(roots, path);
+            if (root == null || baseByRoot.containsKey(root)) continue;
+            String base = GitHookInstaller.runGit(root, "merge-base", "HEAD", "@{upstream}");
+            if (base != null && !base.isEmpty()) {
+                baseByRoot.put(root, base);
+            }
+        }
+        return fetch(baseByRoot, paths, Collections.emptySet());
+    }
+
+    /** Text of {@code file} at the base, {@code ""} if it did not exist, or {@code null} if unknown. */
+    @Nullable String textBefore(@NotNull VirtualFile file) {
+        return textByPath.get(file.getPath());
+    }
+
+    private static @Nullable String rootOf(Collection<String> roots, String path) {
+        String best = null;
+        for (String root : roots) {
+            if (path.startsWith(root + "/") && (best == null || root.length() > best.length())) {
+                best = root;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Reads {@code revision:path} for every path through one {@code git cat-file --batch},
+     * one request at a time so neither pipe can fill up. Missing objects map to {@code ""};
+     * on any failure the remaining paths stay unknown.
+     */
+    private static void catFile(String root, String revision, List<String> paths, Map<String, String> out) {
+        Process process;
+        try {
+            process = new ProcessBuilder("git", "cat-file", "--batch")
+                .directory(new File(root))
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        } catch (IOException e) {
+            LOG.debug("Could not start git cat-file in " + root, e);
+            return;
+        }
+        try (OutputStream stdin = process.getOutputStream();
+             InputStream stdout = new BufferedInputStream(process.getInputStream())) {
+            for (String path : paths) {
+                String spec = revision + ":" + path.substring(root.length() + 1);
+                stdin.write((spec + "\n").getBytes(StandardCharsets.UTF_8));
+                stdin.flush();
+
+                byte[] header = readLine(stdout);
+                if (header == null) return;
+                if (endsWith(header, MISSING)) {
+                    out.put(path, "");
+                    continue;
+                }
+                // "<oid> <type> <size>"
+                String[] parts = new String(header, StandardCharsets.US_ASCII).split(" ");
+                int size = Integer.parseInt(parts[parts.length - 1]);
+                byte[] body = stdout.readNBytes(size);
+                if (body.length != size || stdout.read() != '\n') return;
+                if ("blob".equals(parts[1])) {
+                    out.put(path, new String(body, StandardCharsets.UTF_8));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.debug("git cat-file failed in " + root, e);
+        } finally {
+            process.destroy();
+        }
+    }
+
+    private static byte @Nullable [] readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') return line.toByteArray();
+            line.write(b);
+        }
+        return null;
+    }
+
+    private static boolean endsWith(byte[] bytes, byte[] suffix) {
+        if (bytes.length < suffix.length) return false;
+        for (int i = 0; i < suffix.length; i++) {
+            if (bytes[bytes.length - suffix.length + i] != suffix[i]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,231 @@
+package com.github.prepushchecker;
+
+import com.intellij.lang.injection.InjectedLanguageManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiClassOwner;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiMember;
+import com.intellij.psi.PsiModifier;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.PsiSearchHelper;
+import com.intellij.psi.search.searches.ReferencesSearch;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plans a file-level compile scope from the references that actually exist: the pushed files
+ * plus every project source file that references a non-private class or member declared in
+ * them. A push into a widely used module then compiles its real callers — not every
+ * dependent module, and not just the pushed files.
+ *
+ * <ul>
+ *   <li>Each pushed file's {@link ApiSurface} is diffed against its {@link PushBaseline}
+ *       text first. If no file's API changed (body-only, private-member or comment edits,
+ *       the common case) nothing outside the pushed files can break, and the plan is the
+ *       empty set without a single search. With {@code prepushchecker.scope.abi} disabled,
+ *       every non-private member is searched regardless.</li>
+ *   <li>Changed declarations are searched with {@link ReferencesSearch}. The Java plugin
+ *       narrows those searches through the compiler reference index when it is built, so
+ *       most of them never touch the word index. An added or changed abstract member also
+ *       searches its class, whose subclasses may now fail to implement it. So does a new
+ *       enum constant, {@code sealed}/{@code permits} clause or overload, which changes the
+ *       class's own {@link ApiSurface} key.</li>
+ *   <li>Members that were removed or changed signature have no PSI left to search from;
+ *       files mentioning their name are added instead.</li>
+ *   <li>The search is bounded by {@code prepushchecker.scope.references.budgetMs} and
+ *       {@code prepushchecker.scope.references.maxFiles}. Running out, dumb mode, an unknown
+ *       baseline or a file PSI cannot analyse make the plan inconclusive ({@code null}),
+ *       and the caller keeps its module-scope policy.</li>
+ * </ul>
+ *
+ * <p>{@link #plan} runs the search in a non-blocking read action: a pending write action
+ * restarts it instead of waiting for it, and a watchdog cancels it once the budget is spent,
+ * also while the searches find nothing. Call it off the EDT, outside any read action.
+ */
+final class ReferenceScopePlanner {
+
+    private static final Logger LOG = Logger.getInstance(ReferenceScopePlanner.class);
+    private static final long WATCHDOG_MILLIS = 50L;
+
+    private ReferenceScopePlanner() {
+    }
+
+    /**
+     * Files outside {@code pushed} that reference its API, or {@code null} if inconclusive,
+     * including when the budget runs out. Rethrows the cancellation of the calling thread's
+     * progress indicator.
+     */
+    static @Nullable Set<VirtualFile> plan(
+        @NotNull Project project,
+        @NotNull Collection<VirtualFile> pushed,
+        @NotNull PushBaseline baseline
+    ) {
+        if (pushed.isEmpty() || !Registry.is("prepushchecker.scope.references", true)) return null;
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(
+            Registry.intValue("prepushchecker.scope.references.budgetMs", 3000));
+        ProgressIndicator caller = ProgressManager.getInstance().getProgressIndicator();
+        ProgressIndicator search = new EmptyProgressIndicator();
+        ScheduledFuture<?> watchdog = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(() -> {
+            if (System.nanoTime() - deadlineNanos >= 0 || (caller != null && caller.isCanceled())) search.cancel();
+        }, WATCHDOG_MILLIS, WATCHDOG_MILLIS, TimeUnit.MILLISECONDS);
+        try {
+            return ReadAction.nonBlocking(() -> findReferencingFiles(project, pushed, baseline, deadlineNanos))
+                .expireWith(project)
+                .wrapProgress(search)
+                .executeSynchronously();
+        } catch (ProcessCanceledException e) {
+            if (caller != null && caller.isCanceled()) throw e;
+            return inconclusive(project.isDisposed() ? "project closed" : "time budget exhausted");
+        } finally {
+            watchdog.cancel(false);
+        }
+    }
+
+    private static @Nullable Set<VirtualFile> findReferencingFiles(
+        Project project,
+        Collection<VirtualFile> pushed,
+        PushBaseline baseline,
+        long deadlineNanos
+    ) {
+        if (DumbService.isDumb(project)) return inconclusive("indexes are not ready");
+
+        long startNanos = System.nanoTime();
+        Collector collector = new Collector(
+            project,
+            pushed,
+            Registry.intValue("prepushchecker.scope.references.maxFiles", 500),
+            deadlineNanos);
+        PsiManager psiManager = PsiManager.getInstance(project);
+        boolean changedOnly = Registry.is("prepushchecker.scope.abi", true);
+
+        // Members whose references matter, and names of members that no longer exist.
+        Set<PsiMember> searchMembers = new LinkedHashSet<>();
+        Set<String> searchNames = new LinkedHashSet<>();
+        for (VirtualFile vf : pushed) {
+            ProgressManager.checkCanceled();
+            String before = baseline.textBefore(vf);
+            if (before == null) return inconclusive("no base revision for " + vf.getName());
+            PsiFile file = psiManager.findFile(vf);
+            if (!(file instanceof PsiClassOwner)) return inconclusive("cannot analyse " + vf.getName());
+            PsiClass[] classes = ((PsiClassOwner) file).getClasses();
+            Map<String, String> beforeApi = ApiSurface.parse(project, vf, before, classes.length > 0);
+            if (beforeApi == null) return inconclusive("cannot analyse the base of " + vf.getName());
+
+            List<PsiMember> members = new ArrayList<>();
+            for (PsiClass cls : classes) {
+                ApiSurface.collectMembers(cls, members);
+            }
+            Set<String> currentKeys = new HashSet<>(members.size() * 2);
+            for (PsiMember member : members) {
+                String key = ApiSurface.key(member);
+                currentKeys.add(key);
+                if (changedOnly && beforeApi.containsKey(key) && ApiSurface.isResolved(key)) continue;
+                searchMembers.add(member);
+                PsiClass owner = member.getContainingClass();
+                if (owner != null && member.hasModifierProperty(PsiModifier.ABSTRACT)) {
+                    searchMembers.add(owner);
+                }
+            }
+            for (Map.Entry<String, String> old : beforeApi.entrySet()) {
+                if (!currentKeys.contains(old.getKey())) searchNames.add(old.getValue());
+            }
+        }
+        if (searchMembers.isEmpty() && searchNames.isEmpty()) {
+            LOG.info("Pre-push: API of " + pushed.size() + " pushed file(s) unchanged since the push base; "
+                + "no callers to recompile (" + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)
+                + " ms).");
+            return Collections.emptySet();
+        }
+
+        PsiSearchHelper words = PsiSearchHelper.getInstance(project);
+        GlobalSearchScope scope = GlobalSearchScope.projectScope(project);
+        for (PsiMember member : searchMembers) {
+            if (!ReferencesSearch.search(member, scope).forEach(ref -> collector.add(ref.getElement()))) {
+                return inconclusive(collector.reason());
+            }
+        }
+        for (String name : searchNames) {
+            if (!words.processAllFilesWithWord(name, scope, collector::add, true)) {
+                return inconclusive(collector.reason());
+            }
+        }
+
+        int searches = searchMembers.size() + searchNames.size();
+        LOG.info("Pre-push: " + searches + " reference search(es) over " + pushed.size()
+            + " pushed file(s) found " + collector.files.size() + " referencing file(s) in "
+            + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) + " ms.");
+        return collector.files;
+    }
+
+    private static @Nullable Set<VirtualFile> inconclusive(String reason) {
+        LOG.info("Pre-push: reference scope not used (" + reason + ").");
+        return null;
+    }
+
+    private static final class Collector {
+        private final Project project;
+        private final ProjectFileIndex index;
+        private final Set<VirtualFile> pushed;
+        private final int maxFiles;
+        private final long deadlineNanos;
+        private final Set<VirtualFile> files = ConcurrentHashMap.newKeySet();
+        private volatile String reason = "search stopped";
+
+        Collector(Project project, Collection<VirtualFile> pushed, int maxFiles, long deadlineNanos) {
+            this.project = project;
+            this.index = ProjectFileIndex.getInstance(project);
+            this.pushed = new HashSet<>(pushed);
+            this.maxFiles = maxFiles;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /** Records the source file containing {@code element}; {@code false} stops the search. */
+        boolean add(PsiElement element) {
+            if (System.nanoTime() - deadlineNanos > 0) {
+                reason = "time budget exhausted";
+                return false;
+            }
+            PsiFile file = InjectedLanguageManager.getInstance(project).getTopLevelFile(element);
+            VirtualFile vf = file != null ? file.getVirtualFile() : null;
+            if (vf == null || pushed.contains(vf) || !index.isInSourceContent(vf)
+                    || !PushValidationPaths.isCompilableSource(vf.getPath())) {
+                return true;
+            }
+            if (files.add(vf) && files.size() > maxFiles) {
+                reason = "more than " + maxFiles + " referencing files";
+                return false;
+            }
+            return true;
+        }
+
+        String reason() {
+            return reason;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.github.prepushchecker;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.Set;
+
+/**
+ * Where {@link CompileGateway} listens and how a client proves it is the installed hook.
+ *
+ * <p>Everything private lives in a per-user directory with mode {@code 0700}: under
+ * {@code $XDG_RUNTIME_DIR} when set, else under the temp directory; without POSIX
+ * permissions (Windows), in the IDE's system directory in the user profile. It holds the
+ * gateway's Unix-domain socket, which only the user can connect to, and its registry with the
+ * session token, readable only by the user. The token changes on every IDE start and must be
+ * sent with every {@code CHECK}, over either transport, so other local processes (port
+ * scanners included) cannot trigger compiles through the loopback TCP port.
+ */
+final class ServerEndpoint {
+
+    private static final Logger LOG = Logger.getInstance(ServerEndpoint.class);
+    private static final Set<PosixFilePermission> OWNER_ONLY_DIR = PosixFilePermissions.fromString("rwx------");
+    private static final Set<PosixFilePermission> OWNER_ONLY_FILE = PosixFilePermissions.fromString("rw-------");
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final int TOKEN_BYTES = 32;
+
+    private ServerEndpoint() {
+    }
+
+    /**
+     * The per-user private directory, created if needed. Fails if it exists with another
+     * owner or as a symbolic link.
+     */
+    static @NotNull Path privateDirectory() throws IOException {
+        String runtime = System.getenv("XDG_RUNTIME_DIR");
+        Path base = runtime != null && !runtime.isBlank()
+            ? Path.of(runtime)
+            : Path.of(System.getProperty("java.io.tmpdir"));
+        Path dir = base.resolve("prepushchecker-" + System.getProperty("user.name"));
+        try {
+            Files.createDirectory(dir, PosixFilePermissions.asFileAttribute(OWNER_ONLY_DIR));
+        } catch (FileAlreadyExistsException ignored) {
+            // Verified below.
+        } catch (UnsupportedOperationException e) {
+            Path fallback = Path.of(PathManager.getSystemPath(), "pre-push-checker");
+            Files.createDirectories(fallback);
+            return fallback;
+        }
+
+        PosixFileAttributeView view = Files.getFileAttributeView(dir, PosixFileAttributeView.class,
+            LinkOption.NOFOLLOW_LINKS);
+        if (view == null) throw new IOException("No POSIX permissions for " + dir);
+        PosixFileAttributes attributes = view.readAttributes();
+        if (!attributes.isDirectory()) throw new IOException(dir + " is not a directory");
+        if (!attributes.owner().getName().equals(System.getProperty("user.name"))) {
+            throw new IOException(dir + " is owned by " + attributes.owner().getName());
+        }
+        if (!attributes.permissions().equals(OWNER_ONLY_DIR)) {
+            view.setPermissions(OWNER_ONLY_DIR);
+        }
+        return dir;
+    }
+
+    static @NotNull String newToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        RANDOM.nextBytes(bytes);
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    /** Writes {@code content} to {@code file}, readable by the owner only. */
+    static void writePrivate(@NotNull Path file, @NotNull String content) throws IOException {
+        Files.deleteIfExists(file);
+        try {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(OWNER_ONLY_FILE));
+        } catch (UnsupportedOperationException e) {
+            // Private through the user profile's ACLs; see privateDirectory().
+            Files.createFile(file);
+        }
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Binds a Unix-domain socket at {@code socket}, replacing a stale one, or returns
+     * {@code null} if the platform has none.
+     */
+    static @Nullable ServerSocketChannel bindUnix(@NotNull Path socket, int backlog) {
+        try {
+            Files.deleteIfExists(socket);
+            ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            try {
+                channel.bind(UnixDomainSocketAddress.of(socket), backlog);
+                // Belt and braces: the directory already keeps other users out.
+                Files.setPosixFilePermissions(socket, EnumSet.of(
+                    PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE));
+                return channel;
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            LOG.info("No Unix-domain socket for the pre-push server; serving TCP only.", e);
+            return null;
+        }
+    }
+
+    /**
+     * The token of a request line {@code CHECK <version> <token> [<repository root>]}, or
+     * {@code null} if it has none.
+     */
+    static @Nullable String tokenOf(@NotNull String requestLine) {
+        String[] parts = requestLine.trim().split("\\s+", 4);
+        return parts.length > 2 ? parts[2] : null;
+    }
+
+    /** The repository root of a request line, which may contain spaces, or {@code null}. */
+    static @Nullable String rootOf(@NotNull String requestLine) {
+        String[] parts = requestLine.trim().split("\\s+", 4);
+        return parts.length > 3 ? parts[3] : null;
+    }
+
+    /** Constant-time comparison, so response timing does not leak the token. */
+    static boolean tokenMatches(@NotNull String expected, @Nullable String presented) {
+        if (presented == null) return false;
+        return MessageDigest.isEqual(
+            expected.getBytes(StandardCharsets.UTF_8), presented.getBytes(StandardCharsets.UTF_8));
+    }
+}
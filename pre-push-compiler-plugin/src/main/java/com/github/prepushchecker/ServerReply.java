@@ -0,0 +1,214 @@
+package com.github.prepushchecker;
+
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The answer to one {@code CHECK} of {@link CompileGateway}, in the protocol version the
+ * client asked for.
+ *
+ * <p>Version 1 writes nothing until the verdict is known. Version 2 writes one frame per line,
+ * as things happen:
+ * <pre>
+ *   V 2                          protocol accepted (always first)
+ *   CACHE hit &lt;origin&gt;            the whole verdict comes from the cache
+ *   CACHE partial &lt;n&gt;/&lt;total&gt;     n files answered from the cache, the rest is compiled
+ *   CACHE coalesced              attached to a check of the same files that was already running
+ *   PROGRESS &lt;percent&gt;            build progress
+ *   HEARTBEAT &lt;ms&gt;               every {@link #HEARTBEAT_MS} while the check runs
+ *   DIAG &lt;line&gt;                  an error, as soon as it is known ({@link CompilerDiagnostic#toString()} form)
+ *   DONE OK | DONE ERRORS &lt;n&gt; | DONE ERR &lt;reason&gt;    the verdict, with n errors
+ * </pre>
+ * Errors of the verdict that were not streamed are sent as {@code DIAG} frames right before
+ * {@code DONE}.
+ * Frames the client does not know are to be ignored, so frames can be added without a new
+ * version. Write failures (the client went away) are ignored; the check still completes and
+ * is cached.
+ */
+abstract class ServerReply {
+
+    /** Highest protocol version this server speaks. */
+    static final int MAX_VERSION = 2;
+    static final long HEARTBEAT_MS = 2000L;
+
+    protected final Writer out;
+
+    private ServerReply(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * The reply for a request line {@code CHECK <n> <token>}: the highest version up to
+     * {@code n} this server supports, and version 1 without a version.
+     */
+    static @NotNull ServerReply negotiate(@NotNull String requestLine, @NotNull Writer out) {
+        String[] parts = requestLine.trim().split("\\s+");
+        int version = 1;
+        if (parts.length > 1) {
+            try {
+                version = Math.min(MAX_VERSION, Integer.parseInt(parts[1]));
+            } catch (NumberFormatException ignored) {
+                // Unknown version token: answer in the format every client understands.
+            }
+        }
+        if (version < 2) return new V1(out);
+        V2 reply = new V2(out);
+        reply.frame("V " + version);
+        return reply;
+    }
+
+    /** Reports that the cache answered, or will answer, part of the check. */
+    void cache(@NotNull String marker) {
+    }
+
+    /** Errors known so far (cumulative) and build progress in 0..1, or negative if unknown. */
+    void progress(@NotNull List<CompilerDiagnostic> soFar, double fraction) {
+    }
+
+    /** Writes the verdict; {@code null} errors mean the check could not complete. */
+    abstract void finish(@Nullable List<CompilerDiagnostic> errors, @NotNull String failure);
+
+    /** Writes a failure verdict. */
+    abstract void fail(@NotNull String reason);
+
+    /** Stops any periodic frames; called once the client is served or dropped. */
+    void close() {
+    }
+
+    /** The original format: one response once the verdict is known. */
+    private static final class V1 extends ServerReply {
+        V1(Writer out) {
+            super(out);
+        }
+
+        @Override
+        void finish(@Nullable List<CompilerDiagnostic> errors, @NotNull String failure) {
+            if (errors == null) {
+                fail(failure);
+                return;
+            }
+            try {
+                if (errors.isEmpty()) {
+                    out.write("OK\n");
+                } else {
+                    out.write("ERRORS " + errors.size() + "\n");
+                    for (CompilerDiagnostic d : errors) {
+                        out.write(line(d));
+                        out.write('\n');
+                    }
+                    out.write("END\n");
+                }
+                out.flush();
+            } catch (IOException ignored) {
+                // Client gone.
+            }
+        }
+
+        @Override
+        void fail(@NotNull String reason) {
+            try {
+                out.write("ERR " + reason + "\n");
+                out.flush();
+            } catch (IOException ignored) {
+                // Client gone.
+            }
+        }
+    }
+
+    /** Streaming frames; writes are serialized because heartbeats come from a timer thread. */
+    private static final class V2 extends ServerReply {
+        private final long startNanos = System.nanoTime();
+        // Guarded by `this`.
+        private final Set<CompilerDiagnostic> sent = new HashSet<>();
+        private int lastPercent = -1;
+        private boolean done;
+        private final ScheduledFuture<?> heartbeat;
+
+        V2(Writer out) {
+            super(out);
+            heartbeat = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(
+                () -> frame("HEARTBEAT " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)),
+                HEARTBEAT_MS, HEARTBEAT_MS, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        void cache(@NotNull String marker) {
+            frame("CACHE " + marker);
+        }
+
+        @Override
+        synchronized void progress(@NotNull List<CompilerDiagnostic> soFar, double fraction) {
+            if (done) return;
+            StringBuilder frames = new StringBuilder();
+            for (CompilerDiagnostic d : soFar) {
+                if (sent.add(d)) frames.append("DIAG ").append(line(d)).append('\n');
+            }
+            int percent = fraction < 0 ? -1 : (int) Math.round(fraction * 100);
+            if (percent >= 0 && percent != lastPercent) {
+                lastPercent = percent;
+                frames.append("PROGRESS ").append(percent).append('\n');
+            }
+            write(frames);
+        }
+
+        @Override
+        synchronized void finish(@Nullable List<CompilerDiagnostic> errors, @NotNull String failure) {
+            if (errors == null) {
+                fail(failure);
+                return;
+            }
+            if (done) return;
+            StringBuilder frames = new StringBuilder();
+            for (CompilerDiagnostic d : errors) {
+                if (sent.add(d)) frames.append("DIAG ").append(line(d)).append('\n');
+            }
+            frames.append(errors.isEmpty() ? "DONE OK" : "DONE ERRORS " + errors.size()).append('\n');
+            end(frames);
+        }
+
+        @Override
+        synchronized void fail(@NotNull String reason) {
+            if (done) return;
+            end(new StringBuilder("DONE ERR ").append(reason).append('\n'));
+        }
+
+        private void end(StringBuilder frames) {
+            done = true;
+            heartbeat.cancel(false);
+            write(frames);
+        }
+
+        @Override
+        void close() {
+            heartbeat.cancel(false);
+        }
+
+        synchronized void frame(String frame) {
+            if (done) return;
+            write(new StringBuilder(frame).append('\n'));
+        }
+
+        private void write(StringBuilder frames) {
+            if (frames.length() == 0) return;
+            try {
+                out.write(frames.toString());
+                out.flush();
+            } catch (IOException ignored) {
+                // Client gone; keep the check running for the cache and other clients.
+            }
+        }
+    }
+
+    private static String line(CompilerDiagnostic d) {
+        return d.toString().replace('\r', ' ').replace('\n', ' ');
+    }
+}
@@ -0,0 +1,145 @@
+package com.github.prepushchecker;
+
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectManager;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Application-level VFS listener that routes source and build-file changes to the projects
+ * owning them, via {@link ContentRootIndex}:
+ * <ul>
+ *   <li>every change, deletions and renames included, bumps the project's {@link ChangeJournal}
+ *       so cached verdicts depending on the module are dropped. A file under a project's base
+ *       directory but outside every content root (a root build script) counts as a change to
+ *       the whole project;</li>
+ *   <li>changed, created and moved sources are handed to {@link CompilationWarmupService}. A
+ *       directory appearing in one piece (checkout of a new package) has no per-file events
+ *       and counts as a storm in its module.</li>
+ * </ul>
+ * Projects whose services were never created have no verdict or warmup to update and are skipped.
+ */
+public final class SourceChangeListener implements BulkFileListener {
+
+    @Override
+    public void after(@NotNull List<? extends VFileEvent> events) {
+        ContentRootIndex index = null;
+        Map<Project, Set<Module>> touched = null;
+        Set<Project> projectWide = null;
+        Map<Project, Map<Module, List<VirtualFile>>> warm = null;
+        for (VFileEvent event : events) {
+            boolean content = event instanceof VFileContentChangeEvent
+                || event instanceof VFileCreateEvent
+                || event instanceof VFileMoveEvent;
+            boolean rename = event instanceof VFilePropertyChangeEvent
+                && ((VFilePropertyChangeEvent) event).isRename();
+            if (!content && !rename && !(event instanceof VFileDeleteEvent)) continue;
+            if (!(event.getFileSystem() instanceof LocalFileSystem)) continue;
+            boolean directory = isDirectory(event);
+            String newPath = newPath(event);
+            if (!directory && !PushValidationPaths.isRelevantPath(event.getPath())
+                    && !PushValidationPaths.isRelevantPath(newPath)) {
+                continue;
+            }
+
+            if (index == null) index = ContentRootIndex.getInstance();
+            Module module = index.ownerOf(event.getPath());
+            Module target = newPath != null ? index.ownerOf(newPath) : module;
+            if (module == null && target == null) {
+                if (directory) continue;
+                Project owner = baseDirectoryOwner(event.getPath());
+                if (owner == null && newPath != null) owner = baseDirectoryOwner(newPath);
+                if (owner == null) continue;
+                if (projectWide == null) projectWide = new LinkedHashSet<>();
+                projectWide.add(owner);
+                continue;
+            }
+            // Output and other excluded directories come and go with every build.
+            if (directory && !inSourceContent(event, target != null ? target : module)) continue;
+            if (touched == null) touched = new HashMap<>();
+            for (Module m : new Module[]{module, target}) {
+                if (m != null) touched.computeIfAbsent(m.getProject(), p -> new LinkedHashSet<>()).add(m);
+            }
+
+            if (!content || target == null) continue;
+            boolean createdDirectory = directory && event instanceof VFileCreateEvent;
+            VirtualFile file = createdDirectory ? null : event.getFile();
+            if (!createdDirectory && (file == null || !PushValidationPaths.isCompilableSource(file.getPath()))) continue;
+            if (warm == null) warm = new HashMap<>();
+            // A null entry marks the module as touched by a directory event.
+            warm.computeIfAbsent(target.getProject(), p -> new HashMap<>())
+                .computeIfAbsent(target, m -> new ArrayList<>())
+                .add(file);
+        }
+        if (projectWide != null) {
+            for (Project project : projectWide) {
+                if (project.isDisposed()) continue;
+                CompilationErrorService errors = project.getServiceIfCreated(CompilationErrorService.class);
+                if (errors != null) errors.recordProjectChange();
+            }
+        }
+        if (touched == null) return;
+
+        for (Map.Entry<Project, Set<Module>> e : touched.entrySet()) {
+            Project project = e.getKey();
+            if (project.isDisposed()) continue;
+            CompilationErrorService errors = project.getServiceIfCreated(CompilationErrorService.class);
+            if (errors != null) errors.recordChange(e.getValue());
+            Map<Module, List<VirtualFile>> changed = warm != null ? warm.get(project) : null;
+            CompilationWarmupService warmup = project.getServiceIfCreated(CompilationWarmupService.class);
+            if (changed != null && warmup != null) warmup.markDirty(changed);
+        }
+    }
+
+    /** The open project whose base directory holds {@code path}, or {@code null}. */
+    private static @Nullable Project baseDirectoryOwner(@NotNull String path) {
+        for (Project project : ProjectManager.getInstance().getOpenProjects()) {
+            String basePath = project.getBasePath();
+            if (project.isDisposed() || basePath == null) continue;
+            if (FileUtil.isAncestor(basePath, path, true)) return project;
+        }
+        return null;
+    }
+
+    /** Where a moved or renamed file ended up; {@code null} for other events. */
+    private static String newPath(VFileEvent event) {
+        if (event instanceof VFileMoveEvent) return ((VFileMoveEvent) event).getNewPath();
+        if (event instanceof VFilePropertyChangeEvent && ((VFilePropertyChangeEvent) event).isRename()) {
+            return ((VFilePropertyChangeEvent) event).getNewPath();
+        }
+        return null;
+    }
+
+    private static boolean inSourceContent(VFileEvent event, Module module) {
+        VirtualFile parent = event instanceof VFileCreateEvent
+            ? ((VFileCreateEvent) event).getParent()
+            : event.getFile() != null ? event.getFile().getParent() : null;
+        return parent != null && parent.isValid()
+            && ProjectFileIndex.getInstance(module.getProject()).isInSourceContent(parent);
+    }
+
+    private static boolean isDirectory(VFileEvent event) {
+        if (event instanceof VFileCreateEvent) return ((VFileCreateEvent) event).isDirectory();
+        VirtualFile file = event.getFile();
+        return file != null && file.isDirectory();
+    }
+}
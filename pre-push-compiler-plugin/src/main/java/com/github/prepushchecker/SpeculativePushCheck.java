@@ -0,0 +1,338 @@
+package com.github.prepushchecker;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.actionSystem.ActionManager;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.ex.AnActionListener;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.compiler.CompileScope;
+import com.intellij.openapi.compiler.CompilerManager;
+import com.intellij.openapi.compiler.CompilerMessageCategory;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.vcs.ProjectLevelVcsManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import git4idea.repo.GitRepository;
+import git4idea.repo.GitRepositoryChangeListener;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a verdict for the outgoing commits ({@code @{upstream}..HEAD}) ready, so the push
+ * handler and the local server find it in {@link CompilationErrorService} instead of starting
+ * a make. {@link CompilationWarmupService} only sees saves; commits, rebases, cherry-picks,
+ * stash pops and checkouts change the pushed content without one.
+ *
+ * <p>Every run compiles what a push of every repository's {@code HEAD} to its upstream would
+ * check, with the push handler's own scope policy, unless that range is the one already
+ * verified. Runs are single-flight: a newer one cancels the make in flight.
+ * <ul>
+ *   <li>Background verification ({@code prepushchecker.verifier}): a repository change moves
+ *       {@code HEAD} or the upstream, and a run starts once the repository has been quiet for
+ *       {@link #DEBOUNCE_MS}, recording origin {@code verifier}. Skipped in power save mode
+ *       and deferred while indexing.</li>
+ *   <li>Speculation ({@code prepushchecker.speculative}): opening the push dialog arms the
+ *       check for {@link #ARMED_MILLIS}, during which repository changes restart it without
+ *       debounce, recording origin {@code speculative}.</li>
+ * </ul>
+ * Either way, a repository change that leaves {@code HEAD} and the upstream where the run in
+ * flight found them does not restart it.
+ * The push handler disarms the check, and both it and the server wait for a make still in
+ * flight rather than queue a second one behind it. Pushes that need a project build (build
+ * files, deletions) are not verified ahead of time.
+ */
+@Service(Service.Level.PROJECT)
+public final class SpeculativePushCheck implements Disposable {
+
+    static final long ARMED_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final Logger LOG = Logger.getInstance(SpeculativePushCheck.class);
+    private static final String PUSH_ACTION_ID = "Vcs.Push";
+    private static final long WAIT_SLICE_MILLIS = 250L;
+    private static final long COMPILE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(2);
+    static final long DEBOUNCE_MS = 3_000L;
+
+    private final Project project;
+    // Bumped on every restart and on dispose; a speculation of an older generation is stale.
+    private final AtomicLong generation = new AtomicLong();
+    // One speculation at a time; a restart queues behind the one it cancels.
+    private final ExecutorService executor =
+        AppExecutorUtil.createBoundedApplicationPoolExecutor("PrePushChecker-Speculative", 1);
+    private volatile long armedUntilMillis = 0L;
+    // Outgoing commits of the last completed speculation, so an unrelated ref change is free.
+    private volatile String verifiedKey;
+    // Outgoing commits of the speculation running now, so a ref change that keeps them does
+    // not cancel it (reflog, index or fetch-without-news events).
+    private volatile String inFlightKey;
+    private volatile CountDownLatch inFlight;
+    private volatile ScheduledFuture<?> pending;
+
+    public SpeculativePushCheck(@NotNull Project project) {
+        this.project = project;
+    }
+
+    public static SpeculativePushCheck getInstance(@NotNull Project project) {
+        return project.getService(SpeculativePushCheck.class);
+    }
+
+    /** Called when the push dialog opens. */
+    void arm() {
+        if (!Registry.is("prepushchecker.speculative", true)) return;
+        armedUntilMillis = System.currentTimeMillis() + ARMED_MILLIS;
+        // A background run in flight is already verifying the current refs; one still
+        // waiting out its debounce is started now.
+        ScheduledFuture<?> debounced = pending;
+        boolean waiting = debounced != null && debounced.cancel(false);
+        if (waiting || inFlight == null) restart("speculative");
+    }
+
+    /** Called by the push handler; a speculation in flight still runs to completion. */
+    void disarm() {
+        armedUntilMillis = 0L;
+    }
+
+    /**
+     * Waits for a make in flight, if any; it gives up on its own past its deadline. Canceling
+     * {@code indicator} stops the wait.
+     */
+    void awaitInFlight(@NotNull ProgressIndicator indicator) {
+        awaitInFlight(indicator, Long.MAX_VALUE);
+    }
+
+    /** Like {@link #awaitInFlight(ProgressIndicator)}, but waits {@code timeoutMillis} at most. */
+    void awaitInFlight(@Nullable ProgressIndicator indicator, long timeoutMillis) {
+        CountDownLatch latch = inFlight;
+        if (latch == null) return;
+        long startNanos = System.nanoTime();
+        try {
+            while (!latch.await(WAIT_SLICE_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (indicator != null) indicator.checkCanceled();
+                if (TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) >= timeoutMillis) {
+                    LOG.info("Stopped waiting for the speculative pre-push compile after " + timeoutMillis + " ms.");
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void onRepositoryChanged() {
+        if (System.currentTimeMillis() < armedUntilMillis) {
+            restart("speculative");
+        } else if (isVerifierEnabled()) {
+            scheduleVerify();
+        }
+    }
+
+    private static boolean isVerifierEnabled() {
+        return Registry.is("prepushchecker.verifier", true);
+    }
+
+    private void scheduleVerify() {
+        ScheduledFuture<?> prev = pending;
+        if (prev != null) prev.cancel(false);
+        pending = AppExecutorUtil.getAppScheduledExecutorService().schedule(
+            this::verify, DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void verify() {
+        if (project.isDisposed() || !isVerifierEnabled()) return;
+        if (com.intellij.ide.PowerSaveMode.isEnabled()) return;
+        if (DumbService.getInstance(project).isDumb()) {
+            // Try again after indexing finishes.
+            DumbService.getInstance(project).runWhenSmart(this::scheduleVerify);
+            return;
+        }
+        restart("verifier");
+    }
+
+    private void restart(String origin) {
+        // Reads the refs off the caller's thread; the speculation thread may be busy with a make.
+        AppExecutorUtil.getAppExecutorService().execute(() -> {
+            String running = inFlightKey;
+            if (running != null && running.equals(outgoingKey())) return;
+            long gen = generation.incrementAndGet();
+            executor.execute(() -> speculate(gen, origin));
+        });
+    }
+
+    private boolean isStale(long gen) {
+        return generation.get() != gen || project.isDisposed();
+    }
+
+    /** Runs on the check's own thread; returns once the make finished or was canceled. */
+    private void speculate(long gen, String origin) {
+        try {
+            if (isStale(gen)) return;
+            String key = outgoingKey();
+            if (key == null || key.equals(verifiedKey)) return;
+            inFlightKey = key;
+
+            CheckTimings.Trace trace = CheckTimings.getInstance(project).start(origin);
+            PrePushCompilationHandler.PushChangeSet changes = PrePushCompilationHandler.collectOutgoingChanges(project);
+            trace.phase("collectChanges");
+            if (changes == null || changes.requiresProjectBuild() || changes.getSourceFiles().isEmpty()
+                    || isStale(gen)) {
+                return;
+            }
+            List<VirtualFile> files = changes.getSourceFiles();
+            CompilerManager cm = CompilerManager.getInstance(project);
+            CompileScope scope = PrePushCompilationHandler.buildPushScopeForExternal(
+                project, files, changes.baseline(), cm);
+            Module[] affected = ApplicationManager.getApplication().runReadAction(
+                (Computable<Module[]>) scope::getAffectedModules);
+            long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(
+                CompileHistory.getInstance(project).timeoutMillis(Arrays.asList(affected), COMPILE_TIMEOUT_MILLIS));
+            trace.phase("scope");
+            if (isStale(gen)) return;
+
+            // Pumping cancels the make once a restart or the deadline abandons it.
+            LiveCompileMonitor.Session session = LiveCompileMonitor.attach(project, scope, new LiveCompileMonitor.Listener() {
+                @Override
+                public void onProgress(@NotNull List<CompilerDiagnostic> soFar, double fraction) {
+                }
+
+                @Override
+                public boolean isAbandoned() {
+                    return isStale(gen) || System.nanoTime() - deadlineNanos >= 0;
+                }
+            });
+            CountDownLatch done = new CountDownLatch(1);
+            inFlight = done;
+            // The push dialog is modal: hop onto the EDT in any modality, then start the make
+            // in the dialog's own modality, where saving documents is allowed.
+            ApplicationManager.getApplication().invokeLater(() -> ApplicationManager.getApplication().invokeLater(
+                () -> startMake(gen, key, origin, cm, scope, files, trace, done), ModalityState.current()), ModalityState.any());
+            try {
+                // Abandoned (stale or past the deadline): stop waiting even if the make never
+                // started, e.g. queued behind another build; it then does not start at all.
+                while (!done.await(WAIT_SLICE_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (!session.pump()) {
+                        done.countDown();
+                        break;
+                    }
+                }
+            } finally {
+                session.close();
+                if (inFlight == done) inFlight = null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable t) {
+            LOG.debug("Speculative pre-push compile failed", t);
+        } finally {
+            inFlightKey = null;
+        }
+    }
+
+    private void startMake(
+        long gen,
+        String key,
+        String origin,
+        CompilerManager cm,
+        CompileScope scope,
+        List<VirtualFile> files,
+        CheckTimings.Trace trace,
+        CountDownLatch done
+    ) {
+        trace.phase("edtWait");
+        if (isStale(gen) || done.getCount() == 0) {
+            trace.verdict(isStale(gen) ? "stale" : "timeout", -1);
+            trace.finish();
+            done.countDown();
+            return;
+        }
+        try {
+            CompilationErrorService.CompileStart start = CompilationErrorService.getInstance(project).compileStart(files);
+            cm.make(scope, (aborted, errorCount, warnings, ctx) -> {
+                try {
+                    trace.phase("jps");
+                    if (aborted || isStale(gen)) {
+                        trace.verdict(aborted ? "aborted" : "stale", -1);
+                        return;
+                    }
+                    List<CompilerDiagnostic> result = errorCount > 0
+                        ? PrePushCompilationHandler.formatCompilerMessages(
+                            project, ctx.getMessages(CompilerMessageCategory.ERROR))
+                        : Collections.emptyList();
+                    trace.verdict("compile", result.size());
+                    CompilationErrorService.getInstance(project).recordCompletion(
+                        VerdictScope.Kind.PUSH, files, result, origin, start);
+                    verifiedKey = key;
+                } finally {
+                    trace.finish();
+                    done.countDown();
+                }
+            });
+        } catch (Throwable t) {
+            LOG.debug("Speculative pre-push compile failed to start", t);
+            done.countDown();
+        }
+    }
+
+    /** {@code HEAD} and upstream of every repository, or {@code null} if none has an upstream. */
+    private @Nullable String outgoingKey() {
+        StringBuilder key = new StringBuilder();
+        for (VirtualFile root : ProjectLevelVcsManager.getInstance(project).getAllVersionedRoots()) {
+            String revisions = GitHookInstaller.runGit(root.getPath(), "rev-parse", "HEAD", "@{upstream}");
+            if (revisions == null) continue;
+            key.append(root.getPath()).append(' ').append(revisions.replace('\n', ' ')).append('\n');
+        }
+        return key.length() == 0 ? null : key.toString();
+    }
+
+    @Override
+    public void dispose() {
+        ScheduledFuture<?> debounced = pending;
+        if (debounced != null) debounced.cancel(false);
+        generation.incrementAndGet();
+        armedUntilMillis = 0L;
+    }
+
+    /** Arms the check when the push dialog is opened. */
+    public static final class PushActionListener implements AnActionListener {
+        @Override
+        public void beforeActionPerformed(@NotNull AnAction action, @NotNull AnActionEvent event) {
+            Project project = event.getProject();
+            if (project == null || project.isDisposed()) return;
+            if (!PUSH_ACTION_ID.equals(ActionManager.getInstance().getId(action))) return;
+            getInstance(project).arm();
+        }
+    }
+
+    /** Restarts an armed check, or schedules background verification, when refs move. */
+    public static final class RepositoryListener implements GitRepositoryChangeListener {
+        private final Project project;
+
+        public RepositoryListener(@NotNull Project project) {
+            this.project = project;
+        }
+
+        @Override
+        public void repositoryChanged(@NotNull GitRepository repository) {
+            if (project.isDisposed()) return;
+            SpeculativePushCheck check = isVerifierEnabled()
+                ? getInstance(project)
+                : project.getServiceIfCreated(SpeculativePushCheck.class);
+            if (check != null) check.onRepositoryChanged();
+        }
+    }
+}
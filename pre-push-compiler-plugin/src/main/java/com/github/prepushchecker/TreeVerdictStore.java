@@ -0,0 +1,143 @@
+package com.github.prepushchecker;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pass/fail verdicts keyed by git tree object ID, shared between the IDE push handler and the
+ * managed hook through {@link #RELATIVE_PATH} (next to the hook's {@code last-run.log}).
+ *
+ * <p>Two pushes of the same tree compile identically, so retrying after a network failure,
+ * pushing to a second remote or force-pushing a reworded commit becomes a file lookup.
+ *
+ * <p>Format: one {@code <tree-sha> <pass|fail> <epoch-seconds>} line per record; the last line
+ * for a tree wins. Both writers only append, so the file is trimmed to the newest half once it
+ * grows past {@link #MAX_LINES}.
+ *
+ * <p>A verdict is only recorded when the compile saw exactly the pushed tree — i.e. the
+ * working tree is clean and {@code HEAD} points at that tree (see {@link #headTreeIfClean}).
+ * Only a pass is ever reused. The IDE also records failures found by its compiler, which stop
+ * an earlier pass from being reused; the hook records passes only, since its build tool also
+ * fails for reasons that have nothing to do with the tree.
+ */
+final class TreeVerdictStore {
+    static final String RELATIVE_PATH = ".idea/pre-push-checker/tree-verdicts";
+    static final int MAX_LINES = 256;
+
+    enum Verdict { PASS, FAIL }
+
+    private TreeVerdictStore() {
+    }
+
+    /**
+     * Returns {@link Verdict#FAIL} if any of {@code trees} last failed, {@link Verdict#PASS} if
+     * every one of them last passed, or {@code null} if at least one is unknown.
+     */
+    static @Nullable Verdict lookup(@NotNull Path basePath, @NotNull Collection<String> trees) {
+        if (trees.isEmpty()) return null;
+        Map<String, Verdict> latest = read(basePath.resolve(RELATIVE_PATH));
+        boolean allPass = true;
+        for (String tree : trees) {
+            Verdict v = latest.get(tree);
+            if (v == Verdict.FAIL) return Verdict.FAIL;
+            if (v != Verdict.PASS) allPass = false;
+        }
+        return allPass ? Verdict.PASS : null;
+    }
+
+    static void record(@NotNull Path basePath, @NotNull Collection<String> trees, @NotNull Verdict verdict) {
+        if (trees.isEmpty()) return;
+        Path file = basePath.resolve(RELATIVE_PATH);
+        long now = System.currentTimeMillis() / 1000L;
+        StringBuilder sb = new StringBuilder(trees.size() * 56);
+        for (String tree : trees) {
+            sb.append(tree).append(' ').append(verdict.name().toLowerCase(java.util.Locale.ROOT))
+                .append(' ').append(now).append('\n');
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, sb, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            trim(file);
+        } catch (IOException ignored) {
+            // Non-fatal: the next push simply compiles again.
+        }
+    }
+
+    private static Map<String, Verdict> read(Path file) {
+        if (!Files.isRegularFile(file)) return Collections.emptyMap();
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return Collections.emptyMap();
+        }
+        Map<String, Verdict> latest = new HashMap<>(lines.size() * 2);
+        for (String line : lines) {
+            int first = line.indexOf(' ');
+            if (first <= 0) continue;
+            int second = line.indexOf(' ', first + 1);
+            String verdict = second < 0 ? line.substring(first + 1) : line.substring(first + 1, second);
+            if ("pass".equals(verdict)) {
+                latest.put(line.substring(0, first), Verdict.PASS);
+            } else if ("fail".equals(verdict)) {
+                latest.put(line.substring(0, first), Verdict.FAIL);
+            }
+        }
+        return latest;
+    }
+
+    private static void trim(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        if (lines.size() <= MAX_LINES) return;
+        List<String> kept = new ArrayList<>(lines.subList(lines.size() - MAX_LINES / 2, lines.size()));
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, kept, StandardCharsets.UTF_8);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // ── git ───────────────────────────────────────────────────────────────────
+
+    /** Resolves each commit to its tree object ID with one {@code git rev-parse} call. */
+    static @NotNull List<String> resolveTrees(@NotNull String repoRoot, @NotNull Collection<String> commits) {
+        if (commits.isEmpty()) return Collections.emptyList();
+        String[] args = new String[commits.size() + 1];
+        args[0] = "rev-parse";
+        int i = 1;
+        for (String commit : commits) {
+            args[i++] = commit + "^{tree}";
+        }
+        String output = GitHookInstaller.runGit(repoRoot, args);
+        if (output == null || output.isEmpty()) return Collections.emptyList();
+        List<String> trees = new ArrayList<>(commits.size());
+        for (String line : output.split("\n")) {
+            String tree = line.trim();
+            if (!tree.isEmpty()) trees.add(tree);
+        }
+        return trees;
+    }
+
+    /**
+     * Returns the tree of {@code HEAD} if the working tree (including untracked, non-ignored
+     * files) is clean, or {@code null} otherwise — only then did a compile see that exact tree.
+     */
+    static @Nullable String headTreeIfClean(@NotNull String repoRoot) {
+        String status = GitHookInstaller.runGit(repoRoot, "status", "--porcelain");
+        if (status == null || !status.isEmpty()) return null;
+        String tree = GitHookInstaller.runGit(repoRoot, "rev-parse", "--verify", "--quiet", "HEAD^{tree}");
+        return tree == null || tree.isEmpty() ? null : tree;
+    }
+}
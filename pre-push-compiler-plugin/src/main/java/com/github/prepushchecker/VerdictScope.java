@@ -0,0 +1,68 @@
+package com.github.prepushchecker;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Locale;
+
+/**
+ * Fingerprint of the compile scope a verdict was produced with, recorded next to it by
+ * {@link CompilationErrorService}. A verdict is only reused for a check whose own scope it
+ * covers: a compile of just the saved files says nothing about the callers a push would also
+ * compile.
+ *
+ * <p>The fingerprint also carries the project roots modification count, so a module,
+ * dependency or SDK change since the compile invalidates the verdict.
+ */
+final class VerdictScope {
+
+    /** Ordered by coverage: each kind covers the ones before it. */
+    enum Kind {
+        /** Just the recorded files; nothing that references them was compiled. */
+        FILES,
+        /**
+         * The recorded files plus what a push compiles with them: the referencing files or
+         * the dependent modules ({@link PrePushCompilationHandler#buildPushScopeForExternal}).
+         */
+        PUSH,
+        /** The whole project. */
+        PROJECT;
+
+        boolean covers(@NotNull Kind required) {
+            return ordinal() >= required.ordinal();
+        }
+    }
+
+    final Kind kind;
+    private final long rootsStamp;
+
+    private VerdictScope(Kind kind, long rootsStamp) {
+        this.kind = kind;
+        this.rootsStamp = rootsStamp;
+    }
+
+    /** The fingerprint of a {@code kind} compile finishing now. */
+    static @NotNull VerdictScope of(@NotNull Project project, @NotNull Kind kind) {
+        return new VerdictScope(kind, rootsStamp(project));
+    }
+
+    /** The same fingerprint, claiming only {@code narrower} coverage. */
+    @NotNull VerdictScope narrowedTo(@NotNull Kind narrower) {
+        return narrower.covers(kind) ? this : new VerdictScope(narrower, rootsStamp);
+    }
+
+    /** {@code true} if this verdict may answer a check of {@code required} scope. */
+    boolean covers(@NotNull Project project, @NotNull Kind required) {
+        return kind.covers(required) && rootsStamp == rootsStamp(project);
+    }
+
+    private static long rootsStamp(Project project) {
+        return project.isDisposed() ? -1L : ProjectRootManager.getInstance(project).getModificationCount();
+    }
+
+    @Override
+    public String toString() {
+        return kind.name().toLowerCase(Locale.ROOT) + "@" + rootsStamp;
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.prepushchecker;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.pom.java.LanguageLevel;
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.util.PsiUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.util.Map;
+
+public class ApiSurfaceTest extends BasePlatformTestCase {
+    private static final String BASE = "package p;\n\npublic class A {\n"
+        + "    public static final int LIMIT = 10;\n"
+        + "    public int size(String s) { return s.length(); }\n"
+        + "}\n";
+
+    public void testBodyOnlyEditKeepsSurface() {
+        String edited = BASE.replace("return s.length();", "return s.trim().length();");
+
+        assertEquals(surface(BASE), surface(edited));
+    }
+
+    public void testSignatureChangeChangesMemberKey() {
+        String edited = BASE.replace("size(String s)", "size(CharSequence s)");
+
+        Map<String, String> before = surface(BASE);
+        Map<String, String> after = surface(edited);
+        assertFalse(after.keySet().containsAll(before.keySet()));
+        assertTrue(after.containsValue("size"));
+    }
+
+    public void testConstantChangeChangesFieldKey() {
+        String edited = BASE.replace("LIMIT = 10", "LIMIT = 20");
+
+        assertFalse(surface(BASE).keySet().equals(surface(edited).keySet()));
+        assertEquals(classKey(surface(BASE)), classKey(surface(edited)));
+    }
+
+    public void testAddedEnumConstantChangesClassKey() {
+        String before = "package p;\n\npublic enum Color { RED, GREEN }\n";
+        String after = "package p;\n\npublic enum Color { RED, GREEN, BLUE }\n";
+
+        assertFalse(classKey(surface(before)).equals(classKey(surface(after))));
+    }
+
+    public void testAddedOverloadChangesClassKey() {
+        String edited = BASE.replace("    public int size(String s)",
+            "    public int size(Object o) { return 0; }\n    public int size(String s)");
+
+        assertFalse(classKey(surface(BASE)).equals(classKey(surface(edited))));
+    }
+
+    public void testSealedClauseChangesClassKey() {
+        String before = "package p;\n\npublic sealed interface Shape permits Circle {}\n"
+            + "final class Circle implements Shape {}\nfinal class Square implements Shape {}\n";
+        String after = before.replace("permits Circle", "permits Circle, Square");
+
+        assertFalse(classKey(surface(before)).equals(classKey(surface(after))));
+    }
+
+    private Map<String, String> surface(String text) {
+        PsiJavaFile file = (PsiJavaFile) PsiFileFactory.getInstance(getProject())
+            .createFileFromText("A.java", JavaFileType.INSTANCE, text);
+        // Sealed types need Java 17 whatever the test project's default level.
+        file.putUserData(PsiUtil.FILE_LANGUAGE_LEVEL_KEY, LanguageLevel.JDK_17);
+        return ApiSurface.of(file.getClasses());
+    }
+
+    /** The key of the first class in {@code surface}. */
+    private static String classKey(Map<String, String> surface) {
+        for (String key : surface.keySet()) {
+            if (key.startsWith("C ")) return key;
+        }
+        throw new AssertionError("no class in " + surface.keySet());
+    }
+}
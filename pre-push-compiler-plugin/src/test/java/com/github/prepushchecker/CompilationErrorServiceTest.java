@@ -0,0 +1,147 @@
+package com.github.prepushchecker;
+
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.module.JavaModuleType;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.roots.ModuleRootModificationUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.PsiTestUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+public class CompilationErrorServiceTest extends BasePlatformTestCase {
+    public void testCleanFilesVerdictDoesNotCoverPush() {
+        CompilationErrorService svc = CompilationErrorService.getInstance(getProject());
+        List<VirtualFile> files = List.of(myFixture.addFileToProject("p/A.java", "package p;\n\nclass A {\n}\n")
+            .getVirtualFile());
+
+        svc.recordCompletion(VerdictScope.Kind.FILES, files, Collections.emptyList(), "warmup", svc.compileStart(files));
+        assertNull(svc.tryReuse(files, VerdictScope.Kind.PUSH, CheckTimings.Trace.NONE));
+        assertEmpty(svc.tryReuse(files, VerdictScope.Kind.FILES, CheckTimings.Trace.NONE));
+
+        svc.recordCompletion(VerdictScope.Kind.PUSH, files, Collections.emptyList(), "verifier", svc.compileStart(files));
+        assertEmpty(svc.tryReuse(files, VerdictScope.Kind.PUSH, CheckTimings.Trace.NONE));
+        assertNull(svc.tryReuse(files, VerdictScope.Kind.PROJECT, CheckTimings.Trace.NONE));
+    }
+
+    public void testChangeInVerdictModuleInvalidatesIt() {
+        CompilationErrorService svc = CompilationErrorService.getInstance(getProject());
+        List<VirtualFile> files = List.of(myFixture.addFileToProject("p/C.java", "package p;\n\nclass C {\n}\n")
+            .getVirtualFile());
+
+        // Inconclusive, so it is never persisted and a miss cannot be answered from disk.
+        List<CompilerDiagnostic> verdict = List.of(CompilerDiagnostic.general("Compilation timed out."));
+
+        svc.recordCompletion(VerdictScope.Kind.PUSH, files, verdict, "verifier", svc.compileStart(files));
+        svc.recordChange(List.of());
+        assertEquals(verdict, svc.tryReuse(files, VerdictScope.Kind.PUSH, CheckTimings.Trace.NONE));
+
+        svc.recordChange(List.of(getModule()));
+        assertNull(svc.tryReuse(files, VerdictScope.Kind.PUSH, CheckTimings.Trace.NONE));
+    }
+
+    public void testFailingFilesVerdictBlocksPush() {
+        CompilationErrorService svc = CompilationErrorService.getInstance(getProject());
+        VirtualFile file = myFixture.addFileToProject("p/B.java", "package p;\n\nclass B {\n}\n").getVirtualFile();
+        List<CompilerDiagnostic> errors = List.of(new CompilerDiagnostic(
+            file.getPath(), 3, 1, CompilerDiagnostic.Severity.ERROR, null, "cannot find symbol"));
+
+        svc.recordCompletion(VerdictScope.Kind.FILES, List.of(file), errors, "warmup", svc.compileStart(List.of(file)));
+
+        assertEquals(errors, svc.tryReuse(List.of(file), VerdictScope.Kind.PUSH, CheckTimings.Trace.NONE));
+    }
+
+    public void testModuleVerdictOnlyAnswersFilesItCompiled() {
+        CompilationErrorService svc = CompilationErrorService.getInstance(getProject());
+        VirtualFile a = myFixture.addFileToProject("p/D.java", "package p;\n\nclass D {\n}\n").getVirtualFile();
+        VirtualFile b = myFixture.addFileToProject("p/E.java", "package p;\n\nclass E {\n}\n").getVirtualFile();
+        List<CompilerDiagnostic> verdict = List.of(CompilerDiagnostic.general("Compilation timed out."));
+
+        svc.recordCompletion(VerdictScope.Kind.PUSH, List.of(a), verdict, "verifier", svc.compileStart(List.of(a)));
+
+        CompilationErrorService.Reuse reuse = svc.reuse(List.of(a, b), VerdictScope.Kind.PUSH,
+            CheckTimings.Trace.NONE);
+        assertFalse(reuse.isComplete());
+        assertEmpty(reuse.diagnostics);
+        assertSameElements(reuse.remaining, a, b);
+        assertEquals(verdict, svc.tryReuse(List.of(a), VerdictScope.Kind.PUSH, CheckTimings.Trace.NONE));
+    }
+
+    public void testChangeDuringCompileDropsVerdict() {
+        CompilationErrorService svc = CompilationErrorService.getInstance(getProject());
+        List<VirtualFile> files = List.of(myFixture.addFileToProject("p/F.java", "package p;\n\nclass F {\n}\n")
+            .getVirtualFile());
+        List<CompilerDiagnostic> verdict = List.of(CompilerDiagnostic.general("Compilation timed out."));
+
+        CompilationErrorService.CompileStart start = svc.compileStart(files);
+        svc.recordChange(List.of(getModule()));
+        svc.recordCompletion(VerdictScope.Kind.PUSH, files, verdict, "warmup", start);
+
+        assertNull(svc.tryReuse(files, VerdictScope.Kind.PUSH, CheckTimings.Trace.NONE));
+    }
+
+    public void testProjectChangeDropsModuleVerdicts() {
+        CompilationErrorService svc = CompilationErrorService.getInstance(getProject());
+        List<VirtualFile> files = List.of(myFixture.addFileToProject("p/G.java", "package p;\n\nclass G {\n}\n")
+            .getVirtualFile());
+        List<CompilerDiagnostic> verdict = List.of(CompilerDiagnostic.general("Compilation timed out."));
+
+        svc.recordCompletion(VerdictScope.Kind.PUSH, files, verdict, "verifier", svc.compileStart(files));
+        svc.recordProjectChange();
+        assertNull(svc.tryReuse(files, VerdictScope.Kind.PUSH, CheckTimings.Trace.NONE));
+
+        svc.recordCompletion(VerdictScope.Kind.PUSH, files, verdict, "verifier", svc.compileStart(files));
+        assertEquals(verdict, svc.tryReuse(files, VerdictScope.Kind.PUSH, CheckTimings.Trace.NONE));
+    }
+
+    public void testFailedMakeDoesNotVouchForCallersOfCleanModule() throws Exception {
+        CompilationErrorService svc = CompilationErrorService.getInstance(getProject());
+        Module caller = addDependentModule("caller");
+        try {
+            VirtualFile a = myFixture.addFileToProject("p/H.java", "package p;\n\npublic class H {\n}\n")
+                .getVirtualFile();
+            VirtualFile b = myFixture.addFileToProject("caller/q/I.java", "package q;\n\nclass I {\n}\n")
+                .getVirtualFile();
+            List<CompilerDiagnostic> errors = List.of(new CompilerDiagnostic(
+                "caller/q/I.java", 3, 1, CompilerDiagnostic.Severity.ERROR, caller.getName(), "cannot find symbol"));
+
+            svc.recordCompletion(VerdictScope.Kind.PUSH, List.of(a, b), errors, "push", svc.compileStart(List.of(a, b)));
+
+            assertNull(svc.tryReuse(List.of(a), VerdictScope.Kind.PUSH, CheckTimings.Trace.NONE));
+            assertEmpty(svc.tryReuse(List.of(a), VerdictScope.Kind.FILES, CheckTimings.Trace.NONE));
+            assertEquals(errors, svc.tryReuse(List.of(b), VerdictScope.Kind.PUSH, CheckTimings.Trace.NONE));
+        } finally {
+            WriteAction.run(() -> ModuleManager.getInstance(getProject()).disposeModule(caller));
+        }
+    }
+
+    public void testChangeInDependentModuleDropsPushVerdict() throws Exception {
+        CompilationErrorService svc = CompilationErrorService.getInstance(getProject());
+        Module caller = addDependentModule("user");
+        try {
+            List<VirtualFile> files = List.of(myFixture.addFileToProject("p/J.java", "package p;\n\npublic class J {\n}\n")
+                .getVirtualFile());
+            List<CompilerDiagnostic> verdict = List.of(CompilerDiagnostic.general("Compilation timed out."));
+
+            svc.recordCompletion(VerdictScope.Kind.PUSH, files, verdict, "verifier", svc.compileStart(files));
+            assertEquals(verdict, svc.tryReuse(files, VerdictScope.Kind.PUSH, CheckTimings.Trace.NONE));
+
+            svc.recordChange(List.of(caller));
+            assertNull(svc.tryReuse(files, VerdictScope.Kind.PUSH, CheckTimings.Trace.NONE));
+        } finally {
+            WriteAction.run(() -> ModuleManager.getInstance(getProject()).disposeModule(caller));
+        }
+    }
+
+    /** A module rooted at {@code name} under the source root that depends on the test module. */
+    private Module addDependentModule(String name) throws IOException {
+        VirtualFile root = myFixture.getTempDirFixture().findOrCreateDir(name);
+        Module module = PsiTestUtil.addModule(getProject(), JavaModuleType.getModuleType(), name, root);
+        ModuleRootModificationUtil.addDependency(module, getModule());
+        return module;
+    }
+}
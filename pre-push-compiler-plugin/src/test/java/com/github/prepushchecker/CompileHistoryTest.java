@@ -0,0 +1,51 @@
+package com.github.prepushchecker;
+
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.util.List;
+
+public class CompileHistoryTest extends BasePlatformTestCase {
+    @Override
+    protected void tearDown() throws Exception {
+        try {
+            CompileHistory.getInstance(getProject()).clear();
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    public void testUnknownModulesUseTheFallback() {
+        CompileHistory history = CompileHistory.getInstance(getProject());
+        history.clear();
+
+        assertEquals(-1, history.estimateMillis(List.of(getModule())));
+        assertEquals(123_000, history.timeoutMillis(List.of(getModule()), 123_000));
+    }
+
+    public void testTimeoutFollowsObservedDurationsWithinBounds() {
+        CompileHistory history = CompileHistory.getInstance(getProject());
+        history.clear();
+        for (int i = 0; i < 10; i++) {
+            history.record(List.of(getModule()), 1_000);
+        }
+        history.record(List.of(getModule()), 40_000);
+
+        assertEquals(1_000, history.estimateMillis(List.of(getModule())));
+        assertEquals(40_000 * 3 + 30_000, history.timeoutMillis(List.of(getModule()), 5_000));
+
+        history.clear();
+        history.record(List.of(getModule()), 10);
+        assertEquals(CompileHistory.MIN_TIMEOUT_MILLIS, history.timeoutMillis(List.of(getModule()), 5_000));
+    }
+
+    public void testOnlyRecentSamplesCount() {
+        CompileHistory history = CompileHistory.getInstance(getProject());
+        history.clear();
+        history.record(List.of(getModule()), 100_000);
+        for (int i = 0; i < CompileHistory.SAMPLES_PER_MODULE; i++) {
+            history.record(List.of(getModule()), 2_000);
+        }
+
+        assertEquals(2_000, history.estimateMillis(List.of(getModule())));
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.prepushchecker;
+
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+public class CompilerDiagnosticTest extends BasePlatformTestCase {
+    public void testLegacyParenthesisedFormatRoundTrips() {
+        CompilerDiagnostic d = CompilerDiagnostic.parse("[path with spaces/Foo.java (10, 5)] cannot find symbol");
+
+        assertNotNull(d);
+        assertEquals("path with spaces/Foo.java", d.getPath());
+        assertEquals("Foo.java", d.getFileName());
+        assertEquals(10, d.getLine());
+        assertEquals(5, d.getColumn());
+        assertEquals("cannot find symbol", d.getMessage());
+        assertEquals("[path with spaces/Foo.java (10, 5)] cannot find symbol", d.toString());
+    }
+
+    public void testColonPositionAndPlainMessages() {
+        CompilerDiagnostic d = CompilerDiagnostic.parse("[src/Foo.kt 7:3] unresolved reference");
+        assertNotNull(d);
+        assertEquals("src/Foo.kt", d.getPath());
+        assertEquals(7, d.getLine());
+        assertEquals(3, d.getColumn());
+
+        CompilerDiagnostic general = CompilerDiagnostic.parse("Compilation was aborted.");
+        assertNotNull(general);
+        assertNull(general.getPath());
+        assertEquals("", general.getFileName());
+        assertFalse(general.hasPosition());
+        assertNull(CompilerDiagnostic.parse("   "));
+    }
+
+    public void testPathsAreInternedAndDisplayTextIsCompact() {
+        CompilerDiagnostic a = new CompilerDiagnostic(new String("src/A.java"), 1, 2,
+            CompilerDiagnostic.Severity.ERROR, "core", "x");
+        CompilerDiagnostic b = new CompilerDiagnostic(new String("src/A.java"), 3, 0,
+            CompilerDiagnostic.Severity.ERROR, "core", "y");
+
+        assertSame(a.getPath(), b.getPath());
+        assertEquals("A.java:1:2  —  x", CompilationEntryRenderer.displayText(a));
+        assertEquals("A.java:3  —  y", CompilationEntryRenderer.displayText(b));
+    }
+}
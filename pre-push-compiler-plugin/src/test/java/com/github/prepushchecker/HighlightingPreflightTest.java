@@ -0,0 +1,28 @@
+package com.github.prepushchecker;
+
+import com.intellij.psi.PsiFile;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.util.List;
+
+public class HighlightingPreflightTest extends BasePlatformTestCase {
+    public void testReportsSyntaxErrorsAndUnresolvedImports() {
+        PsiFile broken = myFixture.addFileToProject("p/Broken.java",
+            "package p;\n\nimport p.missing.Gone;\n\nclass Broken {\n    void run( {\n    }\n}\n");
+
+        List<CompilerDiagnostic> found = HighlightingPreflight.check(getProject(), List.of(broken.getVirtualFile()));
+
+        assertFalse(found.isEmpty());
+        assertTrue(found.stream().allMatch(d -> d.getPath() != null && d.getPath().endsWith("p/Broken.java")));
+        assertTrue(found.stream().anyMatch(d -> d.getMessage().equals("Cannot resolve symbol 'Gone'") && d.getLine() == 3));
+        assertTrue(found.stream().anyMatch(d -> d.getLine() == 6));
+    }
+
+    public void testCleanFileHasNoFindings() {
+        myFixture.addFileToProject("p/Other.java", "package p;\n\nclass Other {\n}\n");
+        PsiFile clean = myFixture.addFileToProject("p/Clean.java",
+            "package p;\n\nclass Clean {\n    Other other;\n    int[] counts;\n}\n");
+
+        assertEmpty(HighlightingPreflight.check(getProject(), List.of(clean.getVirtualFile())));
+    }
+}
@@ -0,0 +1,457 @@
+package com.github.prepushchecker;
+
+import com.intellij.dvcs.push.PrePushHandler;
+import com.intellij.dvcs.push.PushInfo;
+import com.intellij.dvcs.push.PushSource;
+import com.intellij.dvcs.push.PushSpec;
+import com.intellij.dvcs.push.PushTarget;
+import com.intellij.dvcs.repo.Repository;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.module.JavaModuleType;
+import com.intellij.openapi.module.ModifiableModuleModel;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.roots.ModuleRootModificationUtil;
+import com.intellij.openapi.roots.ex.ProjectRootManagerEx;
+import com.intellij.openapi.vcs.changes.Change;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.CompilerTester;
+import com.intellij.testFramework.HeavyPlatformTestCase;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.vcs.log.Hash;
+import com.intellij.vcs.log.VcsFullCommitDetails;
+import com.intellij.vcs.log.VcsUser;
+import com.intellij.vcs.log.impl.HashImpl;
+import com.intellij.vcs.log.impl.VcsUserImpl;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end cost of the push gate on generated projects of 10, 100 and 1,000 modules.
+ *
+ * <p>Each module holds one class that calls into up to {@code fanout} randomly chosen lower
+ * modules. A run changes the API of the middle module's class three times, committing and
+ * checking after each change:
+ * <ul>
+ *   <li>{@code cold}: first check in a fresh project; no JPS state, history or verdicts;</li>
+ *   <li>{@code warm}: the same kind of change again, with everything the first check left;</li>
+ *   <li>{@code primed}: the change is saved in the editor first and the warmup compile is
+ *       awaited, as when the user pushes some seconds after their last edit.</li>
+ * </ul>
+ * The check is {@link PrePushCompilationHandler#handle} for the {@code push} gate and a
+ * {@code CHECK} round trip through {@link CompileGateway} for the {@code server} gate.
+ *
+ * <p>Every check appends one JSON line — run label, project shape, gate, scenario, cache
+ * lookup deltas and the {@link CheckTimings} record with its phases — to the report file, so
+ * runs before and after a change can be compared line by line. A one-line summary of each
+ * check goes to the test log.
+ *
+ * <p>Not part of {@code test}; run with {@code ./gradlew pushGateBenchmark}, optionally with
+ * {@code -PpushGate.sizes=10,100}, {@code -PpushGate.fanout=5}, {@code -PpushGate.label=...}
+ * and {@code -PpushGate.report=path}.
+ */
+public class PushGateBenchmark extends HeavyPlatformTestCase {
+
+    private static final Logger LOG = Logger.getInstance(PushGateBenchmark.class);
+    private static final long CHECK_TIMEOUT_MILLIS = CompileHistory.MAX_TIMEOUT_MILLIS + TimeUnit.MINUTES.toMillis(1);
+    private static final String[] SCENARIOS = {"cold", "warm", "primed"};
+
+    private CompilerTester compilerTester;
+
+    @Override
+    protected void tearDown() throws Exception {
+        try {
+            if (compilerTester != null) compilerTester.tearDown();
+        } finally {
+            compilerTester = null;
+            super.tearDown();
+        }
+    }
+
+    public void testPushHandler10Modules() throws Exception {
+        run(10, "push");
+    }
+
+    public void testPushHandler100Modules() throws Exception {
+        run(100, "push");
+    }
+
+    public void testPushHandler1000Modules() throws Exception {
+        run(1000, "push");
+    }
+
+    public void testLocalServer10Modules() throws Exception {
+        run(10, "server");
+    }
+
+    public void testLocalServer100Modules() throws Exception {
+        run(100, "server");
+    }
+
+    public void testLocalServer1000Modules() throws Exception {
+        run(1000, "server");
+    }
+
+    private void run(int moduleCount, String gate) throws Exception {
+        if (!selectedSizes().contains(moduleCount)) return;
+        int fanout = Integer.getInteger("prepushchecker.benchmark.fanout", 3);
+        Path root = Path.of(getProject().getBasePath());
+
+        List<Module> modules = generateProject(root, moduleCount, fanout);
+        compilerTester = new CompilerTester(getProject(), modules, null);
+        initRepository(root);
+
+        int target = moduleCount / 2;
+        VirtualFile changed = LocalFileSystem.getInstance().refreshAndFindFileByNioFile(sourceFile(root, target));
+        assertNotNull(changed);
+        int dependents = ModuleDependencyIndex.getInstance(getProject()).dependentsOf(List.of(modules.get(target))).size();
+
+        if ("server".equals(gate)) {
+            CompileGateway.getInstance().register(getProject());
+        }
+
+        CheckTimings timings = CheckTimings.getInstance(getProject());
+        for (int round = 0; round < SCENARIOS.length; round++) {
+            String scenario = SCENARIOS[round];
+            String text = classSource(target, dependenciesOf(target, fanout), round + 1);
+            if ("primed".equals(scenario)) {
+                saveInEditorAndAwaitWarmup(changed, text);
+            } else {
+                WriteAction.runAndWait(() -> VfsUtil.saveText(changed, text));
+            }
+            git(root, "add", "-A");
+            git(root, "-c", "user.name=Benchmark", "-c", "user.email=benchmark@example.com",
+                "commit", "-q", "-m", "Change round " + (round + 1));
+
+            Map<CheckTimings.Lookup, Long> lookupsBefore = timings.getLookupCounts();
+            int recordsBefore = timings.getRecords().size();
+            if ("push".equals(gate)) {
+                PushInfo push = new SyntheticPush(new SyntheticCommit(
+                    LocalFileSystem.getInstance().refreshAndFindFileByNioFile(root),
+                    git(root, "rev-parse", "HEAD"), git(root, "rev-parse", "HEAD~1")));
+                // Off the EDT, as in a real push; the wait below keeps dispatching EDT events.
+                Future<PrePushHandler.Result> check = ApplicationManager.getApplication().executeOnPooledThread(() ->
+                    new PrePushCompilationHandler().handle(getProject(), List.of(push), new EmptyProgressIndicator()));
+                assertEquals(PrePushHandler.Result.OK, PlatformTestUtil.waitForFuture(check, CHECK_TIMEOUT_MILLIS));
+            } else {
+                String response = roundTrip(root, changed.getPath());
+                assertEquals("OK", response);
+            }
+            CheckTimings.Record record = awaitRecord(timings, gate, recordsBefore);
+            git(root, "push", "-q");
+
+            report(moduleCount, fanout, dependents, gate, scenario, lookupDelta(lookupsBefore, timings.getLookupCounts()), record);
+        }
+    }
+
+    // ── Project generation ────────────────────────────────────────────────────
+
+    private List<Module> generateProject(Path root, int moduleCount, int fanout) throws IOException {
+        for (int i = 0; i < moduleCount; i++) {
+            Path source = sourceFile(root, i);
+            Files.createDirectories(source.getParent());
+            Files.writeString(source, classSource(i, dependenciesOf(i, fanout), 0), StandardCharsets.UTF_8);
+        }
+        Files.writeString(root.resolve(".gitignore"), ".idea/\nout/\n*.iml\n*.ipr\n*.iws\n", StandardCharsets.UTF_8);
+        VirtualFile rootFile = LocalFileSystem.getInstance().refreshAndFindFileByNioFile(root);
+        assertNotNull(rootFile);
+        VfsUtil.markDirtyAndRefresh(false, true, true, rootFile);
+
+        List<Module> modules = new ArrayList<>(moduleCount);
+        WriteAction.runAndWait(() -> {
+            ModifiableModuleModel model = ModuleManager.getInstance(getProject()).getModifiableModel();
+            for (int i = 0; i < moduleCount; i++) {
+                modules.add(model.newModule(root.resolve("modules/m" + i + "/m" + i + ".iml").toString(),
+                    JavaModuleType.getModuleType().getId()));
+            }
+            model.commit();
+        });
+        WriteAction.runAndWait(() -> ProjectRootManagerEx.getInstanceEx(getProject()).mergeRootsChangesDuring(() -> {
+            for (int i = 0; i < moduleCount; i++) {
+                int index = i;
+                VirtualFile contentRoot = rootFile.findFileByRelativePath("modules/m" + i);
+                VirtualFile sourceRoot = rootFile.findFileByRelativePath("modules/m" + i + "/src");
+                ModuleRootModificationUtil.updateModel(modules.get(i), model -> {
+                    model.addContentEntry(contentRoot).addSourceFolder(sourceRoot, false);
+                    for (int dependency : dependenciesOf(index, fanout)) {
+                        model.addModuleOrderEntry(modules.get(dependency));
+                    }
+                });
+            }
+        }));
+        return modules;
+    }
+
+    /** Up to {@code fanout} distinct lower modules, the same for every run with that fan-out. */
+    private static int[] dependenciesOf(int module, int fanout) {
+        Random random = new Random(31L * module + fanout);
+        Set<Integer> picked = new LinkedHashSet<>();
+        int count = Math.min(fanout, module);
+        while (picked.size() < count) {
+            picked.add(random.nextInt(module));
+        }
+        return picked.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static Path sourceFile(Path root, int module) {
+        return root.resolve("modules/m" + module + "/src/m" + module + "/C" + module + ".java");
+    }
+
+    /**
+     * Module {@code m}'s class. Each round flips the return type of {@code value()}, an API
+     * change every caller's string concatenation still compiles against.
+     */
+    private static String classSource(int module, int[] dependencies, int round) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package m").append(module).append(";\n\n")
+            .append("public class C").append(module).append(" {\n")
+            .append("    public static ").append(round % 2 == 0 ? "String" : "CharSequence")
+            .append(" value() {\n        return \"m").append(module).append(" r").append(round).append("\";\n    }\n\n")
+            .append("    public static String describe() {\n        return \"\"");
+        for (int dependency : dependencies) {
+            sb.append(" + m").append(dependency).append(".C").append(dependency).append(".value()");
+        }
+        return sb.append(";\n    }\n}\n").toString();
+    }
+
+    private static void initRepository(Path root) throws IOException {
+        Path remote = Files.createTempDirectory("push-gate-remote");
+        git(remote, "init", "-q", "--bare");
+        git(root, "init", "-q");
+        git(root, "add", "-A");
+        git(root, "-c", "user.name=Benchmark", "-c", "user.email=benchmark@example.com",
+            "commit", "-q", "-m", "Generated project");
+        git(root, "remote", "add", "origin", remote.toString());
+        git(root, "push", "-q", "-u", "origin", "HEAD");
+    }
+
+    private static String git(Path directory, String... args) {
+        String output = GitHookInstaller.runGit(directory.toString(), args);
+        assertNotNull("git " + String.join(" ", args) + " failed in " + directory, output);
+        return output;
+    }
+
+    // ── Checks ────────────────────────────────────────────────────────────────
+
+    private void saveInEditorAndAwaitWarmup(VirtualFile file, String text) {
+        CompilationWarmupService.getInstance(getProject());
+        CheckTimings timings = CheckTimings.getInstance(getProject());
+        int before = timings.getRecords().size();
+        Document document = FileDocumentManager.getInstance().getDocument(file);
+        assertNotNull(document);
+        WriteCommandAction.runWriteCommandAction(getProject(), () -> document.setText(text));
+        FileDocumentManager.getInstance().saveDocument(document);
+        awaitRecord(timings, "warmup", before);
+    }
+
+    /** Sends a version 1 {@code CHECK} for one pushed file and returns the first response line. */
+    private String roundTrip(Path root, String pushedPath) throws Exception {
+        Path registry = Path.of(Files.readString(
+            root.resolve(CompileGateway.POINTER_FILE_RELATIVE), StandardCharsets.UTF_8).trim());
+        Map<String, String> gateway = new HashMap<>();
+        for (String line : Files.readAllLines(registry)) {
+            int space = line.indexOf(' ');
+            if (space > 0) gateway.put(line.substring(0, space), line.substring(space + 1));
+        }
+        int port = Integer.parseInt(gateway.get("port"));
+        String token = gateway.get("token");
+        Future<String> response = ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                 BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+                 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+                out.write("CHECK 1 " + token + "\n" + pushedPath + "\n\n");
+                out.flush();
+                return in.readLine();
+            }
+        });
+        return PlatformTestUtil.waitForFuture(response, CHECK_TIMEOUT_MILLIS);
+    }
+
+    /** The first record of {@code check} finished after the first {@code before} records. */
+    private static CheckTimings.Record awaitRecord(CheckTimings timings, String check, int before) {
+        CheckTimings.Record[] found = new CheckTimings.Record[1];
+        PlatformTestUtil.waitWithEventsDispatching("No '" + check + "' check was recorded", () -> {
+            List<CheckTimings.Record> records = timings.getRecords();
+            for (int i = Math.min(before, records.size()); i < records.size(); i++) {
+                if (check.equals(records.get(i).getCheck())) {
+                    found[0] = records.get(i);
+                    return true;
+                }
+            }
+            return false;
+        }, (int) TimeUnit.MILLISECONDS.toSeconds(CHECK_TIMEOUT_MILLIS));
+        return found[0];
+    }
+
+    // ── Report ────────────────────────────────────────────────────────────────
+
+    private static Set<Integer> selectedSizes() {
+        Set<Integer> sizes = new LinkedHashSet<>();
+        for (String size : System.getProperty("prepushchecker.benchmark.sizes", "10,100,1000").split(",")) {
+            if (!size.isBlank()) sizes.add(Integer.parseInt(size.trim()));
+        }
+        return sizes;
+    }
+
+    private static String lookupDelta(Map<CheckTimings.Lookup, Long> before, Map<CheckTimings.Lookup, Long> after) {
+        StringBuilder sb = new StringBuilder("{");
+        for (CheckTimings.Lookup lookup : CheckTimings.Lookup.values()) {
+            if (sb.length() > 1) sb.append(',');
+            sb.append('"').append(lookup.name().toLowerCase()).append("\":")
+                .append(after.get(lookup) - before.get(lookup));
+        }
+        return sb.append('}').toString();
+    }
+
+    private static void report(int modules, int fanout, int dependents, String gate, String scenario,
+                               String lookups, CheckTimings.Record record) throws IOException {
+        String label = System.getProperty("prepushchecker.benchmark.label");
+        if (label == null || label.isBlank()) {
+            String head = GitHookInstaller.runGit(System.getProperty("user.dir"), "rev-parse", "--short", "HEAD");
+            label = head != null ? head : "local";
+        }
+        String line = "{\"label\":\"" + label.replace("\"", "") + "\",\"modules\":" + modules
+            + ",\"fanout\":" + fanout + ",\"dependents\":" + dependents
+            + ",\"gate\":\"" + gate + "\",\"scenario\":\"" + scenario + "\",\"lookups\":" + lookups
+            + ",\"record\":" + record.toJson() + "}";
+        Path report = Path.of(System.getProperty("prepushchecker.benchmark.report", "build/reports/push-gate-benchmark.jsonl"));
+        if (report.getParent() != null) Files.createDirectories(report.getParent());
+        Files.writeString(report, line + "\n", StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        LOG.info(String.format("push-gate %5d modules  %-6s  %-6s  %6d ms  %-16s  %s",
+            modules, gate, scenario, record.getTotalMillis(), record.getVerdict(), record.getPhases()));
+    }
+
+    // ── Synthetic push ────────────────────────────────────────────────────────
+
+    /**
+     * One pushed commit; only what the handler reads (commits, their ids, parents and root).
+     * It has no repository or push spec, which the handler never asks for.
+     */
+    private static final class SyntheticPush implements PushInfo {
+        private final VcsFullCommitDetails commit;
+
+        SyntheticPush(VcsFullCommitDetails commit) {
+            this.commit = commit;
+        }
+
+        @Override
+        public @NotNull Repository getRepository() {
+            throw new UnsupportedOperationException("SyntheticPush has no repository; the push handler only reads getCommits()");
+        }
+
+        @Override
+        public @NotNull PushSpec<PushSource, PushTarget> getPushSpec() {
+            throw new UnsupportedOperationException("SyntheticPush has no push spec; the push handler only reads getCommits()");
+        }
+
+        @Override
+        public @NotNull List<VcsFullCommitDetails> getCommits() {
+            return List.of(commit);
+        }
+    }
+
+    private static final class SyntheticCommit implements VcsFullCommitDetails {
+        private static final VcsUser USER = new VcsUserImpl("Benchmark", "benchmark@example.com");
+        private final VirtualFile root;
+        private final Hash id;
+        private final Hash parent;
+        private final long time = System.currentTimeMillis();
+
+        SyntheticCommit(@Nullable VirtualFile root, String id, String parent) {
+            this.root = root;
+            this.id = HashImpl.build(id);
+            this.parent = HashImpl.build(parent);
+        }
+
+        @Override
+        public @NotNull Collection<Change> getChanges() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public @NotNull Collection<Change> getChanges(int parent) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public @NotNull String getFullMessage() {
+            return getSubject();
+        }
+
+        @Override
+        public @NotNull VirtualFile getRoot() {
+            return root;
+        }
+
+        @Override
+        public @NotNull String getSubject() {
+            return "Benchmark change";
+        }
+
+        @Override
+        public @NotNull VcsUser getAuthor() {
+            return USER;
+        }
+
+        @Override
+        public @NotNull VcsUser getCommitter() {
+            return USER;
+        }
+
+        @Override
+        public long getAuthorTime() {
+            return time;
+        }
+
+        @Override
+        public long getCommitTime() {
+            return time;
+        }
+
+        @Override
+        public @NotNull Hash getId() {
+            return id;
+        }
+
+        @Override
+        public @NotNull List<Hash> getParents() {
+            return List.of(parent);
+        }
+
+        @Override
+        public long getTimestamp() {
+            return time;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.prepushchecker;
+
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.io.StringWriter;
+import java.util.List;
+
+public class ServerReplyTest extends BasePlatformTestCase {
+    private static final CompilerDiagnostic FIRST = new CompilerDiagnostic(
+        "src/A.java", 3, 5, CompilerDiagnostic.Severity.ERROR, null, "cannot find symbol");
+    private static final CompilerDiagnostic SECOND = new CompilerDiagnostic(
+        "src/B.java", 7, 1, CompilerDiagnostic.Severity.ERROR, null, "';' expected");
+
+    public void testPlainCheckGetsVersionOneReply() {
+        StringWriter out = new StringWriter();
+        ServerReply reply = ServerReply.negotiate("CHECK", out);
+        reply.progress(List.of(FIRST), 0.5);
+        reply.finish(List.of(FIRST, SECOND), "compile-timeout");
+        reply.close();
+
+        assertEquals("ERRORS 2\n" + FIRST + "\n" + SECOND + "\nEND\n", out.toString());
+    }
+
+    public void testVersionTwoStreamsEachErrorOnce() {
+        StringWriter out = new StringWriter();
+        ServerReply reply = ServerReply.negotiate("CHECK 3", out);
+        reply.cache("miss");
+        reply.progress(List.of(FIRST), 0.5);
+        reply.finish(List.of(FIRST, SECOND), "compile-timeout");
+        reply.close();
+
+        assertEquals("V 2\nCACHE miss\nDIAG " + FIRST + "\nPROGRESS 50\nDIAG " + SECOND + "\nDONE ERRORS 2\n",
+            out.toString());
+    }
+
+    public void testVersionTwoReportsIncompleteCheck() {
+        StringWriter out = new StringWriter();
+        ServerReply reply = ServerReply.negotiate("CHECK 2", out);
+        reply.finish(null, "compile-timeout");
+        reply.cache("hit push");
+        reply.close();
+
+        assertEquals("V 2\nDONE ERR compile-timeout\n", out.toString());
+    }
+}
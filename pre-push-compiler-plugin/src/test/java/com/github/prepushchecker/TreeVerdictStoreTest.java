@@ -0,0 +1,36 @@
+package com.github.prepushchecker;
+
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class TreeVerdictStoreTest extends BasePlatformTestCase {
+    public void testLastRecordForATreeWins() throws IOException {
+        Path base = Files.createTempDirectory("prepushchecker-trees");
+
+        assertNull(TreeVerdictStore.lookup(base, List.of("aaa")));
+        TreeVerdictStore.record(base, List.of("aaa", "bbb"), TreeVerdictStore.Verdict.PASS);
+        assertEquals(TreeVerdictStore.Verdict.PASS, TreeVerdictStore.lookup(base, List.of("aaa", "bbb")));
+        assertNull(TreeVerdictStore.lookup(base, List.of("aaa", "ccc")));
+
+        TreeVerdictStore.record(base, List.of("bbb"), TreeVerdictStore.Verdict.FAIL);
+        assertEquals(TreeVerdictStore.Verdict.FAIL, TreeVerdictStore.lookup(base, List.of("aaa", "bbb")));
+    }
+
+    public void testReadsLinesWrittenByTheHookAndTrims() throws IOException {
+        Path base = Files.createTempDirectory("prepushchecker-trees");
+        Path file = base.resolve(TreeVerdictStore.RELATIVE_PATH);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "abc pass 1700000000\n", StandardCharsets.UTF_8);
+        assertEquals(TreeVerdictStore.Verdict.PASS, TreeVerdictStore.lookup(base, List.of("abc")));
+
+        for (int i = 0; i < TreeVerdictStore.MAX_LINES + 10; i++) {
+            TreeVerdictStore.record(base, List.of("t" + i), TreeVerdictStore.Verdict.PASS);
+        }
+        assertTrue(Files.readAllLines(file, StandardCharsets.UTF_8).size() <= TreeVerdictStore.MAX_LINES);
+    }
+}